@@ -0,0 +1,38 @@
+package hudson.plugins.buildblocker;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Matches a single job name with the linear-time engine. Run with the GC profiler of the
+ * {@link BenchmarkRunner}, <code>gc.alloc.rate.norm</code> shows the bytes allocated per match, which
+ * stay near zero as the buffers of a match are reused by the thread.
+ */
+@JmhBenchmark
+public class LinearPatternBenchmark {
+
+    @State(Scope.Thread)
+    public static class Patterns {
+
+        @Param({"deploy-.*", "folder/(build|test)-\\d+/(main|release-[0-9.]+)"})
+        public String regex;
+
+        LinearPattern pattern;
+        String name;
+
+        @Setup
+        public void setup() {
+            pattern = LinearPattern.compile(regex);
+            name = "folder/some-long-job-name-that-is-not-blocking";
+        }
+    }
+
+    @Benchmark
+    public boolean match(Patterns patterns) {
+        return patterns.pattern.matches(patterns.name);
+    }
+}
@@ -0,0 +1,64 @@
+package hudson.plugins.buildblocker;
+
+import hudson.plugins.buildblocker.BuildBlockerConfiguration.MatchingEngine;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the backtracking and the linear-time engine matching the name of a job against
+ * typical blocking jobs, and against a line with catastrophic backtracking.
+ */
+@JmhBenchmark
+public class MatchingEngineBenchmark {
+
+    private static final String TYPICAL = "deploy-.*\nrelease/.*/main\n.*-integration-tests\nfolder/(build|test)-\\d+";
+
+    @State(Scope.Benchmark)
+    public static class Monitors {
+
+        @Param({"REGEX", "LINEAR"})
+        public String engine;
+
+        /**
+         * the length of the job name matched against <code>(a+)+b</code>, kept small as the
+         * backtracking engine takes exponential time
+         */
+        @Param({"16", "20"})
+        public int length;
+
+        BlockingJobsMonitor typical;
+        BlockingJobsMonitor backtracking;
+        String matching;
+        String notMatching;
+        String pathological;
+
+        @Setup
+        public void setup() {
+            MatchingEngine matchingEngine = MatchingEngine.from(engine);
+            typical = new BlockingJobsMonitor(TYPICAL, matchingEngine);
+            backtracking = new BlockingJobsMonitor("(a+)+b", matchingEngine);
+            matching = "release/plugin-foo/main";
+            notMatching = "folder/some-long-job-name-that-is-not-blocking";
+            pathological = "a".repeat(length);
+        }
+    }
+
+    @Benchmark
+    public boolean matchTypical(Monitors monitors) {
+        return monitors.typical.matchesJobName(monitors.matching);
+    }
+
+    @Benchmark
+    public boolean missTypical(Monitors monitors) {
+        return monitors.typical.matchesJobName(monitors.notMatching);
+    }
+
+    @Benchmark
+    public boolean missBacktracking(Monitors monitors) {
+        return monitors.backtracking.matchesJobName(monitors.pathological);
+    }
+}
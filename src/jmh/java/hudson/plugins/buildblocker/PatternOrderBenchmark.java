@@ -0,0 +1,60 @@
+package hudson.plugins.buildblocker;
+
+import hudson.plugins.buildblocker.BuildBlockerConfiguration.MatchingEngine;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compares a long list of blocking jobs tried in configuration order with the monitor, which tries
+ * the most frequently matching lines first. The running job matches the last line.
+ */
+@JmhBenchmark
+public class PatternOrderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Lines {
+
+        @Param({"10", "50", "200"})
+        public int lines;
+
+        List<Pattern> fixedOrder;
+        BlockingJobsMonitor adaptiveOrder;
+        String running;
+
+        @Setup
+        public void setup() {
+            StringBuilder blockingJobs = new StringBuilder();
+            fixedOrder = new ArrayList<>(lines);
+            for (int i = 0; i < lines; i++) {
+                String line = "team-" + i + "/deploy-.*";
+                blockingJobs.append(line).append('\n');
+                fixedOrder.add(Pattern.compile(line));
+            }
+            adaptiveOrder = new BlockingJobsMonitor(blockingJobs.toString(), MatchingEngine.REGEX);
+            running = "team-" + (lines - 1) + "/deploy-prod";
+        }
+    }
+
+    @Benchmark
+    public boolean fixedOrder(Lines lines) {
+        for (Pattern pattern : lines.fixedOrder) {
+            if (pattern.matcher(lines.running).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean adaptiveOrder(Lines lines) {
+        return lines.adaptiveOrder.matchesJobName(lines.running);
+    }
+}
@@ -0,0 +1,156 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Run;
+import org.jenkinsci.plugins.workflow.actions.BodyInvocationAction;
+import org.jenkinsci.plugins.workflow.actions.LabelAction;
+import org.jenkinsci.plugins.workflow.actions.ThreadNameAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionListener;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionOwner;
+import org.jenkinsci.plugins.workflow.flow.GraphListener;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graph.StepNode;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * Index of the currently running Pipeline stages, maintained by flow graph events. Used to evaluate
+ * the <code>job#stage</code> lines of the blocking jobs without walking any flow graph.
+ */
+@Extension(optional = true)
+public class ActiveStagesIndex implements GraphListener.Synchronous {
+
+    private static final Logger LOG = Logger.getLogger(ActiveStagesIndex.class.getName());
+
+    /**
+     * the running stages per execution, keyed by the id of the flow node starting the stage body
+     */
+    private final Map<FlowExecutionOwner, Map<String, ActiveStage>> active = new ConcurrentHashMap<>();
+
+    public static ActiveStagesIndex get() {
+        return ExtensionList.lookupSingleton(ActiveStagesIndex.class);
+    }
+
+    @Override
+    public void onNewHead(FlowNode node) {
+        if (node instanceof BlockEndNode) {
+            Map<String, ActiveStage> stages = active.get(node.getExecution().getOwner());
+            if (stages != null) {
+                stages.remove(((BlockEndNode<?>) node).getStartNode().getId());
+            }
+        } else {
+            String stageName = stageNameOf(node);
+            if (stageName != null) {
+                add(node, stageName);
+            }
+        }
+    }
+
+    /**
+     * Returns the job of the first running stage matching the stage rules of the monitor.
+     *
+     * @param monitor the blocking jobs to check against
+     * @return the blocking job or null
+     */
+    @CheckForNull
+    public Job findActive(BlockingJobsMonitor monitor) {
+        for (Map<String, ActiveStage> stages : active.values()) {
+            for (ActiveStage stage : stages.values()) {
+                if (monitor.matchesStage(stage.job, stage.name)) {
+                    return stage.job;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void add(FlowNode node, String stageName) {
+        FlowExecutionOwner owner = node.getExecution().getOwner();
+        try {
+            Queue.Executable executable = owner.getExecutable();
+            if (executable instanceof Run) {
+                active.computeIfAbsent(owner, o -> new ConcurrentHashMap<>())
+                        .put(node.getId(), new ActiveStage(((Run<?, ?>) executable).getParent(), stageName));
+            }
+        } catch (IOException e) {
+            LOG.logp(FINE, getClass().getName(), "add", "unable to determine the build running stage " + stageName, e);
+        }
+    }
+
+    /**
+     * Returns the stage name if the node starts the body of a <code>stage</code> step.
+     * Parallel branches are labelled as well, but carry a {@link ThreadNameAction}.
+     */
+    @CheckForNull
+    private static String stageNameOf(FlowNode node) {
+        if (!(node instanceof BlockStartNode) || node.getAction(BodyInvocationAction.class) == null) {
+            return null;
+        }
+        List<FlowNode> parents = node.getParents();
+        if (parents.size() != 1 || !(parents.get(0) instanceof StepNode)) {
+            return null;
+        }
+        FlowNode step = parents.get(0);
+        StepDescriptor descriptor = ((StepNode) step).getDescriptor();
+        LabelAction label = step.getAction(LabelAction.class);
+        if (descriptor == null || !"stage".equals(descriptor.getFunctionName())
+                || label == null || step.getAction(ThreadNameAction.class) != null) {
+            return null;
+        }
+        return label.getDisplayName();
+    }
+
+    private static final class ActiveStage {
+        private final Job job;
+        private final String name;
+
+        private ActiveStage(Job job, String name) {
+            this.job = job;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Drops the stages of finished executions and restores the running stages of resumed ones.
+     */
+    @Extension(optional = true)
+    public static class Lifecycle extends FlowExecutionListener {
+
+        @Override
+        public void onResumed(@NonNull FlowExecution execution) {
+            try {
+                ActiveStagesIndex index = get();
+                for (FlowNode head : execution.getCurrentHeads()) {
+                    for (BlockStartNode block : head.iterateEnclosingBlocks()) {
+                        String stageName = stageNameOf(block);
+                        if (stageName != null) {
+                            index.add(block, stageName);
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOG.log(FINE, "unable to restore running stages of " + execution, e);
+            }
+        }
+
+        @Override
+        public void onCompleted(@NonNull FlowExecution execution) {
+            get().active.remove(execution.getOwner());
+        }
+    }
+}
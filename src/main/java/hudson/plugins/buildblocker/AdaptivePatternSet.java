@@ -0,0 +1,243 @@
+package hudson.plugins.buildblocker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * The compiled lines of the blocking jobs, matching a name if any line matches and no exclusion line
+ * matches. The lines are tried most frequently matching first: every line counts its hits, and the
+ * order is recomputed every {@link #REORDER_INTERVAL} matches.
+ * <p>
+ * The exclusions are only tried for a name matched by a line, which is one of the few names of the
+ * running or queued builds that would block, so they are part of the same decision and never cost a
+ * second pass over the builds.
+ * </p>
+ * <p>
+ * A name matches the set no matter in which order the lines are tried, so the order never changes
+ * the result, and thus not the reported blocker, only the time it takes to find it. The set is shared
+ * by the monitors of all items with the same blocking jobs, so the counters are atomic and a
+ * reordering publishes a new order array instead of sorting the one being tried. The hits are halved
+ * on every reordering, so the order follows changes of the running jobs.
+ * </p>
+ * <p>
+ * For the pattern report, every line also counts all its hits and remembers its last hit. Every
+ * {@link #SAMPLE_INTERVAL} matches, the time each line takes is measured.
+ * </p>
+ */
+final class AdaptivePatternSet implements NamePattern {
+
+    /**
+     * the number of matches between two reorderings
+     */
+    static final int REORDER_INTERVAL = 1024;
+
+    /**
+     * the number of matches between two measurements of the time each line takes
+     */
+    static final int SAMPLE_INTERVAL = 64;
+
+    /**
+     * the compiled lines followed by the compiled exclusion lines
+     */
+    private final NamePattern[] patterns;
+
+    /**
+     * the number of lines before the exclusion lines in {@link #patterns}
+     */
+    private final int includes;
+
+    /**
+     * the lines of the configuration the patterns were compiled from
+     */
+    private final String[] lines;
+
+    /**
+     * the hits since the last reordering by index of the line in {@link #patterns}
+     */
+    private final AtomicIntegerArray hits;
+
+    /**
+     * the indexes of the lines in the order they are tried
+     */
+    private volatile int[] order;
+
+    private final AtomicInteger matches = new AtomicInteger();
+
+    /**
+     * the statistics for the pattern report by index of the line, see {@link #getStatistics()}
+     */
+    private final LongAdder[] totalHits;
+    private final AtomicLongArray lastHit;
+    private final LongAdder[] sampledNanos;
+    private final LongAdder[] samples;
+
+    /**
+     * @param patterns the compiled lines
+     * @param lines    the lines the patterns were compiled from
+     */
+    AdaptivePatternSet(List<NamePattern> patterns, List<String> lines) {
+        this(patterns, lines, emptyList(), emptyList());
+    }
+
+    /**
+     * @param patterns       the compiled lines
+     * @param lines          the lines the patterns were compiled from
+     * @param exclusions     the compiled exclusion lines
+     * @param exclusionLines the exclusion lines the exclusions were compiled from
+     */
+    AdaptivePatternSet(List<NamePattern> patterns, List<String> lines, List<NamePattern> exclusions, List<String> exclusionLines) {
+        List<NamePattern> allPatterns = new ArrayList<>(patterns);
+        allPatterns.addAll(exclusions);
+        List<String> allLines = new ArrayList<>(lines);
+        allLines.addAll(exclusionLines);
+        this.patterns = allPatterns.toArray(new NamePattern[0]);
+        this.includes = patterns.size();
+        this.lines = allLines.toArray(new String[0]);
+        this.hits = new AtomicIntegerArray(this.patterns.length);
+        this.totalHits = adders(this.patterns.length);
+        this.lastHit = new AtomicLongArray(this.patterns.length);
+        this.sampledNanos = adders(this.patterns.length);
+        this.samples = adders(this.patterns.length);
+        int[] initial = new int[includes];
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = i;
+        }
+        this.order = initial;
+    }
+
+    private static LongAdder[] adders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    @Override
+    public boolean matches(CharSequence name) {
+        int count = matches.incrementAndGet() & Integer.MAX_VALUE;
+        if (count % REORDER_INTERVAL == 0) {
+            reorder();
+        }
+        if (count % SAMPLE_INTERVAL == 0) {
+            return matchesSampled(name);
+        }
+        for (int index : order) {
+            if (patterns[index].matches(name)) {
+                hit(index);
+                return !isExcluded(name, false);
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesSampled(CharSequence name) {
+        for (int index : order) {
+            if (sample(index, name)) {
+                hit(index);
+                return !isExcluded(name, true);
+            }
+        }
+        return false;
+    }
+
+    private boolean sample(int index, CharSequence name) {
+        long start = System.nanoTime();
+        boolean matches = patterns[index].matches(name);
+        sampledNanos[index].add(System.nanoTime() - start);
+        samples[index].increment();
+        return matches;
+    }
+
+    /**
+     * @param name a name
+     * @return true if an exclusion line matches the name
+     */
+    boolean isExcluded(CharSequence name) {
+        return isExcluded(name, false);
+    }
+
+    private boolean isExcluded(CharSequence name, boolean sampled) {
+        for (int index = includes; index < patterns.length; index++) {
+            if (sampled ? sample(index, name) : patterns[index].matches(name)) {
+                hit(index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void hit(int index) {
+        if (index < includes) {
+            // only the lines are reordered, the exclusions are always tried all
+            hits.incrementAndGet(index);
+        }
+        totalHits[index].increment();
+        lastHit.set(index, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the statistics of every line in configuration order, followed by the exclusion lines
+     */
+    List<LineStatistics> getStatistics() {
+        List<LineStatistics> statistics = new ArrayList<>(patterns.length);
+        for (int i = 0; i < patterns.length; i++) {
+            statistics.add(new LineStatistics(lines[i], totalHits[i].sum(), lastHit.get(i), samples[i].sum(), sampledNanos[i].sum()));
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the indexes of the lines in the order they are tried
+     */
+    int[] getOrder() {
+        return order.clone();
+    }
+
+    /**
+     * Sorts the lines by their hits, keeping the configuration order of lines with the same hits.
+     */
+    synchronized void reorder() {
+        if (includes < 2) {
+            return;
+        }
+        long[] keys = new long[includes];
+        for (int i = 0; i < keys.length; i++) {
+            int count = hits.getAndUpdate(i, hit -> hit >>> 1);
+            // most hits first, then by index
+            keys[i] = ((long) (Integer.MAX_VALUE - count) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] reordered = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            reordered[i] = (int) keys[i];
+        }
+        order = reordered;
+    }
+
+    /**
+     * The statistics of a line since its configuration was compiled.
+     */
+    static final class LineStatistics {
+        final String line;
+        final long hits;
+        final long lastHit;
+        final long samples;
+        final long sampledNanos;
+
+        LineStatistics(String line, long hits, long lastHit, long samples, long sampledNanos) {
+            this.line = line;
+            this.hits = hits;
+            this.lastHit = lastHit;
+            this.samples = samples;
+            this.sampledNanos = sampledNanos;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package hudson.plugins.buildblocker;
+
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import org.springframework.security.core.Authentication;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cause of a build blocked by a blocking job. If the blocking job is running and the duration of
+ * its builds can be estimated, the description tells when the blocking builds are expected to finish.
+ * The blocking job is only named to users who may read it. Whether a user may read it is decided once per
+ * cause, as the description is rendered for every blocked item whenever the queue is shown.
+ */
+public class BlockedByBuildCause extends CauseOfBlockage {
+
+    private final long inQueueSince;
+    private final String blocker;
+    private final String blockerFullName;
+    private final long expectedEnd;
+
+    /**
+     * whether the blocking job may be read, by user name
+     */
+    private final transient Map<String, Boolean> readableBy = new ConcurrentHashMap<>();
+
+    /**
+     * @param inQueueSince    the time the blocked item entered the queue
+     * @param blocker         the display name of the blocking job
+     * @param blockerFullName the full name of the blocking job
+     * @param expectedEnd     the time the blocking builds are expected to finish, -1 if unknown
+     */
+    BlockedByBuildCause(long inQueueSince, String blocker, String blockerFullName, long expectedEnd) {
+        this.inQueueSince = inQueueSince;
+        this.blocker = blocker;
+        this.blockerFullName = blockerFullName;
+        this.expectedEnd = expectedEnd;
+    }
+
+    public String getBlocker() {
+        return blocker;
+    }
+
+    public String getBlockerFullName() {
+        return blockerFullName;
+    }
+
+    /**
+     * @return the time the blocking builds are expected to finish, -1 if unknown
+     */
+    public long getExpectedEnd() {
+        return expectedEnd;
+    }
+
+    @Override
+    public String getShortDescription() {
+        long now = System.currentTimeMillis();
+        String inQueueFor = Util.getTimeSpanString(now - inQueueSince);
+        String name = isReadableByCurrentUser() ? blocker : Messages.BlockedByBuildCause_HiddenBlocker();
+        if (expectedEnd > now) {
+            return Messages.BlockingJobIsRunningUntil(inQueueFor, name, Util.getTimeSpanString(expectedEnd - now));
+        }
+        return Messages.BlockingJobIsRunning(inQueueFor, name);
+    }
+
+    private boolean isReadableByCurrentUser() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return true;
+        }
+        Authentication authentication = Jenkins.getAuthentication2();
+        if (ACL.SYSTEM_USERNAME.equals(authentication.getName())) {
+            // e.g. the descriptions logged or recorded by the queue maintenance
+            return true;
+        }
+        return readableBy.computeIfAbsent(authentication.getName(), user -> isReadable(blockerFullName));
+    }
+
+    /**
+     * @param fullName the full name of an item
+     * @return false if the item exists and the current user may not read it
+     */
+    static boolean isReadable(String fullName) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return true;
+        }
+        Item item;
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            item = jenkins.getItemByFullName(fullName);
+        }
+        return item == null || item.hasPermission(Item.READ);
+    }
+}
@@ -0,0 +1,80 @@
+package hudson.plugins.buildblocker;
+
+import hudson.Util;
+import hudson.model.Action;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The time the queued item of a build was blocked by this plugin, by blocker, see {@link BlockedTimeTracker}.
+ * Shown on the build page and available in the remote API of the build.
+ */
+@ExportedBean
+public class BlockedTimeAction implements Action {
+
+    private final String[] blockers;
+    private final long[] millis;
+
+    /**
+     * @param blockedTime the blocked time by blocker
+     */
+    BlockedTimeAction(Map<String, Long> blockedTime) {
+        this.blockers = new String[blockedTime.size()];
+        this.millis = new long[blockedTime.size()];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : blockedTime.entrySet()) {
+            blockers[i] = entry.getKey();
+            millis[i] = entry.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * @return the total time the item was blocked in milliseconds
+     */
+    @Exported
+    public long getBlockedMillis() {
+        long total = 0;
+        for (long m : millis) {
+            total += m;
+        }
+        return total;
+    }
+
+    public String getBlockedTime() {
+        return Util.getTimeSpanString(getBlockedMillis());
+    }
+
+    /**
+     * @return the blocked time by blocker, most blocked time first; the blocking jobs the current user may not
+     * read are not named
+     */
+    @Exported(inline = true)
+    public List<BlockedTimeTracker.BlockerTime> getBlockers() {
+        Map<String, Long> blockedTime = new LinkedHashMap<>();
+        for (int i = 0; i < blockers.length; i++) {
+            String blocker = BlockedByBuildCause.isReadable(blockers[i]) ? blockers[i] : Messages.BlockedByBuildCause_HiddenBlocker();
+            blockedTime.merge(blocker, millis[i], Long::sum);
+        }
+        return BlockedTimeTracker.BlockerTime.sorted(blockedTime);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.BlockedTimeAction_DisplayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+}
@@ -0,0 +1,477 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Util;
+import hudson.model.Item;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long queued items are blocked by this plugin, and by which blocker. The time between
+ * two decisions of the dispatcher for an item is attributed to the blocker of the earlier decision,
+ * so the blocked time is known when the item leaves the queue without any timer.
+ * <p>
+ * Items blocked on node level are checked globally first, which does not block them, and then on every
+ * node. The decisions of both are kept apart, so an item is only unblocked if neither blocks it.
+ * </p>
+ * <p>
+ * The blocked time of a started build is stored on the build as a {@link BlockedTimeAction}. The
+ * blocked times of all items are also rolled up per job and per blocker since the last restart,
+ * reported on the management page, see {@link BuildBlockerManagementLink}.
+ * </p>
+ */
+@Extension
+public class BlockedTimeTracker extends QueueListener {
+
+    /**
+     * the upper bounds of the buckets of the histograms in milliseconds, the last bucket is unbounded
+     */
+    static final long[] BUCKETS = {60_000L, 300_000L, 900_000L, 3_600_000L, 14_400_000L};
+
+    /**
+     * the number of items that left the queue whose blocked time is kept until their build starts
+     */
+    static final int MAX_LEFT = 1024;
+
+    /**
+     * the blocked items by queue id
+     */
+    private final Map<Long, Wait> waits = new ConcurrentHashMap<>();
+
+    /**
+     * the items that left the queue to be built, by queue id
+     */
+    private final Map<Long, Wait> left = Collections.synchronizedMap(
+            new LinkedHashMap<Long, Wait>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Wait> eldest) {
+                    return size() > MAX_LEFT;
+                }
+            });
+
+    private final Map<String, Attribution> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Attribution> blockers = new ConcurrentHashMap<>();
+
+    /**
+     * incremented whenever an item was blocked, unblocked or got another blocker
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @return the tracker, or null if Jenkins is not running, e.g. in unit tests
+     */
+    @CheckForNull
+    public static BlockedTimeTracker getIfAvailable() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return ExtensionList.lookupSingleton(BlockedTimeTracker.class);
+    }
+
+    /**
+     * Records a decision of the dispatcher.
+     *
+     * @param item     the checked item
+     * @param cause    the cause of the blockage, null if the item is not blocked
+     * @param property the blocking jobs of the item, null if it is held back for a starving build
+     * @param onNode   true if the item was checked for a node, false if it was checked globally
+     */
+    void update(Queue.Item item, @CheckForNull CauseOfBlockage cause, @CheckForNull IBuildBlockerProperty property, boolean onNode) {
+        String blocker = null;
+        if (cause instanceof BlockedByBuildCause) {
+            blocker = ((BlockedByBuildCause) cause).getBlockerFullName();
+        } else if (cause instanceof LocalizedCause) {
+            blocker = ((LocalizedCause) cause).getKey();
+        } else if (cause != null) {
+            blocker = cause.getShortDescription();
+        }
+        String blockLevel = property != null ? property.getBlockLevel().name() : null;
+        update(item.getId(), jobOf(item), blocker, blockLevel, onNode, System.currentTimeMillis());
+    }
+
+    void update(long queueId, String job, @CheckForNull String blocker, @CheckForNull String blockLevel, long now) {
+        update(queueId, job, blocker, blockLevel, false, now);
+    }
+
+    void update(long queueId, String job, @CheckForNull String blocker, @CheckForNull String blockLevel, boolean onNode, long now) {
+        Wait wait = blocker != null ? waits.computeIfAbsent(queueId, id -> new Wait(job)) : waits.get(queueId);
+        if (wait != null && wait.update(blocker, blockLevel, onNode, now)) {
+            version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onLeft(Queue.LeftItem li) {
+        left(li.getId(), li.isCancelled(), System.currentTimeMillis());
+    }
+
+    void left(long queueId, boolean cancelled, long now) {
+        Wait wait = waits.remove(queueId);
+        if (wait == null) {
+            return;
+        }
+        boolean changed = wait.update(null, null, false, now);
+        changed |= wait.update(null, null, true, now);
+        if (changed) {
+            version.incrementAndGet();
+        }
+        long total = wait.getTotal();
+        if (total <= 0) {
+            return;
+        }
+        jobs.computeIfAbsent(wait.job, Attribution::new).add(total, wait.blockers);
+        for (Map.Entry<String, Long> entry : wait.blockers.entrySet()) {
+            blockers.computeIfAbsent(entry.getKey(), Attribution::new)
+                    .add(entry.getValue(), Collections.singletonMap(wait.job, entry.getValue()));
+        }
+        if (!cancelled) {
+            left.put(queueId, wait);
+        }
+    }
+
+    /**
+     * @param queueId the queue id of a started build
+     * @return the blocked time of the build, or null if it was not blocked
+     */
+    @CheckForNull
+    BlockedTimeAction take(long queueId) {
+        Wait wait = left.remove(queueId);
+        return wait != null ? wait.toAction() : null;
+    }
+
+    /**
+     * @return the version of the blocked items, changed whenever an item was blocked, unblocked or got another blocker
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return the currently blocked items, longest blocked first
+     */
+    List<BlockedItem> getBlockedItems() {
+        List<BlockedItem> blocked = new ArrayList<>();
+        for (Map.Entry<Long, Wait> entry : waits.entrySet()) {
+            BlockedItem item = entry.getValue().toBlockedItem(entry.getKey());
+            if (item != null) {
+                blocked.add(item);
+            }
+        }
+        blocked.sort(Comparator.comparingLong(BlockedItem::getBlockedSince).thenComparingLong(BlockedItem::getQueueId));
+        return blocked;
+    }
+
+    /**
+     * @return the blocked time per job, most blocked first
+     */
+    List<Attribution> getJobs() {
+        return sorted(jobs);
+    }
+
+    /**
+     * @return the blocked time per blocker, most blocking first
+     */
+    List<Attribution> getBlockers() {
+        return sorted(blockers);
+    }
+
+    private static List<Attribution> sorted(Map<String, Attribution> attributions) {
+        List<Attribution> sorted = new ArrayList<>(attributions.values());
+        sorted.sort(Comparator.comparingLong(Attribution::getTotalMillis).reversed().thenComparing(Attribution::getName));
+        return sorted;
+    }
+
+    private static String jobOf(Queue.Item item) {
+        // the blocked time of a node block is attributed to its Pipeline
+        Queue.Task owner = item.task.getOwnerTask();
+        return owner instanceof Item ? ((Item) owner).getFullName() : owner.getFullDisplayName();
+    }
+
+    /**
+     * Stores the blocked time on the builds when they start.
+     */
+    @Extension
+    public static class BuildStartListener extends RunListener<Run<?, ?>> {
+        @Override
+        public void onStarted(Run<?, ?> run, TaskListener listener) {
+            BlockedTimeTracker tracker = getIfAvailable();
+            if (tracker != null) {
+                BlockedTimeAction action = tracker.take(run.getQueueId());
+                if (action != null) {
+                    run.addAction(action);
+                }
+            }
+        }
+    }
+
+    /**
+     * The blocked time of a queued item so far.
+     */
+    private static final class Wait {
+        private final String job;
+
+        /**
+         * the blocked time by blocker, guarded by this
+         */
+        private final Map<String, Long> blockers = new LinkedHashMap<>();
+
+        /**
+         * the blocker and block level of the last global decision and of the last decision for a node
+         */
+        private String globalBlocker;
+        private String globalBlockLevel;
+        private String nodeBlocker;
+        private String nodeBlockLevel;
+
+        private String blocker;
+        private String blockLevel;
+        private long since;
+
+        /**
+         * the time the item was blocked after it was last not blocked
+         */
+        private long blockedSince;
+
+        private Wait(String job) {
+            this.job = job;
+        }
+
+        /**
+         * @return true if the item was blocked, unblocked or got another blocker or block level
+         */
+        private synchronized boolean update(@CheckForNull String blocker, @CheckForNull String blockLevel, boolean onNode, long now) {
+            if (this.blocker != null && now > since) {
+                blockers.merge(this.blocker, now - since, Long::sum);
+            }
+            if (onNode) {
+                nodeBlocker = blocker;
+                nodeBlockLevel = blockLevel;
+            } else {
+                globalBlocker = blocker;
+                globalBlockLevel = blockLevel;
+            }
+            // the item is blocked as long as either decision blocks it
+            String current = globalBlocker != null ? globalBlocker : nodeBlocker;
+            String currentBlockLevel = globalBlocker != null ? globalBlockLevel : nodeBlockLevel;
+            boolean changed = !Objects.equals(this.blocker, current) || current != null && !Objects.equals(this.blockLevel, currentBlockLevel);
+            if (this.blocker == null) {
+                blockedSince = now;
+            }
+            this.blocker = current;
+            this.blockLevel = currentBlockLevel;
+            this.since = now;
+            return changed;
+        }
+
+        @CheckForNull
+        private synchronized BlockedItem toBlockedItem(long queueId) {
+            return blocker != null ? new BlockedItem(queueId, job, blocker, blockLevel, blockedSince) : null;
+        }
+
+        private synchronized BlockedTimeAction toAction() {
+            return new BlockedTimeAction(blockers);
+        }
+
+        private synchronized long getTotal() {
+            long total = 0;
+            for (long millis : blockers.values()) {
+                total += millis;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The blocked time of the items of a job, or of the items blocked by a blocker, with the blocked
+     * time per blocker, or per blocked job respectively.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Attribution {
+        private final String name;
+        private long items;
+        private long totalMillis;
+        private final long[] histogram = new long[BUCKETS.length + 1];
+        private final Map<String, Long> counterparts = new HashMap<>();
+
+        Attribution(String name) {
+            this.name = name;
+        }
+
+        private synchronized void add(long millis, Map<String, Long> counterparts) {
+            items++;
+            totalMillis += millis;
+            histogram[bucketOf(millis)]++;
+            for (Map.Entry<String, Long> entry : counterparts.entrySet()) {
+                this.counterparts.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+        }
+
+        static int bucketOf(long millis) {
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis >= BUCKETS[bucket]) {
+                bucket++;
+            }
+            return bucket;
+        }
+
+        /**
+         * @return the name of the job or the blocker
+         */
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of blocked items
+         */
+        @Exported
+        public synchronized long getItems() {
+            return items;
+        }
+
+        @Exported
+        public synchronized long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public String getTotal() {
+            return Util.getTimeSpanString(getTotalMillis());
+        }
+
+        /**
+         * @return the number of items per blocked time, see {@link #BUCKETS}
+         */
+        @Exported
+        public synchronized long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * @return the blockers of a job, or the jobs blocked by a blocker, most blocked time first
+         */
+        @Exported
+        public synchronized List<BlockerTime> getCounterparts() {
+            return BlockerTime.sorted(counterparts);
+        }
+    }
+
+    /**
+     * A currently blocked item.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class BlockedItem {
+        private final long queueId;
+        private final String job;
+        private final String blocker;
+        private final String blockLevel;
+        private final long blockedSince;
+
+        BlockedItem(long queueId, String job, String blocker, @CheckForNull String blockLevel, long blockedSince) {
+            this.queueId = queueId;
+            this.job = job;
+            this.blocker = blocker;
+            this.blockLevel = blockLevel;
+            this.blockedSince = blockedSince;
+        }
+
+        @Exported
+        public long getQueueId() {
+            return queueId;
+        }
+
+        /**
+         * @return the full name of the job, or of the Pipeline of a node block
+         */
+        @Exported
+        public String getJob() {
+            return job;
+        }
+
+        /**
+         * @return the blocking job, or the cause of the blockage if the item is not blocked by a blocking job
+         */
+        @Exported
+        public String getBlocker() {
+            return blocker;
+        }
+
+        /**
+         * @return the configured block level, null if the item is held back for a starving build
+         */
+        @CheckForNull
+        @Exported
+        public String getBlockLevel() {
+            return blockLevel;
+        }
+
+        /**
+         * @return the time the item was blocked after it was last not blocked
+         */
+        @Exported
+        public long getBlockedSince() {
+            return blockedSince;
+        }
+
+        public String getBlockedFor() {
+            return Util.getTimeSpanString(System.currentTimeMillis() - blockedSince);
+        }
+    }
+
+    /**
+     * The time blocked by a blocker.
+     */
+    @ExportedBean(defaultVisibility = 3)
+    public static final class BlockerTime {
+        private final String name;
+        private final long millis;
+
+        BlockerTime(String name, long millis) {
+            this.name = name;
+            this.millis = millis;
+        }
+
+        static List<BlockerTime> sorted(Map<String, Long> times) {
+            List<BlockerTime> sorted = new ArrayList<>(times.size());
+            for (Map.Entry<String, Long> entry : times.entrySet()) {
+                sorted.add(new BlockerTime(entry.getKey(), entry.getValue()));
+            }
+            sorted.sort(Comparator.comparingLong(BlockerTime::getMillis).reversed().thenComparing(BlockerTime::getName));
+            return sorted;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getMillis() {
+            return millis;
+        }
+
+        public String getDuration() {
+            return Util.getTimeSpanString(millis);
+        }
+    }
+}
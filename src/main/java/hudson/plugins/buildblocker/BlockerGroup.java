@@ -0,0 +1,228 @@
+package hudson.plugins.buildblocker;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * Globally named set of blocking jobs with their block level and queue scanning, configured in
+ * {@link BuildBlockerConfiguration} and referenced by name from job and folder properties, see
+ * {@link IBuildBlockerProperty#getBlockerGroup()}.
+ * <p>
+ * All properties referencing a group evaluate the same text of blocking jobs, so its monitor is
+ * compiled once and shared, and changing a group changes all of them without saving their jobs.
+ * </p>
+ */
+public class BlockerGroup extends AbstractDescribableImpl<BlockerGroup> {
+
+    private static final Logger LOG = Logger.getLogger(BlockerGroup.class.getName());
+
+    private final String name;
+    private String blockingJobs;
+    private BuildBlockerProperty.BlockLevel blockLevel;
+    private BuildBlockerProperty.QueueScanScope scanQueueFor;
+
+    /**
+     * the referencing properties applied to this group, so that a property resolves to the same instance
+     * as long as a decision reused by the dispatcher refers to it
+     */
+    private transient Map<IBuildBlockerProperty, WeakReference<Applied>> applied;
+
+    @DataBoundConstructor
+    public BlockerGroup(String name) {
+        this.name = StringUtils.trimToEmpty(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBlockingJobs() {
+        return blockingJobs;
+    }
+
+    @DataBoundSetter
+    public void setBlockingJobs(String blockingJobs) {
+        this.blockingJobs = blockingJobs;
+    }
+
+    public BuildBlockerProperty.BlockLevel getBlockLevel() {
+        return blockLevel != null ? blockLevel : BuildBlockerProperty.BlockLevel.UNDEFINED;
+    }
+
+    @DataBoundSetter
+    public void setBlockLevel(String blockLevel) {
+        this.blockLevel = BuildBlockerProperty.BlockLevel.from(blockLevel);
+    }
+
+    public BuildBlockerProperty.QueueScanScope getScanQueueFor() {
+        return scanQueueFor != null ? scanQueueFor : BuildBlockerProperty.QueueScanScope.DISABLED;
+    }
+
+    @DataBoundSetter
+    public void setScanQueueFor(String scanQueueFor) {
+        this.scanQueueFor = BuildBlockerProperty.QueueScanScope.from(scanQueueFor);
+    }
+
+    /**
+     * Resolves the group referenced by a property.
+     *
+     * @param property the property of a job or folder
+     * @return the property with the blocking jobs, block level and queue scanning of its group, or the
+     * property itself if it references no group, or the group is not configured
+     */
+    static IBuildBlockerProperty resolve(IBuildBlockerProperty property) {
+        String groupName = property.getBlockerGroup();
+        if (StringUtils.isBlank(groupName)) {
+            return property;
+        }
+        BuildBlockerConfiguration configuration = BuildBlockerConfiguration.getIfAvailable();
+        BlockerGroup group = configuration != null ? configuration.getGroup(groupName) : null;
+        if (group == null) {
+            LOG.logp(FINE, BlockerGroup.class.getName(), "resolve", "blocker group " + groupName + " is not configured");
+            return property;
+        }
+        return group.applyTo(property);
+    }
+
+    Applied applyTo(IBuildBlockerProperty property) {
+        synchronized (this) {
+            if (applied == null) {
+                applied = new WeakHashMap<>();
+            }
+            WeakReference<Applied> reference = applied.get(property);
+            Applied result = reference != null ? reference.get() : null;
+            if (result == null) {
+                result = new Applied(this, property);
+                applied.put(property, new WeakReference<>(result));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A property referencing a group: the blocking jobs, block level and queue scanning are the ones of
+     * the group, all other options the ones of the property.
+     */
+    static final class Applied implements IBuildBlockerProperty {
+        private final BlockerGroup group;
+        private final IBuildBlockerProperty property;
+
+        private Applied(BlockerGroup group, IBuildBlockerProperty property) {
+            this.group = group;
+            this.property = property;
+        }
+
+        /**
+         * @return the property referencing the group
+         */
+        IBuildBlockerProperty getProperty() {
+            return property;
+        }
+
+        @Override
+        public BuildBlockerProperty.BlockLevel getBlockLevel() {
+            return group.getBlockLevel();
+        }
+
+        @Override
+        public BuildBlockerProperty.QueueScanScope getScanQueueFor() {
+            return group.getScanQueueFor();
+        }
+
+        @Override
+        public boolean isUseBuildBlocker() {
+            return property.isUseBuildBlocker();
+        }
+
+        @Override
+        public String getBlockingJobs() {
+            return group.getBlockingJobs();
+        }
+
+        @Override
+        public String getBlockerGroup() {
+            return group.getName();
+        }
+
+        @Override
+        public boolean isSameAxisCombinationOnly() {
+            return property.isSameAxisCombinationOnly();
+        }
+
+        @Override
+        public boolean isBlockWhenAllNodesBlocked() {
+            return property.isBlockWhenAllNodesBlocked();
+        }
+
+        @Override
+        public int getStarvationThreshold() {
+            return property.getStarvationThreshold();
+        }
+
+        @Override
+        public BuildBlockerProperty.DependencyScope getBlockOnDependencies() {
+            return property.getBlockOnDependencies();
+        }
+
+        @Override
+        public int getDependencyDepth() {
+            return property.getDependencyDepth();
+        }
+
+        @Override
+        public String getSubtree() {
+            return property.getSubtree();
+        }
+    }
+
+    @Extension
+    @Symbol("blockerGroup")
+    public static final class DescriptorImpl extends Descriptor<BlockerGroup> {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.BlockerGroup_DisplayName();
+        }
+
+        public FormValidation doCheckName(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error(Messages.BlockerGroup_NameRequired());
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckBlockingJobs(@QueryParameter String value) {
+            return BuildBlockerUtils.doCheckRegex(value);
+        }
+
+        public ListBoxModel doFillBlockLevelItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add(BuildBlockerProperty.BlockLevel.GLOBAL.name());
+            items.add(BuildBlockerProperty.BlockLevel.NODE.name());
+            return items;
+        }
+
+        public ListBoxModel doFillScanQueueForItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add(BuildBlockerProperty.QueueScanScope.DISABLED.name());
+            items.add(BuildBlockerProperty.QueueScanScope.BUILDABLE.name());
+            items.add(BuildBlockerProperty.QueueScanScope.ALL.name());
+            return items;
+        }
+    }
+}
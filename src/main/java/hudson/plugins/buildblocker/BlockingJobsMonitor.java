@@ -24,18 +24,28 @@
 
 package hudson.plugins.buildblocker;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.matrix.MatrixConfiguration;
+import hudson.matrix.MatrixProject;
 import hudson.model.*;
 import hudson.model.queue.WorkUnit;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
+import java.util.regex.PatternSyntaxException;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
 import static java.util.logging.Level.FINE;
 
 /**
@@ -45,13 +55,68 @@ import static java.util.logging.Level.FINE;
  * <p>
  * The first hit returns the blocking job's name.
  * </p>
+ * <p>
+ * Lines starting with <code>!</code> exclude the jobs they match, e.g. <code>!deploy-docs</code>
+ * after <code>deploy-.*</code>. Job names cannot contain <code>!</code>, so the prefix never clashes
+ * with a name.
+ * </p>
  */
 public class BlockingJobsMonitor {
 
     /**
-     * the list of regular expressions from the job configuration
+     * the prefix of the lines excluding the jobs they match from the blocking jobs
+     */
+    static final String EXCLUSION_PREFIX = "!";
+
+    /**
+     * the compiled regular expressions from the job configuration, tried most frequently matching first
+     */
+    private AdaptivePatternSet blockingJobs = new AdaptivePatternSet(emptyList(), emptyList());
+
+    /**
+     * the lines of the form <code>job#stage</code>, blocking only while a matching Pipeline stage is running
+     */
+    private List<StageRule> stageRules = emptyList();
+
+    /**
+     * the full names of jobs blocking in addition to the blocking jobs, e.g. the upstream jobs, see {@link DependencyClosure}
+     */
+    private Set<String> related = emptySet();
+
+    /**
+     * the full name of the folder whose jobs are the only ones blocking, null if all jobs may block
+     */
+    @CheckForNull
+    private String subtree;
+
+    /**
+     * the monitors returned by {@link #within(String)} by folder, so the caches keyed by monitor keep working
+     * for the properties of several folders sharing this monitor, created on first use
+     */
+    @CheckForNull
+    private volatile Map<String, BlockingJobsMonitor> withinFolders;
+
+    /**
+     * queued builds scheduled after this time never block, see {@link #ignoringQueuedAfter(long)}
+     */
+    private long queuedUntil = Long.MAX_VALUE;
+
+    /**
+     * a build that never blocks, e.g. the Pipeline build owning the queued <code>node {}</code> block
+     */
+    @CheckForNull
+    private Queue.Executable excluded;
+
+    /**
+     * the axis combination of the queued matrix configuration, if only the same combination blocks
+     */
+    @CheckForNull
+    private String combination;
+
+    /**
+     * the engine the regular expressions were compiled with
      */
-    private List<String> blockingJobs = emptyList();
+    private final BuildBlockerConfiguration.MatchingEngine engine;
 
     private static final Logger LOG = Logger.getLogger(BlockingJobsMonitor.class.getName());
 
@@ -62,13 +127,193 @@ public class BlockingJobsMonitor {
      * @param blockingJobs line feed separated list og blocking jobs
      */
     public BlockingJobsMonitor(String blockingJobs) {
+        this(blockingJobs, BuildBlockerConfiguration.MatchingEngine.configured());
+    }
+
+    /**
+     * Constructor using the job configuration entry for blocking jobs and the engine to match them
+     *
+     * @param blockingJobs line feed separated list og blocking jobs
+     * @param engine       the engine to compile the regular expressions with
+     */
+    public BlockingJobsMonitor(String blockingJobs, BuildBlockerConfiguration.MatchingEngine engine) {
+        this.engine = engine;
         if (StringUtils.isNotBlank(blockingJobs)) {
-            this.blockingJobs = asList(blockingJobs.split("\n"));
+            compile(asList(blockingJobs.split("\n")));
         }
     }
 
+    private BlockingJobsMonitor(BlockingJobsMonitor monitor) {
+        this.engine = monitor.engine;
+        this.blockingJobs = monitor.blockingJobs;
+        this.stageRules = monitor.stageRules;
+        this.excluded = monitor.excluded;
+        this.combination = monitor.combination;
+        this.related = monitor.related;
+        this.subtree = monitor.subtree;
+        this.queuedUntil = monitor.queuedUntil;
+    }
+
+    /**
+     * Returns a monitor with the same blocking jobs that ignores the given build and the
+     * sub tasks it owns. The compiled patterns are shared with this monitor.
+     *
+     * @param executable the build to ignore
+     * @return the new monitor
+     */
+    public BlockingJobsMonitor excluding(Queue.Executable executable) {
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor(this);
+        monitor.excluded = executable;
+        return monitor;
+    }
+
+    /**
+     * Returns a monitor with the same blocking jobs that is blocked by matrix projects only while
+     * a configuration with the given axis combination is running or queued. The compiled patterns
+     * are shared with this monitor.
+     *
+     * @param combination the axis combination, e.g. <code>jdk=17,os=linux</code>
+     * @return the new monitor
+     */
+    public BlockingJobsMonitor forCombination(String combination) {
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor(this);
+        monitor.combination = combination;
+        return monitor;
+    }
+
+    /**
+     * Returns a monitor with the same blocking jobs that is not blocked by queued builds scheduled after
+     * the given time, e.g. the builds held back for a starving build by the {@link StarvationGuard}.
+     * Builds queued before still block. The compiled patterns are shared with this monitor.
+     *
+     * @param since the time in milliseconds
+     * @return the new monitor
+     */
+    BlockingJobsMonitor ignoringQueuedAfter(long since) {
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor(this);
+        monitor.queuedUntil = since;
+        return monitor;
+    }
+
+    /**
+     * Returns a monitor with the same blocking jobs that is also blocked by the given jobs, unless an
+     * exclusion line matches them. The compiled patterns are shared with this monitor.
+     *
+     * @param jobs the full names of the additional blocking jobs
+     * @return the new monitor
+     */
+    BlockingJobsMonitor including(Set<String> jobs) {
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor(this);
+        monitor.related = jobs;
+        return monitor;
+    }
+
+    /**
+     * Returns a monitor with the same blocking jobs that is blocked only by the jobs in the subtree of the
+     * given folder. Its running and queued builds are looked up in the partition of its top-level folder
+     * in the {@link RunningBuildsIndex} and the {@link QueuedItemsIndex} instead of on all executors and in
+     * the whole queue. The compiled patterns are shared with this monitor.
+     *
+     * @param folder the full name of the folder, or null for all jobs
+     * @return the new monitor, or this monitor if folder is null
+     */
+    BlockingJobsMonitor within(@CheckForNull String folder) {
+        if (folder == null) {
+            return this;
+        }
+        Map<String, BlockingJobsMonitor> monitors = withinFolders;
+        if (monitors == null) {
+            synchronized (this) {
+                if (withinFolders == null) {
+                    withinFolders = new ConcurrentHashMap<>();
+                }
+                monitors = withinFolders;
+            }
+        }
+        return monitors.computeIfAbsent(folder, name -> {
+            BlockingJobsMonitor monitor = new BlockingJobsMonitor(this);
+            monitor.subtree = name;
+            return monitor;
+        });
+    }
+
+    /**
+     * Returns a key for caching results of this monitor. The monitors derived by {@link #excluding(Queue.Executable)},
+     * {@link #forCombination(String)}, {@link #including(Set)} and {@link #within(String)} are created for
+     * every evaluation, but have equal keys as long as they share the compiled blocking jobs and qualifiers.
+     *
+     * @return the key
+     */
+    Object getCacheKey() {
+        return new CacheKey(this);
+    }
+
+    /**
+     * @return the statistics of the lines matching job names, in configuration order
+     */
+    List<AdaptivePatternSet.LineStatistics> getStatistics() {
+        return blockingJobs.getStatistics();
+    }
+
+    /**
+     * @return the engine the regular expressions were compiled with
+     */
+    public BuildBlockerConfiguration.MatchingEngine getEngine() {
+        return engine;
+    }
+
+    private NamePattern compile(String expression, boolean glob) {
+        return glob ? GlobPattern.compile(expression) : engine.compile(expression);
+    }
+
+    private void compile(List<String> lines) {
+        List<NamePattern> patterns = new ArrayList<>(lines.size());
+        List<String> patternLines = new ArrayList<>(lines.size());
+        List<NamePattern> exclusions = new ArrayList<>();
+        List<String> exclusionLines = new ArrayList<>();
+        List<StageRule> rules = new ArrayList<>();
+        for (String line : lines) {
+            try {
+                boolean exclusion = isExclusion(line);
+                String pattern = exclusion ? line.substring(EXCLUSION_PREFIX.length()) : line;
+                boolean glob = GlobPattern.isGlob(pattern);
+                String expression = glob ? pattern.substring(GlobPattern.PREFIX.length()) : pattern;
+                int separator = expression.indexOf(StageRule.SEPARATOR);
+                if (exclusion && separator >= 0) {
+                    LOG.logp(FINE, BlockingJobsMonitor.class.getName(), "compile", "ignoring exclusion with stage " + line);
+                } else if (exclusion) {
+                    exclusions.add(compile(expression, glob));
+                    exclusionLines.add(line);
+                } else if (separator >= 0) {
+                    rules.add(new StageRule(compile(expression.substring(0, separator), glob), compile(expression.substring(separator + 1), glob)));
+                } else {
+                    patterns.add(compile(expression, glob));
+                    patternLines.add(line);
+                }
+            } catch (PatternSyntaxException pse) {
+                LOG.logp(FINE, BlockingJobsMonitor.class.getName(), "compile", "ignoring invalid expression " + line, pse);
+            } catch (LinearPattern.UnsupportedPatternException upe) {
+                LOG.logp(FINE, BlockingJobsMonitor.class.getName(), "compile", "ignoring regular expression " + line + " not supported by the " + engine + " engine", upe);
+            }
+        }
+        this.blockingJobs = new AdaptivePatternSet(patterns, patternLines, exclusions, exclusionLines);
+        if (!rules.isEmpty()) {
+            this.stageRules = rules;
+        }
+    }
+
+    /**
+     * @param line a line of the blocking jobs
+     * @return true if the line excludes the jobs it matches
+     */
+    static boolean isExclusion(String line) {
+        return line.startsWith(EXCLUSION_PREFIX);
+    }
+
     public Job checkForBuildableQueueEntries(Queue.Item item) {
-        List<Queue.BuildableItem> buildableItems = Jenkins.get().getQueue().getBuildableItems();
+        List<? extends Queue.Item> buildableItems = subtree != null
+                ? QueuedItemsIndex.get().findWithin(subtree, item.getId(), true)
+                : Jenkins.get().getQueue().getBuildableItems();
 
         Job buildableItem = checkForPlannedBuilds(item, buildableItems);
         if (buildableItem != null) {
@@ -79,7 +324,9 @@ public class BlockingJobsMonitor {
     }
 
     public Job checkForQueueEntries(Queue.Item item) {
-        List<Queue.Item> buildableItems = asList(Jenkins.get().getQueue().getItems());
+        List<Queue.Item> buildableItems = subtree != null
+                ? QueuedItemsIndex.get().findWithin(subtree, item.getId(), false)
+                : asList(Jenkins.get().getQueue().getItems());
 
         Job buildableItem = checkForPlannedBuilds(item, buildableItems);
         if (buildableItem != null) {
@@ -90,7 +337,18 @@ public class BlockingJobsMonitor {
     }
 
     public Job checkNodeForBuildableQueueEntries(Queue.Item item, Node node) {
-        List<? extends Queue.Item> buildableItems = Jenkins.get().getQueue().getBuildableItems(node.toComputer());
+        List<? extends Queue.Item> buildableItems;
+        if (subtree != null) {
+            List<Queue.Item> buildableItemsOnNode = new ArrayList<>();
+            for (Queue.Item buildableItem : QueuedItemsIndex.get().findWithin(subtree, item.getId(), true)) {
+                if (node.canTake((Queue.BuildableItem) buildableItem) == null) {
+                    buildableItemsOnNode.add(buildableItem);
+                }
+            }
+            buildableItems = buildableItemsOnNode;
+        } else {
+            buildableItems = Jenkins.get().getQueue().getBuildableItems(node.toComputer());
+        }
 
         Job buildableItem = checkForPlannedBuilds(item, buildableItems);
         if (buildableItem != null) {
@@ -102,7 +360,10 @@ public class BlockingJobsMonitor {
 
     public Job checkNodeForQueueEntries(Queue.Item item, Node node) {
         List<Queue.Item> buildableItemsOnNode = new ArrayList<Queue.Item>();
-        for (Queue.Item buildableItem : Jenkins.get().getQueue().getItems()) {
+        List<Queue.Item> queuedItems = subtree != null
+                ? QueuedItemsIndex.get().findWithin(subtree, item.getId(), false)
+                : asList(Jenkins.get().getQueue().getItems());
+        for (Queue.Item buildableItem : queuedItems) {
             Label assignedLabel = buildableItem.getAssignedLabel();
             // assignedLabel is null when the job may run anywhere
             if (assignedLabel == null || assignedLabel.contains(node)) {
@@ -120,83 +381,322 @@ public class BlockingJobsMonitor {
     }
 
     public Job checkAllNodesForRunningBuilds() {
-        Computer[] computers = Jenkins.get().getComputers();
-
-        for (Computer computer : computers) {
-            Job task = checkComputerForRunningBuilds(computer);
+        if (subtree != null) {
+            Job task = checkSubtreeForRunningBuilds();
             if (task != null) {
                 return task;
             }
+        } else {
+            Computer[] computers = Jenkins.get().getComputers();
+
+            Set<Job> checked = new HashSet<>();
+            for (Computer computer : computers) {
+                Job task = checkComputerForRunningBuilds(computer, checked);
+                if (task != null) {
+                    return task;
+                }
+            }
         }
-        return null;
+        Job task = checkForRunningCombinations(null);
+        if (task != null) {
+            return task;
+        }
+        return checkForActiveStages();
     }
 
-    private Job checkComputerForRunningBuilds(Computer computer) {
+    /**
+     * Checks the running builds in the subtree of the folder only, in the partition of its top-level
+     * folder in the {@link RunningBuildsIndex}. Sub tasks like Pipeline <code>node {}</code> blocks are
+     * covered by the running build owning them.
+     */
+    @CheckForNull
+    private Job checkSubtreeForRunningBuilds() {
+        EvaluationBudget.check();
+        Job task = RunningBuildsIndex.get().findRunningWithin(this, subtree);
+        if (task != null) {
+            LOG.logp(FINE, getClass().getName(), "checkSubtreeForRunningBuilds", "build blocked by running build " + task + " in " + subtree);
+        }
+        return task;
+    }
+
+    private Job checkComputerForRunningBuilds(Computer computer, Set<Job> checked) {
         List<Executor> executors = computer.getExecutors();
 
         executors.addAll(computer.getOneOffExecutors());
 
+        boolean placeholders = false;
         for (Executor executor : executors) {
-            Job task = checkForRunningBuilds(executor);
+            EvaluationBudget.check();
+            WorkUnit unit = executor.isBusy() ? executor.getCurrentWorkUnit() : null;
+            if (unit == null) {
+                continue;
+            }
+            if (PlaceholderExecutionsIndex.isPlaceholder(unit.work)) {
+                // sub tasks owned by other builds, like Pipeline node {} blocks, are looked up once per node below
+                placeholders = true;
+                continue;
+            }
+            Job task = checkForRunningBuilds(executor, unit, checked);
             if (task != null) {
                 LOG.logp(FINE, getClass().getName(), "checkComputerForRunningBuilds", "build blocked by running build " + task);
                 return task;
             }
         }
+        if (placeholders) {
+            Job task = PlaceholderExecutionsIndex.get().findOnNode(this, computer.getName(), excluded);
+            if (task != null) {
+                LOG.logp(FINE, getClass().getName(), "checkComputerForRunningBuilds", "build blocked by running sub task of " + task);
+                return task;
+            }
+        }
         return null;
     }
 
+
     public Job checkNodeForRunningBuilds(Node node) {
         if (node == null) {
             return null;
         }
-        return checkComputerForRunningBuilds(node.toComputer());
+        Computer computer = node.toComputer();
+        Job task = checkComputerForRunningBuilds(computer, new HashSet<>());
+        if (task != null) {
+            return task;
+        }
+        task = checkForRunningCombinations(computer);
+        if (task != null) {
+            return task;
+        }
+        return checkForActiveStages();
+    }
+
+    /**
+     * Checks all nodes for running builds at once and returns the blocking job of every blocked node,
+     * in the order of the computers. Running Pipeline stages are not bound to a node and are not
+     * included, see {@link #checkForActiveStages()}.
+     *
+     * @return the blocking job by node name, "" for the built-in node; nodes without blocking builds are missing
+     */
+    public Map<String, Job> checkEachNodeForRunningBuilds() {
+        Map<String, Job> blocked = new LinkedHashMap<>();
+        for (Computer computer : Jenkins.get().getComputers()) {
+            Job task = checkComputerForRunningBuilds(computer, new HashSet<>());
+            if (task == null) {
+                task = checkForRunningCombinations(computer);
+            }
+            if (task != null) {
+                blocked.put(computer.getName(), task);
+            }
+        }
+        return blocked;
+    }
+
+    /**
+     * Checks the running matrix configurations with the same axis combination, if this monitor
+     * is limited to one combination. Running configurations are looked up in the
+     * {@link RunningBuildsIndex} by parent, so each matrix project is matched only once.
+     *
+     * @param computer the node to check or null for all nodes
+     * @return the matching matrix project or null
+     */
+    @CheckForNull
+    private Job checkForRunningCombinations(@CheckForNull Computer computer) {
+        if (combination == null) {
+            return null;
+        }
+        Job job = RunningBuildsIndex.get().findRunningCombination(this, combination, computer != null ? computer.getName() : null);
+        if (job != null) {
+            LOG.logp(FINE, getClass().getName(), "checkForRunningCombinations", "build blocked by running combination " + combination + " of " + job);
+        }
+        return job;
+    }
+
+    /**
+     * Checks the running Pipeline stages against the stage rules. Stages are not bound to a node,
+     * so a matching stage blocks on global and on node level.
+     *
+     * @return the job of the first matching running stage, or null
+     */
+    @CheckForNull
+    Job checkForActiveStages() {
+        if (stageRules.isEmpty()) {
+            return null;
+        }
+        try {
+            Job job = ActiveStagesIndex.get().findActive(this);
+            if (job != null) {
+                LOG.logp(FINE, getClass().getName(), "checkForActiveStages", "build blocked by running stage of " + job);
+            }
+            return job;
+        } catch (NoClassDefFoundError | IllegalStateException e) {
+            LOG.logp(FINE, getClass().getName(), "checkForActiveStages", "Unable to check running stages. Make sure workflow-api plugin is installed.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks a running stage against the stage rules.
+     *
+     * @param job       the job running the stage
+     * @param stageName the name of the stage
+     * @return true if one of the stage rules matches and the job is not excluded
+     */
+    boolean matchesStage(Job job, String stageName) {
+        for (StageRule rule : stageRules) {
+            if (rule.job.matches(EvaluationBudget.guard(job.getFullName()))
+                    && rule.stage.matches(EvaluationBudget.guard(stageName))) {
+                return !blockingJobs.isExcluded(EvaluationBudget.guard(job.getFullName()));
+            }
+        }
+        return false;
     }
 
     private Job checkForPlannedBuilds(Queue.Item item, List<? extends Queue.Item> buildableItems) {
         for (Queue.Item buildableItem : buildableItems) {
-            if (item != buildableItem) {
-                for (String blockingJob : this.blockingJobs) {
-                    if (buildableItem.task instanceof Job) {
-                        Job project = (Job) buildableItem.task;
-                        if (project.getFullName().matches(blockingJob)) {
-                            return project;
-                        }
+            EvaluationBudget.check();
+            if (item != buildableItem && buildableItem.task instanceof Job && buildableItem.getInQueueSince() <= queuedUntil) {
+                Job project = (Job) buildableItem.task;
+                if (combination != null && project instanceof MatrixConfiguration) {
+                    MatrixConfiguration configuration = (MatrixConfiguration) project;
+                    if (combination.equals(configuration.getCombination().toString()) && matches(configuration.getParent().getFullName())) {
+                        return configuration.getParent();
                     }
+                } else if (matches(project.getFullName())) {
+                    return project;
                 }
             }
         }
         return null;
     }
 
-    private Job checkForRunningBuilds(Executor executor) {
-        if (executor.isBusy()) {
-            Queue.Task task;
-            WorkUnit unit = executor.getCurrentWorkUnit();
-            if (unit != null) {
-                task = unit.work.getOwnerTask();
-            } else {
-                return null;
-            }
+    private Job checkForRunningBuilds(Executor executor, WorkUnit unit, Set<Job> checked) {
+        if (excluded != null && executor.getCurrentExecutable() == excluded) {
+            return null;
+        }
+        Queue.Task task = unit.work.getOwnerTask();
 
-            if (task instanceof MatrixConfiguration) {
-                task = ((MatrixConfiguration) task).getParent();
-            }
+        if (combination != null && (task instanceof MatrixConfiguration || task instanceof MatrixProject)) {
+            // only running configurations with the same combination block, see checkForRunningCombinations
+            return null;
+        }
 
-            if (task instanceof Job) {
-                Job job = (Job) task;
-                for (String blockingJob : this.blockingJobs) {
-                    try {
-                        if (job.getFullName().matches(blockingJob)) {
-                            return job;
-                        }
-                    } catch (java.util.regex.PatternSyntaxException pse) {
-                        continue;
-                    }
-                }
+        if (task instanceof MatrixConfiguration) {
+            task = ((MatrixConfiguration) task).getParent();
+        }
+
+        // the configurations of a matrix build and multiple builds of a job are matched only once
+        if (task instanceof Job && checked.add((Job) task)) {
+            Job job = (Job) task;
+            if (matches(job.getFullName())) {
+                return job;
             }
         }
         return null;
     }
 
+    /**
+     * Checks a single job against the blocking jobs. Matrix configurations are matched
+     * by the name of their parent project.
+     *
+     * @param job the job to check
+     * @return the (parent) job if it is a blocking job, null otherwise
+     */
+    @CheckForNull
+    public Job match(Job job) {
+        if (job instanceof MatrixConfiguration) {
+            job = ((MatrixConfiguration) job).getParent();
+        }
+        return matches(job.getFullName()) ? job : null;
+    }
+
+    /**
+     * Checks the job of a running build against the blocking jobs, like the builds on the executors.
+     *
+     * @param run the running build
+     * @return the (parent) job if it is a blocking job, null otherwise
+     */
+    @CheckForNull
+    Job matchRunning(Run<?, ?> run) {
+        Job job = run.getParent();
+        if (run == excluded || (combination != null && (job instanceof MatrixConfiguration || job instanceof MatrixProject))) {
+            // only running configurations with the same combination block, see checkForRunningCombinations
+            return null;
+        }
+        return match(job);
+    }
+
+    /**
+     * @param fullName the full name of a job
+     * @return true if a line matching job names matches the name and no exclusion line does, stage
+     * lines are not considered
+     */
+    boolean matchesJobName(String fullName) {
+        return matches(fullName);
+    }
+
+    private boolean matches(String fullName) {
+        if (subtree != null && !isWithinSubtree(fullName)) {
+            return false;
+        }
+        if (related.contains(fullName)) {
+            return !blockingJobs.isExcluded(EvaluationBudget.guard(fullName));
+        }
+        return blockingJobs.matches(EvaluationBudget.guard(fullName));
+    }
+
+    private boolean isWithinSubtree(String fullName) {
+        return fullName.length() > subtree.length() && fullName.charAt(subtree.length()) == '/' && fullName.startsWith(subtree);
+    }
+
+    /**
+     * A line of the form <code>job#stage</code>. Job names cannot contain <code>#</code>,
+     * so the first one always separates the job pattern from the stage pattern.
+     */
+    static final class StageRule {
+
+        static final char SEPARATOR = '#';
+
+        private final NamePattern job;
+        private final NamePattern stage;
+
+        StageRule(NamePattern job, NamePattern stage) {
+            this.job = job;
+            this.stage = stage;
+        }
+    }
+
+    private static final class CacheKey {
+        private final AdaptivePatternSet blockingJobs;
+        private final Set<String> related;
+        @CheckForNull
+        private final Queue.Executable excluded;
+        @CheckForNull
+        private final String combination;
+        @CheckForNull
+        private final String subtree;
+
+        private CacheKey(BlockingJobsMonitor monitor) {
+            this.blockingJobs = monitor.blockingJobs;
+            this.related = monitor.related;
+            this.excluded = monitor.excluded;
+            this.combination = monitor.combination;
+            this.subtree = monitor.subtree;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            // the compiled patterns, the related jobs and the excluded build are compared by identity
+            return blockingJobs == other.blockingJobs && related == other.related && excluded == other.excluded
+                    && Objects.equals(combination, other.combination) && Objects.equals(subtree, other.subtree);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(blockingJobs), System.identityHashCode(related),
+                    System.identityHashCode(excluded), combination, subtree);
+        }
+    }
 }
@@ -0,0 +1,211 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * Expands placeholders like <code>${BRANCH_NAME}</code> or <code>${FOLDER}</code> in the
+ * blocking jobs configuration using the values of the queued item.
+ * <p>
+ * The following placeholders are supported:
+ * </p>
+ * <ul>
+ *     <li><code>JOB_NAME</code> - the full name of the job, e.g. <code>team/project/main</code></li>
+ *     <li><code>JOB_BASE_NAME</code> - the short name of the job, e.g. <code>main</code></li>
+ *     <li><code>FOLDER</code> - the full name of the folder containing the job, empty on top level</li>
+ *     <li><code>BRANCH_NAME</code> - the short name of the job, as multibranch projects name their jobs after the branch</li>
+ *     <li>the name of any (non sensitive) build parameter of the queued item</li>
+ * </ul>
+ * <p>
+ * Build parameters take precedence over the built-in placeholders. The substituted values are
+ * quoted, also in glob lines, so they always match literally. Unknown placeholders are left untouched.
+ * A line is dropped if a value contains a line break, or <code>#</code> in front of the stage separator,
+ * as it would add lines or stage rules otherwise.
+ * </p>
+ */
+public final class BlockingJobsTemplate {
+
+    private static final Logger LOG = Logger.getLogger(BlockingJobsTemplate.class.getName());
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([A-Za-z_][A-Za-z0-9_]*)}");
+
+    private BlockingJobsTemplate() {
+    }
+
+    /**
+     * Returns true if the given configuration contains at least one placeholder.
+     *
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @return true if placeholders need to be expanded
+     */
+    public static boolean isTemplate(@CheckForNull String blockingJobs) {
+        return blockingJobs != null && blockingJobs.contains("${") && PLACEHOLDER.matcher(blockingJobs).find();
+    }
+
+    /**
+     * Expands the placeholders using the job and the build parameters of the queued item.
+     *
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @param item         the queued item
+     * @return the expanded configuration, or the given configuration if it contains no placeholders
+     */
+    public static String expand(@CheckForNull String blockingJobs, Queue.Item item) {
+        if (!isTemplate(blockingJobs)) {
+            return blockingJobs;
+        }
+        Job<?, ?> job = jobOf(item.task);
+        if (job == null) {
+            return blockingJobs;
+        }
+        return expand(blockingJobs, job, parametersOf(item.getAction(ParametersAction.class)));
+    }
+
+    /**
+     * Expands the placeholders using the given job and parameter values.
+     *
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @param job          the job providing the built-in placeholders
+     * @param parameters   the build parameters by name
+     * @return the expanded configuration
+     */
+    public static String expand(@CheckForNull String blockingJobs, Job<?, ?> job, Map<String, String> parameters) {
+        if (!isTemplate(blockingJobs)) {
+            return blockingJobs;
+        }
+        Map<String, String> values = new HashMap<>();
+        values.put("JOB_NAME", job.getFullName());
+        values.put("JOB_BASE_NAME", job.getName());
+        values.put("BRANCH_NAME", job.getName());
+        ItemGroup<?> parent = job.getParent();
+        values.put("FOLDER", parent != null ? parent.getFullName() : "");
+        values.putAll(parameters);
+
+        StringBuilder result = new StringBuilder(blockingJobs.length() + 32);
+        boolean first = true;
+        for (String line : blockingJobs.split("\n", -1)) {
+            String expanded = expandLine(line, values);
+            if (expanded == null) {
+                LOG.logp(FINE, BlockingJobsTemplate.class.getName(), "expand", "dropping line " + line + " of " + job.getFullName()
+                        + ", a value contains a line break or the stage separator");
+                continue;
+            }
+            if (!first) {
+                result.append('\n');
+            }
+            result.append(expanded);
+            first = false;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Expands the placeholders of a single line.
+     *
+     * @return the expanded line, or null if a value would change the syntax of the line: a value containing a
+     * line break would add lines, and a value containing <code>#</code> before the stage separator would add a
+     * stage rule. Job names contain neither, so such a value can never match literally.
+     */
+    @CheckForNull
+    private static String expandLine(String line, Map<String, String> values) {
+        Matcher matcher = PLACEHOLDER.matcher(line);
+        if (!matcher.find()) {
+            return line;
+        }
+        boolean glob = isGlobLine(line);
+        int separator = line.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR);
+        StringBuilder result = new StringBuilder(line.length() + 32);
+        do {
+            String value = values.get(matcher.group(1));
+            if (value != null && (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0
+                    || (value.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR) >= 0 && (separator < 0 || matcher.start() < separator)))) {
+                return null;
+            }
+            String replacement = value != null ? quote(value, glob) : matcher.group();
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        } while (matcher.find());
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String quote(String value, boolean glob) {
+        return glob ? GlobPattern.quote(value) : Pattern.quote(value);
+    }
+
+    private static boolean isGlobLine(String line) {
+        int start = line.startsWith(BlockingJobsMonitor.EXCLUSION_PREFIX) ? BlockingJobsMonitor.EXCLUSION_PREFIX.length() : 0;
+        return line.startsWith(GlobPattern.PREFIX, start);
+    }
+
+    /**
+     * Returns a pattern matching every expansion of a line, so an expanded line can be attributed to the
+     * line it was expanded from.
+     *
+     * @param line a line of the blocking jobs
+     * @return the pattern, matching the line itself if it contains no placeholders
+     */
+    static Pattern expansionsOf(String line) {
+        StringBuilder regex = new StringBuilder();
+        Matcher matcher = PLACEHOLDER.matcher(line);
+        int last = 0;
+        while (matcher.find()) {
+            regex.append(Pattern.quote(line.substring(last, matcher.start()))).append(".*");
+            last = matcher.end();
+        }
+        regex.append(Pattern.quote(line.substring(last)));
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Replaces every placeholder with a harmless literal, so that the syntax of a template can be validated.
+     *
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @return the configuration without placeholders
+     */
+    public static String stripPlaceholders(String blockingJobs) {
+        return PLACEHOLDER.matcher(blockingJobs).replaceAll("placeholder");
+    }
+
+    /**
+     * Collects the non sensitive build parameters.
+     *
+     * @param action the parameters of the item or build, may be null
+     * @return the parameter values by name
+     */
+    static Map<String, String> parametersOf(@CheckForNull ParametersAction action) {
+        if (action == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> parameters = new HashMap<>();
+        for (ParameterValue parameter : action.getParameters()) {
+            Object value = parameter.getValue();
+            if (value != null && !parameter.isSensitive()) {
+                parameters.put(parameter.getName(), String.valueOf(value));
+            }
+        }
+        return parameters;
+    }
+
+    @CheckForNull
+    private static Job<?, ?> jobOf(Queue.Task task) {
+        if (task instanceof Job) {
+            return (Job<?, ?>) task;
+        }
+        if (task.getOwnerTask() instanceof Job) {
+            return (Job<?, ?>) task.getOwnerTask();
+        }
+        return null;
+    }
+}
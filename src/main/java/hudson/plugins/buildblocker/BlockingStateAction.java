@@ -0,0 +1,139 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.RootAction;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jakarta.servlet.http.HttpServletResponse;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Read-only JSON endpoint at <code>build-blocker-state/</code> listing the items currently blocked by this
+ * plugin, served from the {@link BlockedTimeTracker} without looking at the queue.
+ * <p>
+ * The response carries its <code>tag</code> as ETag. A poller sending it back as <code>If-None-Match</code>,
+ * or sending the tag as <code>version</code> parameter, gets an empty <code>304 Not Modified</code> until an
+ * item was blocked, unblocked or got another blocker, without the items being listed again.
+ * </p>
+ * <p>
+ * Only the items of the jobs the user may read are listed, and only the blocking jobs the user may read are
+ * named. So the tag of users who are not administrators also depends on their name and authorities, as
+ * users with other permissions see other items.
+ * </p>
+ */
+@Extension
+public class BlockingStateAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return "build-blocker-state";
+    }
+
+    public void doIndex(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        Jenkins jenkins = Jenkins.get();
+        jenkins.checkPermission(Jenkins.READ);
+        BlockedTimeTracker tracker = BlockedTimeTracker.getIfAvailable();
+        long version = tracker.getVersion();
+        boolean administer = jenkins.hasPermission(Jenkins.ADMINISTER);
+        String tag = tagOf(version, administer ? null : Jenkins.getAuthentication2());
+        String etag = "\"" + tag + "\"";
+        rsp.setHeader("ETag", etag);
+        rsp.setHeader("Cache-Control", "no-cache");
+        if (etag.equals(req.getHeader("If-None-Match")) || tag.equals(req.getParameter("version"))) {
+            rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        Predicate<String> visible = administer ? name -> true : name -> isReadable(jenkins, name);
+        Predicate<String> named = administer ? name -> true : BlockedByBuildCause::isReadable;
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.getWriter().print(toJSON(version, tag, tracker.getBlockedItems(), visible, named));
+    }
+
+    /**
+     * @return true if the job of a blocked item exists and the current user may read it
+     */
+    private static boolean isReadable(Jenkins jenkins, String name) {
+        Item item;
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            item = jenkins.getItemByFullName(name);
+        }
+        return item != null && item.hasPermission(Item.READ);
+    }
+
+    /**
+     * @param version        the version of the blocked items
+     * @param authentication the user the items are listed for, null for an administrator, who sees all items
+     * @return the tag of the listed items, computed without listing them
+     */
+    static String tagOf(long version, @CheckForNull Authentication authentication) {
+        if (authentication == null) {
+            return String.valueOf(version);
+        }
+        List<String> authorities = new ArrayList<>();
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            authorities.add(authority.getAuthority());
+        }
+        Collections.sort(authorities);
+        authorities.add(0, authentication.getName());
+        return version + "-" + Integer.toHexString(authorities.hashCode());
+    }
+
+    /**
+     * @param version      the version of the blocked items
+     * @param tag          the tag of the listed items, see {@link #tagOf(long, Authentication)}
+     * @param blockedItems the blocked items
+     * @param visible      whether the job of an item may be shown to the current user
+     * @param named        whether a blocker may be named to the current user
+     * @return the listed items
+     */
+    static JSONObject toJSON(long version, String tag, List<BlockedTimeTracker.BlockedItem> blockedItems,
+                             Predicate<String> visible, Predicate<String> named) {
+        JSONArray items = new JSONArray();
+        for (BlockedTimeTracker.BlockedItem blocked : blockedItems) {
+            if (!visible.test(blocked.getJob())) {
+                continue;
+            }
+            JSONObject item = new JSONObject();
+            item.put("queueId", blocked.getQueueId());
+            item.put("job", blocked.getJob());
+            if (named.test(blocked.getBlocker())) {
+                item.put("blocker", blocked.getBlocker());
+            }
+            if (blocked.getBlockLevel() != null) {
+                item.put("blockLevel", blocked.getBlockLevel());
+            }
+            item.put("blockedSince", blocked.getBlockedSince());
+            items.add(item);
+        }
+        JSONObject json = new JSONObject();
+        json.put("version", version);
+        json.put("tag", tag);
+        json.put("timestamp", System.currentTimeMillis());
+        json.put("items", items);
+        return json;
+    }
+}
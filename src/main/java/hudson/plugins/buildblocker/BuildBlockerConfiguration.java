@@ -0,0 +1,225 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Global configuration of the build blocker, applying to the evaluation of all blocking jobs, and the
+ * {@link BlockerGroup}s shared by jobs and folders.
+ */
+@Extension
+@Symbol("buildBlocker")
+public class BuildBlockerConfiguration extends GlobalConfiguration {
+
+    /**
+     * the time in milliseconds a single blocking decision may take, 0 for no limit
+     */
+    private int evaluationBudget;
+
+    /**
+     * the decision if the budget was exceeded and there is no previous decision for the item
+     */
+    private Decision budgetExceededDecision;
+
+    /**
+     * the engine matching the blocking jobs
+     */
+    private MatchingEngine matchingEngine;
+
+    /**
+     * the named groups of blocking jobs referenced by job and folder properties
+     */
+    private List<BlockerGroup> groups;
+
+    /**
+     * the groups by their name
+     */
+    private transient volatile Map<String, BlockerGroup> groupsByName;
+
+    public BuildBlockerConfiguration() {
+        load();
+    }
+
+    public static BuildBlockerConfiguration get() {
+        return ExtensionList.lookupSingleton(BuildBlockerConfiguration.class);
+    }
+
+    /**
+     * @return the configuration, or null if Jenkins is not running, e.g. in unit tests
+     */
+    @CheckForNull
+    public static BuildBlockerConfiguration getIfAvailable() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return get();
+    }
+
+    /**
+     * Binds the submitted form and saves the configuration once, as the setters do not save.
+     */
+    @Override
+    public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+        boolean result = super.configure(req, json);
+        if (!json.has("groups")) {
+            // the form has no groups once the last one was deleted
+            setGroups(null);
+        }
+        save();
+        return result;
+    }
+
+    public int getEvaluationBudget() {
+        return evaluationBudget;
+    }
+
+    @DataBoundSetter
+    public void setEvaluationBudget(int evaluationBudget) {
+        this.evaluationBudget = Math.max(0, evaluationBudget);
+    }
+
+    public Decision getBudgetExceededDecision() {
+        return budgetExceededDecision != null ? budgetExceededDecision : Decision.ALLOW;
+    }
+
+    @DataBoundSetter
+    public void setBudgetExceededDecision(String budgetExceededDecision) {
+        this.budgetExceededDecision = Decision.from(budgetExceededDecision);
+    }
+
+    public MatchingEngine getMatchingEngine() {
+        return matchingEngine != null ? matchingEngine : MatchingEngine.REGEX;
+    }
+
+    @DataBoundSetter
+    public void setMatchingEngine(String matchingEngine) {
+        this.matchingEngine = MatchingEngine.from(matchingEngine);
+    }
+
+    public List<BlockerGroup> getGroups() {
+        return groups != null ? Collections.unmodifiableList(groups) : Collections.emptyList();
+    }
+
+    @DataBoundSetter
+    public void setGroups(List<BlockerGroup> groups) {
+        this.groups = groups != null && !groups.isEmpty() ? new ArrayList<>(groups) : null;
+        this.groupsByName = null;
+    }
+
+    /**
+     * @param name the name of a group
+     * @return the group, or null if there is no group with the name
+     */
+    @CheckForNull
+    public BlockerGroup getGroup(String name) {
+        Map<String, BlockerGroup> byName = groupsByName;
+        if (byName == null) {
+            byName = new HashMap<>();
+            for (BlockerGroup group : getGroups()) {
+                byName.putIfAbsent(group.getName(), group);
+            }
+            groupsByName = byName;
+        }
+        return byName.get(name);
+    }
+
+    public FormValidation doCheckEvaluationBudget(@QueryParameter int value) {
+        if (value < 0) {
+            return FormValidation.error(Messages.EvaluationBudget_Negative());
+        }
+        return FormValidation.ok();
+    }
+
+    public ListBoxModel doFillBudgetExceededDecisionItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add(Decision.ALLOW.name());
+        items.add(Decision.BLOCK.name());
+        return items;
+    }
+
+    public ListBoxModel doFillMatchingEngineItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add(MatchingEngine.REGEX.name());
+        items.add(MatchingEngine.LINEAR.name());
+        return items;
+    }
+
+    public enum Decision {
+        ALLOW, BLOCK;
+
+        public static Decision from(String value) {
+            if (value == null) {
+                return ALLOW;
+            }
+            try {
+                return valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ALLOW;
+            }
+        }
+
+        public boolean isBlock() {
+            return this.equals(BLOCK);
+        }
+    }
+
+    /**
+     * The engine matching the regular expressions of the blocking jobs. {@link #REGEX} supports all
+     * of {@link Pattern}, but backtracks. {@link #LINEAR} matches in linear time, see {@link LinearPattern}.
+     */
+    public enum MatchingEngine {
+        REGEX, LINEAR;
+
+        public static MatchingEngine from(String value) {
+            if (value == null) {
+                return REGEX;
+            }
+            try {
+                return valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return REGEX;
+            }
+        }
+
+        /**
+         * @return the configured engine, or {@link #REGEX} if Jenkins is not running, e.g. in unit tests
+         */
+        public static MatchingEngine configured() {
+            BuildBlockerConfiguration configuration = getIfAvailable();
+            return configuration != null ? configuration.getMatchingEngine() : REGEX;
+        }
+
+        /**
+         * Compiles a line of the blocking jobs. Lines are always checked to be valid for {@link Pattern}.
+         *
+         * @param regex the regular expression
+         * @return the compiled expression
+         * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+         * @throws LinearPattern.UnsupportedPatternException if the expression is not supported by this engine
+         */
+        NamePattern compile(String regex) {
+            Pattern pattern = Pattern.compile(regex);
+            if (this == LINEAR) {
+                return LinearPattern.compile(regex);
+            }
+            return name -> pattern.matcher(name).matches();
+        }
+    }
+}
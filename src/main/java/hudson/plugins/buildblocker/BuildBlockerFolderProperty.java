@@ -4,13 +4,23 @@ import com.cloudbees.hudson.plugins.folder.*;
 
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.Extension;
+import hudson.model.Item;
 import hudson.model.ItemGroup;
 import hudson.model.Job;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
 import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.POST;
+
+import java.util.Map;
+import java.util.TreeMap;
 
 import static java.util.logging.Level.FINE;
 
@@ -25,6 +35,13 @@ public class BuildBlockerFolderProperty extends AbstractFolderProperty<AbstractF
     private BuildBlockerProperty.BlockLevel blockLevel;
     private BuildBlockerProperty.QueueScanScope scanQueueFor;
     private String blockingJobs;
+    private boolean sameAxisCombinationOnly;
+    private boolean blockWhenAllNodesBlocked;
+    private int starvationThreshold;
+    private String blockerGroup;
+    private BuildBlockerProperty.DependencyScope blockOnDependencies;
+    private int dependencyDepth;
+    private boolean subtreeOnly;
 
     @DataBoundConstructor
     public BuildBlockerFolderProperty() {}
@@ -49,6 +66,63 @@ public class BuildBlockerFolderProperty extends AbstractFolderProperty<AbstractF
         return blockingJobs;
     }
 
+    @Override
+    public BuildBlockerProperty.DependencyScope getBlockOnDependencies() {
+        return blockOnDependencies != null ? blockOnDependencies : BuildBlockerProperty.DependencyScope.NONE;
+    }
+
+    @DataBoundSetter
+    public void setBlockOnDependencies(String blockOnDependencies) {
+        this.blockOnDependencies = BuildBlockerProperty.DependencyScope.from(blockOnDependencies);
+    }
+
+    @Override
+    public int getDependencyDepth() {
+        return dependencyDepth;
+    }
+
+    @DataBoundSetter
+    public void setDependencyDepth(int dependencyDepth) {
+        this.dependencyDepth = Math.max(0, dependencyDepth);
+    }
+
+    public boolean isSubtreeOnly() {
+        return subtreeOnly;
+    }
+
+    @DataBoundSetter
+    public void setSubtreeOnly(boolean subtreeOnly) {
+        this.subtreeOnly = subtreeOnly;
+    }
+
+    /**
+     * @return the full name of the folder of this property if only the jobs in its subtree are considered
+     */
+    @Override
+    public String getSubtree() {
+        return subtreeOnly && getOwner() != null ? getOwner().getFullName() : null;
+    }
+
+    @Override
+    public String getBlockerGroup() {
+        return blockerGroup;
+    }
+
+    @Override
+    public boolean isSameAxisCombinationOnly() {
+        return sameAxisCombinationOnly;
+    }
+
+    @Override
+    public boolean isBlockWhenAllNodesBlocked() {
+        return blockWhenAllNodesBlocked;
+    }
+
+    @Override
+    public int getStarvationThreshold() {
+        return starvationThreshold;
+    }
+
     @DataBoundSetter
     public void setBlockLevel(String blockLevel) {
         this.blockLevel = BuildBlockerProperty.BlockLevel.from(blockLevel);
@@ -69,6 +143,26 @@ public class BuildBlockerFolderProperty extends AbstractFolderProperty<AbstractF
         this.blockingJobs = blockingJobs;
     }
 
+    @DataBoundSetter
+    public void setBlockerGroup(String blockerGroup) {
+        this.blockerGroup = StringUtils.trimToNull(blockerGroup);
+    }
+
+    @DataBoundSetter
+    public void setSameAxisCombinationOnly(boolean sameAxisCombinationOnly) {
+        this.sameAxisCombinationOnly = sameAxisCombinationOnly;
+    }
+
+    @DataBoundSetter
+    public void setBlockWhenAllNodesBlocked(boolean blockWhenAllNodesBlocked) {
+        this.blockWhenAllNodesBlocked = blockWhenAllNodesBlocked;
+    }
+
+    @DataBoundSetter
+    public void setStarvationThreshold(int starvationThreshold) {
+        this.starvationThreshold = Math.max(0, starvationThreshold);
+    }
+
     @Extension(optional = true)
     @Symbol("folderBuildBlocker")
     public static final class DescriptorImpl extends AbstractFolderPropertyDescriptor {
@@ -85,6 +179,35 @@ public class BuildBlockerFolderProperty extends AbstractFolderProperty<AbstractF
             return BuildBlockerUtils.doCheckRegex(blockingJobs);
         }
 
+        public ListBoxModel doFillBlockOnDependenciesItems() {
+            return BuildBlockerUtils.doFillBlockOnDependenciesItems();
+        }
+
+        public ListBoxModel doFillBlockerGroupItems() {
+            return BuildBlockerUtils.doFillBlockerGroupItems();
+        }
+
+        public FormValidation doCheckBlockerGroup(@QueryParameter final String value) {
+            return BuildBlockerUtils.doCheckBlockerGroup(value);
+        }
+
+        /**
+         * Preview the jobs matched by the blocking jobs entered by the user
+         */
+        @POST
+        public FormValidation doPreview(@AncestorInPath Item item, @QueryParameter final String blockingJobs) {
+            return BuildBlockerUtils.doPreview(item, blockingJobs);
+        }
+
+        /**
+         * Return the jobs matched by the blocking jobs as JSON, paged by start and limit
+         */
+        @POST
+        public HttpResponse doPreviewMatches(@AncestorInPath Item item, @QueryParameter final String blockingJobs,
+                                             @QueryParameter final int start, @QueryParameter final int limit) {
+            return BuildBlockerUtils.doPreviewMatches(item, blockingJobs, start, limit);
+        }
+
         /**
          * Return the build blocker folder property for a job by checking all parent
          * @param job The job
@@ -103,6 +226,21 @@ public class BuildBlockerFolderProperty extends AbstractFolderProperty<AbstractF
             return null;
         }
 
+        /**
+         * Return all build blocker folder properties
+         * @return The properties by the full name of their folder
+         */
+        public Map<String, IBuildBlockerProperty> getBuildBlockerFolderProperties() {
+            Map<String, IBuildBlockerProperty> properties = new TreeMap<>();
+            for (AbstractFolder<?> folder : Jenkins.get().allItems(AbstractFolder.class)) {
+                BuildBlockerFolderProperty folderProperty = folder.getProperties().get(BuildBlockerFolderProperty.class);
+                if (folderProperty != null) {
+                    properties.put(folder.getFullName(), folderProperty);
+                }
+            }
+            return properties;
+        }
+
     }
 
 }
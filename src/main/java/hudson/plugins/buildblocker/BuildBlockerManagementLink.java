@@ -0,0 +1,141 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Api;
+import hudson.model.ManagementLink;
+import hudson.security.Permission;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Management page of the build blocker, reporting the currently blocked items, the durations of the
+ * evaluations, the hit rates of the caches, the cycles of queued builds blocking each other, the lines of
+ * the blocking jobs, see {@link PatternReport}, and the time queued items were blocked, see
+ * {@link BlockedTimeTracker}. Everything but the pattern report is kept in memory, so the page does not
+ * look at the queue. The pattern report is shown on its own page <code>patterns</code>, so it is only
+ * created when asked for. The reports are also available as <code>api/json</code>, and the pattern report
+ * as <code>patterns/api/json</code>.
+ */
+@Extension
+@ExportedBean
+public class BuildBlockerManagementLink extends ManagementLink implements StaplerProxy {
+
+    @Override
+    public String getIconFileName() {
+        return "notepad.svg";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.ManagementLink_DisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.ManagementLink_Description();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "build-blocker";
+    }
+
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    @Override
+    public Permission getRequiredPermission() {
+        return Jenkins.ADMINISTER;
+    }
+
+    @Override
+    public Object getTarget() {
+        Jenkins.get().checkPermission(getRequiredPermission());
+        return this;
+    }
+
+    /**
+     * Not exported, as creating the report resolves the lines against all jobs after a configuration change.
+     * The report is exported by itself as <code>patterns/api/json</code>.
+     *
+     * @return the report of the lines of the blocking jobs with their current statistics, see {@link PatternReport#create}
+     */
+    public PatternReport getPatterns() {
+        BuildBlockerQueueTaskDispatcher dispatcher = getDispatcher();
+        return PatternReport.create(dispatcher != null ? dispatcher.getMonitorFactory() : null);
+    }
+
+    /**
+     * @return the items currently blocked by this plugin, longest blocked first
+     */
+    @Exported
+    public List<BlockedTimeTracker.BlockedItem> getBlockedItems() {
+        BlockedTimeTracker tracker = BlockedTimeTracker.getIfAvailable();
+        return tracker != null ? tracker.getBlockedItems() : Collections.emptyList();
+    }
+
+    /**
+     * @return the durations of the evaluations and the hit rates of the caches since the last restart, null if
+     * the dispatcher is not installed
+     */
+    @CheckForNull
+    @Exported
+    public EvaluationStatistics getStatistics() {
+        BuildBlockerQueueTaskDispatcher dispatcher = getDispatcher();
+        return dispatcher != null ? dispatcher.getStatistics() : null;
+    }
+
+    /**
+     * @return the number of cycles of queued builds blocking each other since the last restart
+     */
+    @Exported
+    public long getDetectedCycles() {
+        DeadlockDetector detector = DeadlockDetector.getIfAvailable();
+        return detector != null ? detector.getDetectedCycles() : 0;
+    }
+
+    /**
+     * @return the most recent cycles of queued builds blocking each other
+     */
+    @Exported
+    public List<DeadlockDetector.Cycle> getRecentCycles() {
+        DeadlockDetector detector = DeadlockDetector.getIfAvailable();
+        return detector != null ? detector.getRecentCycles() : Collections.emptyList();
+    }
+
+    /**
+     * @return the time queued items were blocked per job since the last restart, most blocked first
+     */
+    @Exported
+    public List<BlockedTimeTracker.Attribution> getBlockedJobs() {
+        BlockedTimeTracker tracker = BlockedTimeTracker.getIfAvailable();
+        return tracker != null ? tracker.getJobs() : Collections.emptyList();
+    }
+
+    /**
+     * @return the time queued items were blocked per blocker since the last restart, most blocking first
+     */
+    @Exported
+    public List<BlockedTimeTracker.Attribution> getBlockers() {
+        BlockedTimeTracker tracker = BlockedTimeTracker.getIfAvailable();
+        return tracker != null ? tracker.getBlockers() : Collections.emptyList();
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @CheckForNull
+    private static BuildBlockerQueueTaskDispatcher getDispatcher() {
+        return ExtensionList.lookup(BuildBlockerQueueTaskDispatcher.class).get(BuildBlockerQueueTaskDispatcher.class);
+    }
+}
@@ -25,14 +25,20 @@
 package hudson.plugins.buildblocker;
 
 import hudson.Extension;
+import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.JobProperty;
 import hudson.model.JobPropertyDescriptor;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import org.apache.commons.lang3.StringUtils;
 import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.verb.POST;
 
 import java.util.Arrays;
 import java.util.List;
@@ -54,6 +60,13 @@ public class BuildBlockerProperty extends JobProperty<Job<?, ?>> implements IBui
     private BlockLevel blockLevel;
     private QueueScanScope scanQueueFor;
     private String blockingJobs;
+    private boolean sameAxisCombinationOnly;
+    private boolean blockWhenAllNodesBlocked;
+    private int starvationThreshold;
+    private String jobsToBlock;
+    private String blockerGroup;
+    private DependencyScope blockOnDependencies;
+    private int dependencyDepth;
 
     @Override
     public BlockLevel getBlockLevel() {
@@ -75,6 +88,86 @@ public class BuildBlockerProperty extends JobProperty<Job<?, ?>> implements IBui
         return blockingJobs;
     }
 
+    @Override
+    public DependencyScope getBlockOnDependencies() {
+        return blockOnDependencies != null ? blockOnDependencies : DependencyScope.NONE;
+    }
+
+    @DataBoundSetter
+    public void setBlockOnDependencies(String blockOnDependencies) {
+        this.blockOnDependencies = DependencyScope.from(blockOnDependencies);
+    }
+
+    @Override
+    public int getDependencyDepth() {
+        return dependencyDepth;
+    }
+
+    @DataBoundSetter
+    public void setDependencyDepth(int dependencyDepth) {
+        this.dependencyDepth = Math.max(0, dependencyDepth);
+    }
+
+    /**
+     * @return null, as a job property always considers all jobs
+     */
+    @Override
+    public String getSubtree() {
+        return null;
+    }
+
+    @Override
+    public String getBlockerGroup() {
+        return blockerGroup;
+    }
+
+    @DataBoundSetter
+    public void setBlockerGroup(String blockerGroup) {
+        this.blockerGroup = StringUtils.trimToNull(blockerGroup);
+    }
+
+    @Override
+    public boolean isSameAxisCombinationOnly() {
+        return sameAxisCombinationOnly;
+    }
+
+    @Override
+    public boolean isBlockWhenAllNodesBlocked() {
+        return blockWhenAllNodesBlocked;
+    }
+
+    @Override
+    public int getStarvationThreshold() {
+        return starvationThreshold;
+    }
+
+    /**
+     * @return the line feed separated list of jobs blocked while this job is running or queued, see {@link ReverseBlockerIndex}
+     */
+    public String getJobsToBlock() {
+        return jobsToBlock;
+    }
+
+    @DataBoundSetter
+    public void setJobsToBlock(String jobsToBlock) {
+        this.jobsToBlock = StringUtils.trimToNull(jobsToBlock);
+    }
+
+    @DataBoundSetter
+    public void setSameAxisCombinationOnly(boolean sameAxisCombinationOnly) {
+        this.sameAxisCombinationOnly = sameAxisCombinationOnly;
+    }
+
+    @DataBoundSetter
+    public void setBlockWhenAllNodesBlocked(boolean blockWhenAllNodesBlocked) {
+        this.blockWhenAllNodesBlocked = blockWhenAllNodesBlocked;
+    }
+
+    @DataBoundSetter
+    public void setStarvationThreshold(int starvationThreshold) {
+        this.starvationThreshold = Math.max(0, starvationThreshold);
+    }
+
     @DataBoundConstructor
     public BuildBlockerProperty(boolean useBuildBlocker, String blockLevel, String scanQueueFor, String blockingJobs) {
         LOG.logp(FINE, getClass().getName(), "BuildBlockerProperty", "useBuildBlocker: " + useBuildBlocker + " blockLevel: " + blockLevel + " scanQueueFor: " +
@@ -110,6 +203,42 @@ public class BuildBlockerProperty extends JobProperty<Job<?, ?>> implements IBui
             return BuildBlockerUtils.doCheckRegex(blockingJobs);
         }
 
+        /**
+         * Check the regular expressions of the jobs to block entered by the user
+         */
+        public FormValidation doCheckJobsToBlock(@QueryParameter final String value) {
+            return BuildBlockerUtils.doCheckRegex(value);
+        }
+
+        public ListBoxModel doFillBlockOnDependenciesItems() {
+            return BuildBlockerUtils.doFillBlockOnDependenciesItems();
+        }
+
+        public ListBoxModel doFillBlockerGroupItems() {
+            return BuildBlockerUtils.doFillBlockerGroupItems();
+        }
+
+        public FormValidation doCheckBlockerGroup(@QueryParameter final String value) {
+            return BuildBlockerUtils.doCheckBlockerGroup(value);
+        }
+
+        /**
+         * Preview the jobs matched by the blocking jobs entered by the user
+         */
+        @POST
+        public FormValidation doPreview(@AncestorInPath Item item, @QueryParameter final String blockingJobs) {
+            return BuildBlockerUtils.doPreview(item, blockingJobs);
+        }
+
+        /**
+         * Return the jobs matched by the blocking jobs as JSON, paged by start and limit
+         */
+        @POST
+        public HttpResponse doPreviewMatches(@AncestorInPath Item item, @QueryParameter final String blockingJobs,
+                                             @QueryParameter final int start, @QueryParameter final int limit) {
+            return BuildBlockerUtils.doPreviewMatches(item, blockingJobs, start, limit);
+        }
+
         /**
          * Returns always true as it can be used in all types of jobs.
          *
@@ -172,4 +301,34 @@ public class BuildBlockerProperty extends JobProperty<Job<?, ?>> implements IBui
         }
     }
 
+    /**
+     * The relatives of a job in the dependency graph of Jenkins blocking it, see {@link DependencyClosure}.
+     */
+    public enum DependencyScope {
+        NONE, UPSTREAM, DOWNSTREAM, BOTH;
+
+        public static DependencyScope from(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            try {
+                return valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return NONE;
+            }
+        }
+
+        public boolean isUpstream() {
+            return this.equals(UPSTREAM) || this.equals(BOTH);
+        }
+
+        public boolean isDownstream() {
+            return this.equals(DOWNSTREAM) || this.equals(BOTH);
+        }
+
+        public boolean isNone() {
+            return this.equals(NONE);
+        }
+    }
+
 }
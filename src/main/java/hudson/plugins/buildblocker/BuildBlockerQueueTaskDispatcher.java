@@ -26,16 +26,34 @@ package hudson.plugins.buildblocker;
 
 import hudson.Extension;
 import hudson.matrix.MatrixConfiguration;
+import hudson.matrix.MatrixProject;
+import hudson.model.Computer;
 import hudson.model.Job;
+import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.Queue;
+import hudson.model.Run;
 import hudson.model.queue.CauseOfBlockage;
 import hudson.model.queue.QueueTaskDispatcher;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
 
 /**
  * Queue task dispatcher that evaluates the given blocking jobs in the config of the
@@ -46,10 +64,73 @@ public class BuildBlockerQueueTaskDispatcher extends QueueTaskDispatcher {
 
     private static final Logger LOG = Logger.getLogger(BuildBlockerQueueTaskDispatcher.class.getName());
 
+    /**
+     * how long before the expected end of the blocking builds a blocked item is checked again on every pass
+     */
+    static final long RECHECK_MARGIN = SystemProperties.getInteger(BuildBlockerQueueTaskDispatcher.class.getName() + ".recheckMargin", 60) * 1000L;
+
+    /**
+     * the number of items whose last decision is kept for exceeding the evaluation budget
+     */
+    static final int LAST_DECISIONS = 1024;
+
+    /**
+     * the last decision of an item, if it was not blocked
+     */
+    private static final CauseOfBlockage NOT_BLOCKED = CauseOfBlockage.fromMessage(Messages._NotBlocked());
+
     private MonitorFactory monitorFactory;
 
+    /**
+     * the durations of the evaluations and the hit rates of the caches, for the management page
+     */
+    private final EvaluationStatistics statistics = new EvaluationStatistics();
+
+    /**
+     * the items blocked by running builds with a known expected end by queue id, see {@link #checkForBlock}
+     */
+    private final Map<Long, Backoff> backoffs = new ConcurrentHashMap<>();
+
+    /**
+     * the last decisions made within the evaluation budget, by queue id and node name
+     */
+    private final Map<String, CauseOfBlockage> lastDecisions = Collections.synchronizedMap(
+            new LinkedHashMap<String, CauseOfBlockage>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CauseOfBlockage> eldest) {
+                    return size() > LAST_DECISIONS;
+                }
+            });
+
+    /**
+     * the number of evaluations that exceeded the budget, by the name of the task whose configuration was evaluated
+     */
+    private final Map<String, Long> budgetViolations = new ConcurrentHashMap<>();
+
+    /**
+     * the order of the checks of running builds and the queue per configuration
+     */
+    private final CheckPlanner planner = new CheckPlanner();
+
+    /**
+     * the jobs related by the dependency graph, cached until the graph is rebuilt
+     */
+    private final DependencyClosure dependencies = new DependencyClosure();
+
+    /**
+     * the nodes blocked by running builds by {@link BlockingJobsMonitor#getCacheKey()}, see {@link #checkEligibleNodes};
+     * entries of an outdated version are dropped whenever a new one is added
+     */
+    private final Map<Object, BlockedNodes> blockedNodes = new HashMap<>();
+
+    /**
+     * the configuration of a property by property, see {@link #configurationOf}; a property is replaced and not
+     * changed when its job, folder or group is saved
+     */
+    private final Map<IBuildBlockerProperty, Configuration> configurations = Collections.synchronizedMap(new WeakHashMap<>());
+
     public BuildBlockerQueueTaskDispatcher() {
-        monitorFactory = new DefaultMonitorFactory();
+        monitorFactory = new DefaultMonitorFactory(statistics);
     }
 
     //default scope for testability
@@ -57,6 +138,14 @@ public class BuildBlockerQueueTaskDispatcher extends QueueTaskDispatcher {
         this.monitorFactory = monitorFactory;
     }
 
+    MonitorFactory getMonitorFactory() {
+        return monitorFactory;
+    }
+
+    EvaluationStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * <p>
      * Called whenever {@link hudson.model.Queue} is considering if {@link hudson.model.Queue.Item} is ready to
@@ -90,18 +179,25 @@ public class BuildBlockerQueueTaskDispatcher extends QueueTaskDispatcher {
      */
     @Override
     public CauseOfBlockage canRun(Queue.Item item) {
-        if (item.task instanceof Job) {
-
-            IBuildBlockerProperty property = getBuildBlockerProperty(item);
-
+        IBuildBlockerProperty property = null;
+        CauseOfBlockage cause = checkForStarvingBuild(item);
+        if (cause == null) {
+            property = getBuildBlockerProperty(item);
             if (property != null && property.isUseBuildBlocker()) {
-                CauseOfBlockage Job = checkForBlock(item, property);
-                if (Job != null) {
-                    return Job;
-                }
+                cause = checkForBlock(item, property);
+            }
+            if (cause == null) {
+                cause = checkForReverseBlock(item);
             }
         }
 
+        BlockedTimeTracker tracker = BlockedTimeTracker.getIfAvailable();
+        if (tracker != null) {
+            tracker.update(item, cause, property, false);
+        }
+        if (cause != null) {
+            return cause;
+        }
         return super.canRun(item);
     }
 
@@ -110,6 +206,11 @@ public class BuildBlockerQueueTaskDispatcher extends QueueTaskDispatcher {
         IBuildBlockerProperty property = getBuildBlockerProperty(item);
         if (property != null && property.isUseBuildBlocker()) {
             CauseOfBlockage causeOfBlockage = checkForBlock(node, item, property);
+            // a node not blocking the item takes it, so the item is unblocked as well
+            BlockedTimeTracker tracker = BlockedTimeTracker.getIfAvailable();
+            if (tracker != null) {
+                tracker.update(item, causeOfBlockage, property, true);
+            }
             if (causeOfBlockage != null) {
                 return causeOfBlockage;
             }
@@ -117,74 +218,580 @@ public class BuildBlockerQueueTaskDispatcher extends QueueTaskDispatcher {
         return super.canTake(node, item);
     }
 
+    /**
+     * Checks whether the item is held back for a starving build, see {@link StarvationGuard}.
+     */
+    @CheckForNull
+    private CauseOfBlockage checkForStarvingBuild(Queue.Item item) {
+        StarvationGuard guard = StarvationGuard.getIfAvailable();
+        if (guard == null || !guard.isHoldingAny()) {
+            return null;
+        }
+        return record(EvaluationEvent.Source.STARVATION, null, item, null, () -> {
+            String starving = guard.findHolding(item);
+            return starving != null ? new LocalizedCause(Messages._HeldForStarvingBuild(starving)) : null;
+        });
+    }
+
+    /**
+     * Checks whether a job protecting the item by a reverse declaration is running or queued, see {@link ReverseBlockerIndex}.
+     */
+    @CheckForNull
+    private CauseOfBlockage checkForReverseBlock(Queue.Item item) {
+        ReverseBlockerIndex index = ReverseBlockerIndex.getIfAvailable();
+        if (index == null || !(item.task instanceof Job)) {
+            return null;
+        }
+        Job target = item.task instanceof MatrixConfiguration ? ((MatrixConfiguration) item.task).getParent() : (Job) item.task;
+        String[] protectors = index.getProtectors(target.getFullName());
+        if (protectors == null) {
+            return null;
+        }
+        return record(EvaluationEvent.Source.REVERSE, null, item, null, () -> checkForReverseBlock(item, index, protectors));
+    }
+
+    private CauseOfBlockage checkForReverseBlock(Queue.Item item, ReverseBlockerIndex index, String[] protectors) {
+        EvaluationEvent.checkRan("REVERSE");
+        DeadlockDetector detector = DeadlockDetector.getIfAvailable();
+        boolean scanQueue = detector == null || !detector.isReleased(item);
+        Job blocker = null;
+        boolean queued = false;
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            for (String protector : protectors) {
+                Job job = Jenkins.get().getItemByFullName(protector, Job.class);
+                if (job == null) {
+                    continue;
+                }
+                if (!RunningBuildsIndex.get().findRunningBuilds(job).isEmpty()) {
+                    blocker = job;
+                    queued = false;
+                    break;
+                }
+                if (blocker == null && scanQueue && index.isQueued(protector, item.getId())) {
+                    blocker = job;
+                    queued = true;
+                }
+            }
+        }
+        if (detector != null) {
+            detector.update(item, blocker, queued);
+        }
+        if (blocker == null) {
+            return null;
+        }
+        LOG.logp(FINE, getClass().getName(), "checkForReverseBlock", item + " is blocked by " + blocker.getFullName() + ", which protects it");
+        return new BlockedByBuildCause(item.getInQueueSince(), blocker.getDisplayName(), blocker.getFullName(), -1);
+    }
+
     private CauseOfBlockage checkForBlock(Queue.Item item, IBuildBlockerProperty blockingJobs) {
         return checkForBlock(null, item, blockingJobs);
     }
 
+    /**
+     * Decides whether the item is blocked, measuring the evaluation for the {@link EvaluationStatistics} and
+     * recording an {@link EvaluationEvent} if Java Flight Recorder records it.
+     */
     private CauseOfBlockage checkForBlock(Node node, Queue.Item item, IBuildBlockerProperty property) {
-        if (property.getBlockingJobs() == null) {
+        if (property.getBlockingJobs() == null && property.getBlockOnDependencies().isNone()) {
+            return null;
+        }
+        String configuration = configurationOf(property).text;
+        long start = System.nanoTime();
+        try {
+            return record(EvaluationEvent.Source.PROPERTY, node, item, property, () -> decide(node, item, property));
+        } finally {
+            statistics.record(configuration, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records an {@link EvaluationEvent} for a decision if Java Flight Recorder records it.
+     *
+     * @param source   the check deciding
+     * @param node     the node the item is checked for, null if checked for any node
+     * @param property the property of the item, null if the decision does not depend on it
+     * @param decision the decision, returning the cause of the blockage or null
+     */
+    private static CauseOfBlockage record(EvaluationEvent.Source source, Node node, Queue.Item item,
+                                          IBuildBlockerProperty property, Supplier<CauseOfBlockage> decision) {
+        EvaluationEvent event = new EvaluationEvent();
+        if (!event.isEnabled()) {
+            return decision.get();
+        }
+        event.begin();
+        EvaluationEvent.startChecks();
+        CauseOfBlockage cause = null;
+        try {
+            cause = decision.get();
+            return cause;
+        } finally {
+            event.end();
+            String checks = EvaluationEvent.endChecks();
+            if (event.shouldCommit()) {
+                event.source = source.name();
+                event.item = item.task.getFullDisplayName();
+                event.queueId = item.getId();
+                event.node = node != null ? node.getNodeName() : "";
+                event.propertySource = property != null ? propertySourceOf(property) : "";
+                event.blockLevel = property != null ? property.getBlockLevel().name() : "";
+                event.scanQueueFor = property != null ? property.getScanQueueFor().name() : "";
+                event.checks = checks;
+                event.blocked = cause != null;
+                event.decision = cause != null ? cause.getShortDescription() : "";
+                event.commit();
+            }
+        }
+    }
+
+    private CauseOfBlockage decide(Node node, Queue.Item item, IBuildBlockerProperty property) {
+        if (property.isSameAxisCombinationOnly() && item.task instanceof MatrixProject) {
+            // the configurations of the matrix build are blocked per axis combination instead
             return null;
         }
 
-        Job result = checkAccordingToProperties(node, item, property);
+        if (checkWasCalledInGlobalContext(node)) {
+            Backoff backoff = backoffs.get(item.getId());
+            if (backoff != null) {
+                if (backoff.isValidFor(configurationOf(property))) {
+                    EvaluationEvent.checkRan("BACKOFF");
+                    statistics.hit(EvaluationStatistics.Cache.BACKOFFS);
+                    return backoff.cause;
+                }
+                backoffs.remove(item.getId());
+            }
+            statistics.miss(EvaluationStatistics.Cache.BACKOFFS);
+        }
 
+        BuildBlockerConfiguration configuration = BuildBlockerConfiguration.getIfAvailable();
+        if (configuration == null || configuration.getEvaluationBudget() <= 0) {
+            return evaluate(node, item, property);
+        }
+        String key = checkWasCalledInGlobalContext(node) ? String.valueOf(item.getId()) : item.getId() + "@" + node.getNodeName();
+        EvaluationBudget.start(configuration.getEvaluationBudget());
+        try {
+            CauseOfBlockage cause = evaluate(node, item, property);
+            lastDecisions.put(key, cause != null ? cause : NOT_BLOCKED);
+            return cause;
+        } catch (EvaluationBudget.ExceededException e) {
+            EvaluationEvent.checkRan("BUDGET_EXCEEDED");
+            reportBudgetExceeded(item, configuration.getEvaluationBudget());
+            CauseOfBlockage lastDecision = lastDecisions.get(key);
+            if (lastDecision != null) {
+                return lastDecision != NOT_BLOCKED ? lastDecision : null;
+            }
+            if (configuration.getBudgetExceededDecision().isBlock()) {
+                return new LocalizedCause(Messages._EvaluationBudget_Exceeded(configuration.getEvaluationBudget()));
+            }
+            return null;
+        } finally {
+            EvaluationBudget.end();
+        }
+    }
+
+    private CauseOfBlockage evaluate(Node node, Queue.Item item, IBuildBlockerProperty property) {
+        DeadlockDetector detector = DeadlockDetector.getIfAvailable();
+        StarvationGuard guard = StarvationGuard.getIfAvailable();
+        // queued builds blocking each other do not block the first of them anymore
+        boolean scanQueue = detector == null || !detector.isReleased(item);
+        // the builds held back for a starving build do not block it, the ones queued before it still do
+        boolean starving = guard != null && guard.isHolding(item);
+        Blocker blocker = checkAccordingToProperties(node, item, property, scanQueue, starving);
+        Job result = blocker != null ? blocker.job : null;
+        if (detector != null) {
+            detector.update(item, result, blocker != null && blocker.queued);
+        }
+        if (result != null && guard != null && item.task instanceof Job && !guard.isHolding(item)
+                && StarvationGuard.isStarving(item, property.getStarvationThreshold())) {
+            guard.hold(item, monitorFor(item, property));
+        }
 
         if (result != null) {
             if (result instanceof MatrixConfiguration) {
                 result = ((MatrixConfiguration) result).getParent();
             }
 
-            return CauseOfBlockage.fromMessage(Messages._BlockingJobIsRunning(item.getInQueueForString(), result.getDisplayName()));
+            if (blocker.source != Blocker.Source.RUNNING_ANYWHERE || Jenkins.getInstanceOrNull() == null) {
+                return new BlockedByBuildCause(item.getInQueueSince(), result.getDisplayName(), result.getFullName(), -1);
+            }
+            return checkForBackoff(item, property, result);
         }
         return null;
     }
 
-    private Job checkAccordingToProperties(Node node, Queue.Item item, IBuildBlockerProperty properties) {
-        BlockingJobsMonitor jobsMonitor = monitorFactory.build(properties.getBlockingJobs());
+    private void reportBudgetExceeded(Queue.Item item, int budget) {
+        String task = item.task.getFullDisplayName();
+        if (budgetViolations.merge(task, 1L, Long::sum) == 1L) {
+            LOG.log(WARNING, "checking the blocking jobs of " + task + " took longer than " + budget
+                    + " ms, falling back to its last decision or the configured default. Further violations are logged on level FINE.");
+        } else {
+            LOG.logp(FINE, getClass().getName(), "reportBudgetExceeded", "checking the blocking jobs of " + task + " took longer than " + budget + " ms");
+        }
+    }
+
+    /**
+     * @return the number of evaluations that exceeded the budget, by the name of the task whose configuration was evaluated
+     */
+    public Map<String, Long> getBudgetViolations() {
+        return Collections.unmodifiableMap(budgetViolations);
+    }
+
+    /**
+     * Adds the expected end of the running builds of the blocking job to the cause. Until shortly before
+     * that time the item is not checked again, as long as these builds are running. Only plain blocks by
+     * running builds are reused: stages of a build and matrix configurations may end earlier than the build.
+     */
+    private CauseOfBlockage checkForBackoff(Queue.Item item, IBuildBlockerProperty property, Job result) {
+        List<Run<?, ?>> runs = RunningBuildsIndex.get().findRunningBuilds(result);
+        long expectedEnd = runs.isEmpty() ? -1 : 0;
+        for (Run<?, ?> run : runs) {
+            long estimatedDuration = run.getEstimatedDuration();
+            if (estimatedDuration < 0) {
+                expectedEnd = -1;
+                break;
+            }
+            expectedEnd = Math.max(expectedEnd, run.getStartTimeInMillis() + estimatedDuration);
+        }
+        BlockedByBuildCause cause = new BlockedByBuildCause(item.getInQueueSince(), result.getDisplayName(), result.getFullName(), expectedEnd);
+
+        long recheckAt = expectedEnd - RECHECK_MARGIN;
+        if (recheckAt > System.currentTimeMillis() && item.task instanceof Job && !property.isSameAxisCombinationOnly()
+                && (property.getBlockingJobs() == null || property.getBlockingJobs().indexOf(BlockingJobsMonitor.StageRule.SEPARATOR) < 0)) {
+            backoffs.values().removeIf(backoff -> !backoff.isBuilding());
+            backoffs.put(item.getId(), new Backoff(cause, runs, configurationOf(property), recheckAt));
+            LOG.logp(FINE, getClass().getName(), "checkForBackoff", item + " is not checked again before " + recheckAt);
+        }
+        return cause;
+    }
+
+    /**
+     * @return the monitor of the expanded blocking jobs, including the jobs related by the dependency graph
+     * and limited to the subtree of the folder if configured
+     */
+    private BlockingJobsMonitor monitorFor(Queue.Item item, IBuildBlockerProperty property) {
+        BlockingJobsMonitor monitor = monitorFactory.build(BlockingJobsTemplate.expand(property.getBlockingJobs(), item));
+        if (item.task instanceof Job) {
+            monitor = dependencies.apply(monitor, (Job<?, ?>) item.task, property);
+        }
+        String subtree = property.getSubtree();
+        return subtree != null ? monitor.within(subtree) : monitor;
+    }
 
+    /**
+     * @return the configuration of the property, computed once per property
+     */
+    private Configuration configurationOf(IBuildBlockerProperty property) {
+        return configurations.computeIfAbsent(property, Configuration::new);
+    }
+
+    @CheckForNull
+    private Blocker checkAccordingToProperties(Node node, Queue.Item item, IBuildBlockerProperty properties, boolean scanQueue,
+                                               boolean starving) {
+        BlockingJobsMonitor jobsMonitor = monitorFor(item, properties);
+        if (!(item.task instanceof Job)) {
+            // a Pipeline node {} block must not be blocked by the build it belongs to
+            Queue.Executable owner = item.task.getOwnerExecutable();
+            if (owner != null) {
+                jobsMonitor = jobsMonitor.excluding(owner);
+            }
+        }
+        if (properties.isSameAxisCombinationOnly() && item.task instanceof MatrixConfiguration) {
+            jobsMonitor = jobsMonitor.forCombination(((MatrixConfiguration) item.task).getCombination().toString());
+        }
+        if (starving) {
+            jobsMonitor = jobsMonitor.ignoringQueuedAfter(item.getInQueueSince());
+        }
+
+        CheckPlanner.Source queue = scanQueue ? CheckPlanner.Source.queue(properties.getScanQueueFor()) : null;
         if (checkWasCalledInGlobalContext(node) && properties.getBlockLevel().isGlobal()) {
-            LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkAllNodesForRunningBuilds");
-            Job checkAllNodesForRunningBuildsResult = jobsMonitor.checkAllNodesForRunningBuilds();
-            if (foundBlocker(checkAllNodesForRunningBuildsResult)) {
-                return checkAllNodesForRunningBuildsResult;
-            }
-            if (properties.getScanQueueFor().isAll()) {
-                LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkForQueueEntries");
-                Job checkForQueueEntriesResult = jobsMonitor.checkForQueueEntries(item);
-                if (foundBlocker(checkForQueueEntriesResult)) {
-                    return checkForQueueEntriesResult;
-                }
-            } else if (properties.getScanQueueFor().isBuildable()) {
-                LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkForBuildableQueueEntries");
-                Job checkForBuildableQueueEntriesResult = jobsMonitor.checkForBuildableQueueEntries(item);
-                if (foundBlocker(checkForBuildableQueueEntriesResult)) {
-                    return checkForBuildableQueueEntriesResult;
-                }
+            Blocker blocker = checkPlanned(CheckPlanner.Source.GLOBAL_RUNNING, queue, null, item, jobsMonitor, properties);
+            if (blocker != null) {
+                return blocker;
             }
         }
         if (checkWasCalledInNodeContext(node) && properties.getBlockLevel().isNode() && !properties.getBlockLevel().isGlobal()) {
-            LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkNodeForRunningBuilds");
-            Job checkNodeForRunningBuildsResult = jobsMonitor.checkNodeForRunningBuilds(node);
-            if (foundBlocker(checkNodeForRunningBuildsResult)) {
-                return checkNodeForRunningBuildsResult;
-            }
-            if (properties.getScanQueueFor().isAll()) {
-                LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkNodeForQueueEntries");
-                Job checkNodeForQueueEntriesResult = jobsMonitor.checkNodeForQueueEntries(item, node);
-                if (foundBlocker(checkNodeForQueueEntriesResult)) {
-                    return checkNodeForQueueEntriesResult;
+            Blocker blocker = checkPlanned(CheckPlanner.Source.NODE_RUNNING, queue, node, item, jobsMonitor, properties);
+            if (blocker != null) {
+                return blocker;
+            }
+        }
+        if (checkWasCalledInGlobalContext(node) && properties.getBlockLevel().isNode() && properties.isBlockWhenAllNodesBlocked()) {
+            LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkEligibleNodes");
+            EvaluationEvent.checkRan("ELIGIBLE_NODES");
+            Job checkEligibleNodesResult = checkEligibleNodes(jobsMonitor, item, properties, scanQueue);
+            if (foundBlocker(checkEligibleNodesResult)) {
+                return Blocker.runningOnNode(checkEligibleNodesResult);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the running builds and the queue in the order chosen by the {@link CheckPlanner}. A running
+     * build blocks in either order: after a queued blocker was found first, the running builds are still
+     * checked, as the {@link DeadlockDetector} and the backoff depend on whether the blocker is running.
+     *
+     * @param running the running builds to check
+     * @param queue   the queue entries to check, null if the queue is not checked
+     * @param node    the node to check, null in global context
+     */
+    @CheckForNull
+    private Blocker checkPlanned(CheckPlanner.Source running, @CheckForNull CheckPlanner.Source queue, @CheckForNull Node node,
+                                 Queue.Item item, BlockingJobsMonitor jobsMonitor, IBuildBlockerProperty properties) {
+        CheckPlanner.Plan plan = queue != null ? planner.planFor(configurationOf(properties).key) : null;
+        if (plan != null && plan.isQueueFirst(running, queue)) {
+            Blocker queued = check(queue, node, item, jobsMonitor, plan);
+            Blocker blocker = check(running, node, item, jobsMonitor, plan);
+            return blocker != null ? blocker : queued;
+        }
+        Blocker blocker = check(running, node, item, jobsMonitor, plan);
+        if (blocker == null && queue != null) {
+            blocker = check(queue, node, item, jobsMonitor, plan);
+        }
+        return blocker;
+    }
+
+    @CheckForNull
+    private Blocker check(CheckPlanner.Source source, @CheckForNull Node node, Queue.Item item, BlockingJobsMonitor jobsMonitor,
+                          @CheckForNull CheckPlanner.Plan plan) {
+        EvaluationEvent.checkRan(source.name());
+        long start = plan != null ? System.nanoTime() : 0;
+        Blocker blocker;
+        switch (source) {
+            case GLOBAL_RUNNING:
+                LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkAllNodesForRunningBuilds");
+                Job checkAllNodesForRunningBuildsResult = jobsMonitor.checkAllNodesForRunningBuilds();
+                blocker = foundBlocker(checkAllNodesForRunningBuildsResult) ? Blocker.runningAnywhere(checkAllNodesForRunningBuildsResult) : null;
+                break;
+            case NODE_RUNNING:
+                LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkNodeForRunningBuilds");
+                Job checkNodeForRunningBuildsResult = jobsMonitor.checkNodeForRunningBuilds(node);
+                blocker = foundBlocker(checkNodeForRunningBuildsResult) ? Blocker.runningOnNode(checkNodeForRunningBuildsResult) : null;
+                break;
+            case FULL_QUEUE:
+                Job checkForQueueEntriesResult;
+                if (node == null) {
+                    LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkForQueueEntries");
+                    checkForQueueEntriesResult = jobsMonitor.checkForQueueEntries(item);
+                } else {
+                    LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkNodeForQueueEntries");
+                    checkForQueueEntriesResult = jobsMonitor.checkNodeForQueueEntries(item, node);
                 }
-            } else if (properties.getScanQueueFor().isBuildable()) {
-                LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkNodeFOrBuildableQueueEntries");
-                Job checkNodeForBuildableQueueEntriesResult = jobsMonitor.checkNodeForBuildableQueueEntries(item, node);
-                if (foundBlocker(checkNodeForBuildableQueueEntriesResult)) {
-                    return checkNodeForBuildableQueueEntriesResult;
+                blocker = foundBlocker(checkForQueueEntriesResult) ? Blocker.queued(checkForQueueEntriesResult) : null;
+                break;
+            default:
+                Job checkForBuildableQueueEntriesResult;
+                if (node == null) {
+                    LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkForBuildableQueueEntries");
+                    checkForBuildableQueueEntriesResult = jobsMonitor.checkForBuildableQueueEntries(item);
+                } else {
+                    LOG.logp(FINE, getClass().getName(), "checkAccordingToProperties", "calling checkNodeFOrBuildableQueueEntries");
+                    checkForBuildableQueueEntriesResult = jobsMonitor.checkNodeForBuildableQueueEntries(item, node);
                 }
+                blocker = foundBlocker(checkForBuildableQueueEntriesResult) ? Blocker.queued(checkForBuildableQueueEntriesResult) : null;
+                break;
+        }
+        if (plan != null) {
+            plan.record(source, System.nanoTime() - start, blocker != null);
+        }
+        return blocker;
+    }
+
+    /**
+     * Checks whether a build blocked on node level is blocked on every node it may run on. Such a
+     * build is blocked in {@link #canRun(Queue.Item)} already, so Jenkins does not provision new
+     * agents for it. Offline nodes are ignored, and if no node is online the build is not blocked here.
+     *
+     * @return the blocking job of the first eligible node, or null if at least one node is not blocked
+     */
+    @CheckForNull
+    private Job checkEligibleNodes(BlockingJobsMonitor jobsMonitor, Queue.Item item, IBuildBlockerProperty properties, boolean scanQueue) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        Job stage = jobsMonitor.checkForActiveStages();
+        if (stage != null) {
+            return stage;
+        }
+        Map<String, Job> blockedByRunningBuilds = checkEachNodeForRunningBuilds(jobsMonitor);
+        Job blocker = null;
+        for (Node node : eligibleNodes(jenkins, item.getAssignedLabel())) {
+            Computer computer = node.toComputer();
+            if (computer == null || computer.isOffline()) {
+                continue;
+            }
+            Job nodeBlocker = blockedByRunningBuilds.get(node.getNodeName());
+            if (nodeBlocker == null && scanQueue) {
+                nodeBlocker = checkNodeForQueueEntries(jobsMonitor, item, node, properties);
+            }
+            if (nodeBlocker == null) {
+                return null;
+            }
+            if (blocker == null) {
+                blocker = nodeBlocker;
+            }
+        }
+        return blocker;
+    }
+
+    private Collection<Node> eligibleNodes(Jenkins jenkins, @CheckForNull Label label) {
+        if (label != null) {
+            return label.getNodes();
+        }
+        // builds without label do not run on nodes reserved for matching labels
+        List<Node> nodes = new ArrayList<>();
+        if (jenkins.getMode() != Node.Mode.EXCLUSIVE) {
+            nodes.add(jenkins);
+        }
+        for (Node node : jenkins.getNodes()) {
+            if (node.getMode() != Node.Mode.EXCLUSIVE) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the nodes blocked by running builds. The map is computed once for all queued builds
+     * with the same blocking jobs and reused until any executor has started or finished work.
+     */
+    private Map<String, Job> checkEachNodeForRunningBuilds(BlockingJobsMonitor jobsMonitor) {
+        long version = RunningBuildsIndex.get().getVersion() + PlaceholderExecutionsIndex.get().getVersion();
+        Object key = jobsMonitor.getCacheKey();
+        synchronized (blockedNodes) {
+            BlockedNodes cached = blockedNodes.get(key);
+            if (cached == null || cached.version != version) {
+                blockedNodes.values().removeIf(nodes -> nodes.version != version);
+                cached = new BlockedNodes(version, jobsMonitor.checkEachNodeForRunningBuilds());
+                blockedNodes.put(key, cached);
+                statistics.miss(EvaluationStatistics.Cache.BLOCKED_NODES);
+            } else {
+                statistics.hit(EvaluationStatistics.Cache.BLOCKED_NODES);
             }
+            return cached.nodes;
+        }
+    }
+
+    @CheckForNull
+    private Job checkNodeForQueueEntries(BlockingJobsMonitor jobsMonitor, Queue.Item item, Node node, IBuildBlockerProperty properties) {
+        if (properties.getScanQueueFor().isAll()) {
+            return jobsMonitor.checkNodeForQueueEntries(item, node);
+        } else if (properties.getScanQueueFor().isBuildable()) {
+            return jobsMonitor.checkNodeForBuildableQueueEntries(item, node);
         }
         return null;
     }
 
+    /**
+     * A blocking job and whether it was found among the running or the queued builds.
+     */
+    private static final class Blocker {
+
+        private enum Source { RUNNING_ANYWHERE, RUNNING_ON_NODE, QUEUED }
+
+        private final Job job;
+        private final Source source;
+        private final boolean queued;
+
+        private Blocker(Job job, Source source) {
+            this.job = job;
+            this.source = source;
+            this.queued = source == Source.QUEUED;
+        }
+
+        private static Blocker runningAnywhere(Job job) {
+            return new Blocker(job, Source.RUNNING_ANYWHERE);
+        }
+
+        private static Blocker runningOnNode(Job job) {
+            return new Blocker(job, Source.RUNNING_ON_NODE);
+        }
+
+        private static Blocker queued(Job job) {
+            return new Blocker(job, Source.QUEUED);
+        }
+    }
+
+    /**
+     * A blocking decision reused while the blocking builds are running, until shortly before their expected end.
+     */
+    private static final class Backoff {
+        private final BlockedByBuildCause cause;
+        private final List<Run<?, ?>> runs;
+        private final Configuration configuration;
+        private final long recheckAt;
+
+        private Backoff(BlockedByBuildCause cause, List<Run<?, ?>> runs, Configuration configuration, long recheckAt) {
+            this.cause = cause;
+            this.runs = runs;
+            this.configuration = configuration;
+            this.recheckAt = recheckAt;
+        }
+
+        /**
+         * The configuration is compared by its key, as the property of a job, folder or group is replaced
+         * on every save.
+         */
+        private boolean isValidFor(Configuration configuration) {
+            return System.currentTimeMillis() < recheckAt && this.configuration.key.equals(configuration.key) && isBuilding();
+        }
+
+        private boolean isBuilding() {
+            for (Run<?, ?> run : runs) {
+                if (!run.isBuilding()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The configuration of a property resolved to text.
+     */
+    private static final class Configuration {
+        /**
+         * the text identifying the configuration in the statistics
+         */
+        private final String text;
+
+        /**
+         * the text identifying the configuration including how it is checked, for the check planner and the backoffs
+         */
+        private final String key;
+
+        private Configuration(IBuildBlockerProperty property) {
+            String configuration = property.getBlockingJobs() != null ? property.getBlockingJobs() : "";
+            if (!property.getBlockOnDependencies().isNone()) {
+                configuration += "\n" + property.getBlockOnDependencies() + ":" + property.getDependencyDepth();
+            }
+            if (property.getSubtree() != null) {
+                configuration += "\nwithin:" + property.getSubtree();
+            }
+            this.text = configuration;
+            this.key = property.getBlockLevel() + ":" + property.getScanQueueFor() + ":" + property.isBlockWhenAllNodesBlocked()
+                    + ":" + configuration;
+        }
+    }
+
+    private static final class BlockedNodes {
+        private final long version;
+        private final Map<String, Job> nodes;
+
+        private BlockedNodes(long version, Map<String, Job> nodes) {
+            this.version = version;
+            this.nodes = nodes;
+        }
+    }
+
+    private static String propertySourceOf(IBuildBlockerProperty property) {
+        if (property instanceof BlockerGroup.Applied) {
+            return "group " + property.getBlockerGroup() + " of "
+                    + propertySourceOf(((BlockerGroup.Applied) property).getProperty());
+        }
+        return property instanceof BuildBlockerProperty ? "job" : "folder";
+    }
+
     private boolean checkWasCalledInNodeContext(Node node) {
         return node != null;
     }
@@ -200,18 +807,32 @@ public class BuildBlockerQueueTaskDispatcher extends QueueTaskDispatcher {
     @CheckForNull
     private IBuildBlockerProperty getBuildBlockerProperty(Queue.Item item) {
 
-        if (!(item.task instanceof Job)) {
-            if (!(item.task.getOwnerTask() instanceof Job)) {
-                return null;
-            } else {
-                return ((Job<?, ?>) item.task.getOwnerTask()).getProperty(BuildBlockerProperty.class);
+        Job<?,?> job;
+        if (item.task instanceof Job) {
+            job = (Job<?,?>) item.task;
+        } else if (item.task.getOwnerTask() instanceof Job) {
+            // sub tasks like Pipeline node {} blocks are configured by the job owning them
+            job = (Job<?,?>) item.task.getOwnerTask();
+        } else {
+            return null;
+        }
+        IBuildBlockerProperty property = getBuildBlockerProperty(job);
+        if (property == null && job instanceof MatrixConfiguration) {
+            // configurations are blocked on their own only if limited to the same axis combination
+            IBuildBlockerProperty parentProperty = getBuildBlockerProperty(((MatrixConfiguration) job).getParent());
+            if (parentProperty != null && parentProperty.isSameAxisCombinationOnly()) {
+                return parentProperty;
             }
         }
-        Job<?,?> job = (Job<?,?>) item.task;
+        return property;
+    }
+
+    @CheckForNull
+    private IBuildBlockerProperty getBuildBlockerProperty(Job<?,?> job) {
         IBuildBlockerProperty property = job.getProperty(BuildBlockerProperty.class);
         if (property != null && property.isUseBuildBlocker()) {
             LOG.logp(FINE, getClass().getName(), "getBuildBlockerProperty", "Found build blocker property on job " + job.getFullDisplayName());
-            return property;
+            return BlockerGroup.resolve(property);
         }
 
         // Check property on parent
@@ -220,7 +841,7 @@ public class BuildBlockerQueueTaskDispatcher extends QueueTaskDispatcher {
             property = Jenkins.get().getDescriptorByType(BuildBlockerFolderProperty.DescriptorImpl.class).getBuildBlockerFolderProperty(job);
             if (property != null && property.isUseBuildBlocker()) {
                 LOG.logp(FINE, getClass().getName(), "getBuildBlockerProperty", "Found build blocker property on parent of job " + job.getFullDisplayName());
-                return property;
+                return BlockerGroup.resolve(property);
             }
         }
         catch (NoClassDefFoundError | Exception e) {
@@ -1,34 +1,156 @@
 package hudson.plugins.buildblocker;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Item;
 import hudson.util.FormValidation;
+import hudson.util.HttpResponses;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
 import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.HttpResponse;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 public class BuildBlockerUtils {
 
+    /**
+     * Returns the jobs matched by the blocking jobs as JSON, see {@link MatchPreview#toJSON(int, int)}.
+     *
+     * @param item         the configured job or folder, null if it is being created
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @param start        the index of the first job to return
+     * @param limit        the maximum number of jobs to return, {@link MatchPreview#DEFAULT_LIMIT} if not positive
+     * @return the response
+     */
+    public static HttpResponse doPreviewMatches(@CheckForNull Item item, String blockingJobs, int start, int limit) {
+        checkConfigurePermission(item);
+        return HttpResponses.okJSON(preview(blockingJobs).toJSON(start, limit > 0 ? limit : MatchPreview.DEFAULT_LIMIT));
+    }
+
+    /**
+     * Lists the first jobs matched by the blocking jobs in the configuration form.
+     *
+     * @param item         the configured job or folder, null if it is being created
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @return the number and the first of the matched jobs
+     */
+    public static FormValidation doPreview(@CheckForNull Item item, String blockingJobs) {
+        checkConfigurePermission(item);
+        return preview(blockingJobs).toFormValidation();
+    }
+
+    private static MatchPreview preview(String blockingJobs) {
+        Jenkins jenkins = Jenkins.get();
+        Predicate<String> visible = jenkins.hasPermission(Jenkins.ADMINISTER)
+                ? name -> true
+                : name -> jenkins.getItemByFullName(name) != null;
+        return MatchPreview.of(blockingJobs, JobNameIndex.get().getNames(), visible);
+    }
+
+    private static void checkConfigurePermission(@CheckForNull Item item) {
+        if (item != null) {
+            item.checkPermission(Item.CONFIGURE);
+        } else {
+            Jenkins.get().checkPermission(Item.CREATE);
+        }
+    }
+
+    public static ListBoxModel doFillBlockOnDependenciesItems() {
+        ListBoxModel items = new ListBoxModel();
+        for (BuildBlockerProperty.DependencyScope scope : BuildBlockerProperty.DependencyScope.values()) {
+            items.add(scope.name());
+        }
+        return items;
+    }
+
+    /**
+     * @return the names of the configured blocker groups, with an empty first entry for no group
+     */
+    public static ListBoxModel doFillBlockerGroupItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add("", "");
+        for (BlockerGroup group : BuildBlockerConfiguration.get().getGroups()) {
+            items.add(group.getName());
+        }
+        return items;
+    }
+
+    public static FormValidation doCheckBlockerGroup(String blockerGroup) {
+        if (StringUtils.isNotBlank(blockerGroup) && BuildBlockerConfiguration.get().getGroup(blockerGroup.trim()) == null) {
+            return FormValidation.warning(Messages.BlockerGroup_Unknown(blockerGroup.trim()));
+        }
+        return FormValidation.ok();
+    }
+
     public static FormValidation doCheckRegex(String blockingJobs) {
         List<String> listJobs = null;
         if (StringUtils.isNotBlank(blockingJobs)) {
-            listJobs = Arrays.asList(blockingJobs.split("\n"));
+            listJobs = Arrays.asList(BlockingJobsTemplate.stripPlaceholders(blockingJobs).split("\n"));
         }
         if (listJobs != null) {
             for (String blockingJob : listJobs) {
+                boolean exclusion = BlockingJobsMonitor.isExclusion(blockingJob);
+                String pattern = exclusion ? blockingJob.substring(BlockingJobsMonitor.EXCLUSION_PREFIX.length()) : blockingJob;
+                boolean glob = GlobPattern.isGlob(pattern);
+                String expression = glob ? pattern.substring(GlobPattern.PREFIX.length()) : pattern;
                 try {
-                    Pattern.compile(blockingJob);
+                    int separator = expression.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR);
+                    if (exclusion && separator >= 0) {
+                        return FormValidation.error(Messages.Exclusion_Stage(blockingJob));
+                    } else if (separator >= 0) {
+                        compile(expression.substring(0, separator), glob);
+                        compile(expression.substring(separator + 1), glob);
+                    } else {
+                        compile(expression, glob);
+                    }
                 } catch (PatternSyntaxException pse) {
-                    return FormValidation.error("Invalid regular expression [" +
+                    return FormValidation.error((glob ? "Invalid glob [" : "Invalid regular expression [") +
                             blockingJob + "] exception: " +
                             pse.getDescription());
                 }
             }
+            if (BuildBlockerConfiguration.MatchingEngine.configured() == BuildBlockerConfiguration.MatchingEngine.LINEAR) {
+                return checkLinear(listJobs);
+            }
             return FormValidation.ok();
         } else {
             return FormValidation.ok();
         }
     }
 
+    private static void compile(String expression, boolean glob) {
+        if (glob) {
+            GlobPattern.compile(expression);
+        } else {
+            Pattern.compile(expression);
+        }
+    }
+
+    /**
+     * Warns about lines that are ignored by the linear-time engine. Globs are not affected.
+     */
+    private static FormValidation checkLinear(List<String> blockingJobs) {
+        for (String line : blockingJobs) {
+            String blockingJob = BlockingJobsMonitor.isExclusion(line) ? line.substring(BlockingJobsMonitor.EXCLUSION_PREFIX.length()) : line;
+            if (GlobPattern.isGlob(blockingJob)) {
+                continue;
+            }
+            int separator = blockingJob.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR);
+            try {
+                if (separator >= 0) {
+                    LinearPattern.compile(blockingJob.substring(0, separator));
+                    LinearPattern.compile(blockingJob.substring(separator + 1));
+                } else {
+                    LinearPattern.compile(blockingJob);
+                }
+            } catch (LinearPattern.UnsupportedPatternException upe) {
+                return FormValidation.warning(Messages.LinearPattern_Unsupported(line, upe.getConstruct()));
+            }
+        }
+        return FormValidation.ok();
+    }
 }
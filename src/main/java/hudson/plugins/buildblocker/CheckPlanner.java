@@ -0,0 +1,145 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import jenkins.model.Jenkins;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chooses the order of the checks of the running builds and of the queue per configuration of blocking
+ * jobs. Every check measures its cost and whether it found a blocker, kept as exponentially weighted
+ * moving averages. The check with the higher ratio of hit probability to cost runs first, which
+ * minimizes the expected cost of the decision.
+ * <p>
+ * Until both checks of a configuration were measured {@link #MIN_SAMPLES} times, and while Jenkins is
+ * not running, e.g. in unit tests, the running builds are checked first, as they always were.
+ * </p>
+ * <p>
+ * The check that runs second is not measured when the first one finds a blocker. So that its statistics
+ * still follow changes, every {@link #EXPLORE_INTERVAL}th decision runs the checks in the other order.
+ * </p>
+ * <p>
+ * The order never changes the decision: a running build is reported as blocker in either order, so the
+ * running builds are still checked after a blocker was found in the queue, see
+ * {@link BuildBlockerQueueTaskDispatcher}.
+ * </p>
+ */
+class CheckPlanner {
+
+    /**
+     * the number of measurements of both checks before their order may change
+     */
+    static final int MIN_SAMPLES = 32;
+
+    /**
+     * the number of decisions between two decisions in the other order
+     */
+    static final int EXPLORE_INTERVAL = 16;
+
+    /**
+     * the number of configurations whose statistics are kept
+     */
+    static final int MAX_PLANS = 1024;
+
+    /**
+     * the weight of a new measurement in the moving averages
+     */
+    private static final double ALPHA = 0.1;
+
+    /**
+     * The sources of blocking jobs.
+     */
+    enum Source {
+        GLOBAL_RUNNING, NODE_RUNNING, BUILDABLE_QUEUE, FULL_QUEUE;
+
+        /**
+         * @return the queue source to check for the given scope, null if the queue is not checked
+         */
+        @CheckForNull
+        static Source queue(BuildBlockerProperty.QueueScanScope scope) {
+            if (scope.isAll()) {
+                return FULL_QUEUE;
+            }
+            if (scope.isBuildable()) {
+                return BUILDABLE_QUEUE;
+            }
+            return null;
+        }
+    }
+
+    private final Map<String, Plan> plans = Collections.synchronizedMap(
+            new LinkedHashMap<String, Plan>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+                    return size() > MAX_PLANS;
+                }
+            });
+
+    /**
+     * @param configuration the key of the configuration, e.g. its block level and blocking jobs
+     * @return the plan of the configuration, or null if the checks should run in their default order
+     */
+    @CheckForNull
+    Plan planFor(String configuration) {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return plans.computeIfAbsent(configuration, k -> new Plan());
+    }
+
+    /**
+     * The statistics of the checks of a configuration.
+     */
+    static final class Plan {
+        private final double[] cost = new double[Source.values().length];
+        private final double[] hits = new double[Source.values().length];
+        private final int[] samples = new int[Source.values().length];
+        private int decisions;
+
+        /**
+         * @return true if the queue should be checked before the running builds
+         */
+        synchronized boolean isQueueFirst(Source running, Source queue) {
+            int r = running.ordinal();
+            int q = queue.ordinal();
+            if (samples[r] < MIN_SAMPLES || samples[q] < MIN_SAMPLES) {
+                return false;
+            }
+            // running first costs cost[r] + (1 - hits[r]) * cost[q], queue first cost[q] + (1 - hits[q]) * cost[r]
+            boolean queueFirst = hits[q] * cost[r] > hits[r] * cost[q];
+            decisions = (decisions + 1) % EXPLORE_INTERVAL;
+            return decisions == 0 ? !queueFirst : queueFirst;
+        }
+
+        /**
+         * Records a check of a source.
+         *
+         * @param source the checked source
+         * @param nanos  the time the check took
+         * @param hit    true if the check found a blocker
+         */
+        synchronized void record(Source source, long nanos, boolean hit) {
+            int s = source.ordinal();
+            if (samples[s] == 0) {
+                cost[s] = nanos;
+                hits[s] = hit ? 1 : 0;
+            } else {
+                cost[s] += ALPHA * (nanos - cost[s]);
+                hits[s] += ALPHA * ((hit ? 1 : 0) - hits[s]);
+            }
+            if (samples[s] < Integer.MAX_VALUE) {
+                samples[s]++;
+            }
+        }
+
+        synchronized double getCost(Source source) {
+            return cost[source.ordinal()];
+        }
+
+        synchronized double getHitRate(Source source) {
+            return hits[source.ordinal()];
+        }
+    }
+}
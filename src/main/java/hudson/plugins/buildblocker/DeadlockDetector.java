@@ -0,0 +1,286 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Wait-for graph of the queued builds blocked by this plugin. A build blocked by a queued build of
+ * another job waits for that queued item. Every item waits for at most one other item, so a new
+ * cycle always contains the item that has just changed and is found by following its edges.
+ * <p>
+ * Queued builds that block each other, e.g. with {@link BuildBlockerProperty.QueueScanScope#ALL},
+ * would stay in the queue forever. When such a cycle forms, the item with the lowest queue id, i.e.
+ * the one scheduled first, is released: queued builds do not block it anymore until it leaves the queue.
+ * </p>
+ */
+@Extension
+public class DeadlockDetector extends QueueListener {
+
+    private static final Logger LOG = Logger.getLogger(DeadlockDetector.class.getName());
+
+    /**
+     * the number of detected cycles kept for {@link #getRecentCycles()}
+     */
+    static final int RECENT_CYCLES = 10;
+
+    /**
+     * the queued items blocked at least once by this plugin, by queue id
+     */
+    private final Map<Long, Wait> waits = new HashMap<>();
+
+    /**
+     * the queue ids of items not blocked by queued builds anymore, to break a cycle
+     */
+    private final Set<Long> released = new HashSet<>();
+
+    private final Deque<Cycle> recentCycles = new ArrayDeque<>();
+
+    private long detectedCycles;
+
+    /**
+     * @return the detector, or null if Jenkins is not running, e.g. in unit tests
+     */
+    @CheckForNull
+    public static DeadlockDetector getIfAvailable() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return ExtensionList.lookupSingleton(DeadlockDetector.class);
+    }
+
+    /**
+     * Records the result of a blocking decision.
+     *
+     * @param item    the item that was checked
+     * @param blocker the blocking job, or null if the item is not blocked
+     * @param queued  true if the blocking job was found in the queue
+     */
+    void update(Queue.Item item, @CheckForNull Job blocker, boolean queued) {
+        Long target = blocker != null && queued ? queuedItemOf(blocker, item) : null;
+        synchronized (this) {
+            Wait wait = waits.get(item.getId());
+            if (blocker == null) {
+                if (wait != null) {
+                    wait.blocker = null;
+                    wait.waitingFor = null;
+                }
+                return;
+            }
+            if (wait == null) {
+                wait = new Wait(item.getId(), item.task.getFullDisplayName(), System.currentTimeMillis());
+                waits.put(item.getId(), wait);
+            }
+            Long previous = wait.waitingFor;
+            wait.blocker = blocker.getFullDisplayName();
+            wait.waitingFor = target;
+            if (target != null && !target.equals(previous)) {
+                detectCycle(item.getId());
+            }
+        }
+    }
+
+    /**
+     * @param item the item to check
+     * @return true if queued builds must not block the item, as it is part of a cycle
+     */
+    synchronized boolean isReleased(Queue.Item item) {
+        return released.contains(item.getId());
+    }
+
+    @Override
+    public synchronized void onLeft(Queue.LeftItem li) {
+        waits.remove(li.getId());
+        released.remove(li.getId());
+    }
+
+    /**
+     * The lowest queue id of the items of the blocking job, not counting the item itself.
+     */
+    @CheckForNull
+    private static Long queuedItemOf(Job blocker, Queue.Item item) {
+        if (!(blocker instanceof Queue.Task)) {
+            return null;
+        }
+        Long lowest = null;
+        for (Queue.Item queued : Jenkins.get().getQueue().getItems((Queue.Task) blocker)) {
+            if (queued.getId() != item.getId() && (lowest == null || queued.getId() < lowest)) {
+                lowest = queued.getId();
+            }
+        }
+        return lowest;
+    }
+
+    private void detectCycle(long start) {
+        List<Long> path = new ArrayList<>();
+        Long current = start;
+        while (current != null && path.size() <= waits.size()) {
+            path.add(current);
+            Wait wait = waits.get(current);
+            current = wait != null ? wait.waitingFor : null;
+            if (current != null && current == start) {
+                breakCycle(path);
+                return;
+            }
+        }
+    }
+
+    private void breakCycle(List<Long> path) {
+        long lowest = Collections.min(path);
+        released.add(lowest);
+        detectedCycles++;
+
+        List<String> tasks = new ArrayList<>(path.size());
+        for (Long id : path) {
+            tasks.add(waits.get(id).task);
+        }
+        Cycle cycle = new Cycle(tasks, waits.get(lowest).task, System.currentTimeMillis());
+        recentCycles.addFirst(cycle);
+        if (recentCycles.size() > RECENT_CYCLES) {
+            recentCycles.removeLast();
+        }
+        LOG.log(WARNING, "queued builds of " + tasks + " block each other, letting " + cycle.released + " proceed");
+    }
+
+    /**
+     * @return the number of cycles detected since the start of Jenkins
+     */
+    public synchronized long getDetectedCycles() {
+        return detectedCycles;
+    }
+
+    /**
+     * @return the last detected cycles, the latest first
+     */
+    public synchronized List<Cycle> getRecentCycles() {
+        return new ArrayList<>(recentCycles);
+    }
+
+    /**
+     * Returns the items currently blocked by this plugin that have been waiting the longest,
+     * measured from the first time they were blocked.
+     *
+     * @param limit the maximum number of items
+     * @return the waiting items, the longest waiting first
+     */
+    public synchronized List<Wait> getLongestWaits(int limit) {
+        List<Wait> blocked = new ArrayList<>();
+        for (Wait wait : waits.values()) {
+            if (wait.blocker != null) {
+                blocked.add(wait.copy());
+            }
+        }
+        blocked.sort(Comparator.comparingLong(Wait::getSince));
+        return blocked.subList(0, Math.min(limit, blocked.size()));
+    }
+
+    /**
+     * A queued item blocked by this plugin.
+     */
+    public static final class Wait {
+        private final long itemId;
+        private final String task;
+        private final long since;
+        private String blocker;
+        private Long waitingFor;
+
+        private Wait(long itemId, String task, long since) {
+            this.itemId = itemId;
+            this.task = task;
+            this.since = since;
+        }
+
+        private Wait copy() {
+            Wait copy = new Wait(itemId, task, since);
+            copy.blocker = blocker;
+            copy.waitingFor = waitingFor;
+            return copy;
+        }
+
+        public long getItemId() {
+            return itemId;
+        }
+
+        public String getTask() {
+            return task;
+        }
+
+        /**
+         * @return the time the item was blocked first
+         */
+        public long getSince() {
+            return since;
+        }
+
+        public String getBlocker() {
+            return blocker;
+        }
+
+        /**
+         * @return the queue id of the item this item waits for, or null if it is blocked by a running build
+         */
+        @CheckForNull
+        public Long getWaitingFor() {
+            return waitingFor;
+        }
+    }
+
+    /**
+     * Queued builds that blocked each other.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Cycle {
+        private final List<String> tasks;
+        private final String released;
+        private final long detected;
+
+        private Cycle(List<String> tasks, String released, long detected) {
+            this.tasks = Collections.unmodifiableList(tasks);
+            this.released = released;
+            this.detected = detected;
+        }
+
+        @Exported
+        public List<String> getTasks() {
+            return tasks;
+        }
+
+        /**
+         * @return the task that was allowed to proceed
+         */
+        @Exported
+        public String getReleased() {
+            return released;
+        }
+
+        @Exported
+        public long getDetected() {
+            return detected;
+        }
+
+        public Date getDetectedDate() {
+            return new Date(detected);
+        }
+    }
+}
@@ -1,8 +1,71 @@
 package hudson.plugins.buildblocker;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import jenkins.util.SystemProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the monitors for the blocking jobs configurations. Monitors are cached per distinct
+ * (expanded) configuration, so the regular expressions of a configuration are compiled only once,
+ * even if a template expands to a different configuration for every branch.
+ */
 public class DefaultMonitorFactory implements MonitorFactory {
+
+    /**
+     * the maximum number of cached monitors, the least recently used one is dropped first
+     */
+    static final int CACHE_SIZE = SystemProperties.getInteger(DefaultMonitorFactory.class.getName() + ".cacheSize", 1024);
+
+    private final Map<String, BlockingJobsMonitor> monitors = Collections.synchronizedMap(
+            new LinkedHashMap<String, BlockingJobsMonitor>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, BlockingJobsMonitor> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    /**
+     * counts the hits and misses of the cache, null if they are not counted
+     */
+    @CheckForNull
+    private final EvaluationStatistics statistics;
+
+    public DefaultMonitorFactory() {
+        this(null);
+    }
+
+    DefaultMonitorFactory(@CheckForNull EvaluationStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     @Override
     public BlockingJobsMonitor build(String blockingJobs) {
-        return new BlockingJobsMonitor(blockingJobs);
+        BuildBlockerConfiguration.MatchingEngine engine = BuildBlockerConfiguration.MatchingEngine.configured();
+        BlockingJobsMonitor monitor = monitors.get(blockingJobs);
+        if (monitor == null || monitor.getEngine() != engine) {
+            // compiled again after the matching engine was changed
+            monitor = new BlockingJobsMonitor(blockingJobs, engine);
+            monitors.put(blockingJobs, monitor);
+            if (statistics != null) {
+                statistics.miss(EvaluationStatistics.Cache.MONITORS);
+            }
+        } else if (statistics != null) {
+            statistics.hit(EvaluationStatistics.Cache.MONITORS);
+        }
+        return monitor;
+    }
+
+    /**
+     * @return the cached monitors
+     */
+    List<BlockingJobsMonitor> getMonitors() {
+        synchronized (monitors) {
+            return new ArrayList<>(monitors.values());
+        }
     }
 }
@@ -0,0 +1,147 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.AbstractProject;
+import hudson.model.DependencyGraph;
+import hudson.model.Job;
+import jenkins.model.Jenkins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * The jobs related to a job in the dependency graph of Jenkins, blocking it in addition to its blocking
+ * jobs, see {@link IBuildBlockerProperty#getBlockOnDependencies()}.
+ * <p>
+ * Walking the graph for every check of a queued build would be expensive, so the related jobs are
+ * computed once per job, scope and depth, and kept until Jenkins rebuilds its graph after a job was
+ * created, changed or deleted. A rebuilt graph is a new instance, so comparing the instance tells
+ * whether the closures are outdated. The monitors including the related jobs are kept as well, so the
+ * caches of the dispatcher keyed by monitor keep working.
+ * </p>
+ */
+final class DependencyClosure {
+
+    private static final Logger LOG = Logger.getLogger(DependencyClosure.class.getName());
+
+    /**
+     * the graph the closures were computed from
+     */
+    private DependencyGraph graph;
+
+    /**
+     * the closures by scope, depth and full name of the job
+     */
+    private final Map<String, Closure> closures = new HashMap<>();
+
+    /**
+     * Includes the jobs related to the job of the item in the monitor.
+     *
+     * @param monitor  the monitor of the blocking jobs
+     * @param job      the queued job
+     * @param property the property of the job
+     * @return the monitor including the related jobs, or the given monitor if the property does not
+     * block on dependencies or the job is not part of the dependency graph
+     */
+    BlockingJobsMonitor apply(BlockingJobsMonitor monitor, Job<?, ?> job, IBuildBlockerProperty property) {
+        BuildBlockerProperty.DependencyScope scope = property.getBlockOnDependencies();
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (scope.isNone() || jenkins == null) {
+            return monitor;
+        }
+        AbstractProject<?, ?> project = projectOf(job);
+        if (project == null) {
+            return monitor;
+        }
+        DependencyGraph current = jenkins.getDependencyGraph();
+        synchronized (this) {
+            if (current != graph) {
+                LOG.logp(FINE, getClass().getName(), "apply", "dependency graph was rebuilt, dropping " + closures.size() + " closures");
+                closures.clear();
+                graph = current;
+            }
+            String key = scope + ":" + property.getDependencyDepth() + ":" + project.getFullName();
+            Closure closure = closures.get(key);
+            if (closure == null) {
+                closure = new Closure(related(current, project, scope, property.getDependencyDepth()));
+                closures.put(key, closure);
+            }
+            if (closure.monitor != monitor) {
+                closure.monitor = monitor;
+                closure.including = closure.jobs.isEmpty() ? monitor : monitor.including(closure.jobs);
+            }
+            return closure.including;
+        }
+    }
+
+    /**
+     * @return the project in the dependency graph, the matrix project for a configuration
+     */
+    @CheckForNull
+    private static AbstractProject<?, ?> projectOf(Job<?, ?> job) {
+        if (job instanceof MatrixConfiguration) {
+            return ((MatrixConfiguration) job).getParent();
+        }
+        return job instanceof AbstractProject ? (AbstractProject<?, ?>) job : null;
+    }
+
+    /**
+     * Walks the dependency graph from the project.
+     *
+     * @param graph   the dependency graph
+     * @param project the project
+     * @param scope   the directions to walk
+     * @param depth   the number of levels to walk, 0 for all
+     * @return the full names of the related projects, without the project itself
+     */
+    @SuppressWarnings("rawtypes")
+    static Set<String> related(DependencyGraph graph, AbstractProject<?, ?> project, BuildBlockerProperty.DependencyScope scope, int depth) {
+        Set<String> jobs = new HashSet<>();
+        if (scope.isUpstream()) {
+            walk(graph, project, depth, true, jobs);
+        }
+        if (scope.isDownstream()) {
+            walk(graph, project, depth, false, jobs);
+        }
+        jobs.remove(project.getFullName());
+        return Collections.unmodifiableSet(jobs);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void walk(DependencyGraph graph, AbstractProject<?, ?> project, int depth, boolean upstream, Set<String> jobs) {
+        Set<AbstractProject> visited = new HashSet<>();
+        visited.add(project);
+        List<AbstractProject> level = Collections.singletonList(project);
+        for (int i = 0; (depth <= 0 || i < depth) && !level.isEmpty(); i++) {
+            List<AbstractProject> next = new ArrayList<>();
+            for (AbstractProject current : level) {
+                for (AbstractProject relative : upstream ? graph.getUpstream(current) : graph.getDownstream(current)) {
+                    if (visited.add(relative)) {
+                        next.add(relative);
+                        jobs.add(relative.getFullName());
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    private static final class Closure {
+        private final Set<String> jobs;
+        private BlockingJobsMonitor monitor;
+        private BlockingJobsMonitor including;
+
+        private Closure(Set<String> jobs) {
+            this.jobs = jobs;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package hudson.plugins.buildblocker;
+
+/**
+ * Time budget of the blocking decision evaluated by the current thread. The decision is made while
+ * the queue is locked, so a pathological configuration, like a regular expression with catastrophic
+ * backtracking or scanning a huge queue, must not stall the whole queue.
+ * <p>
+ * Regular expressions cannot be interrupted, so the names matched against them are wrapped in a
+ * {@link CharSequence} checking the deadline while the expression reads it.
+ * </p>
+ */
+final class EvaluationBudget {
+
+    /**
+     * the number of characters read between two checks of the deadline, minus one
+     */
+    private static final int CHECK_INTERVAL = 0x3ff;
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private EvaluationBudget() {
+    }
+
+    /**
+     * Starts the budget of the current thread.
+     *
+     * @param millis the budget in milliseconds
+     */
+    static void start(long millis) {
+        DEADLINE.set(System.nanoTime() + millis * 1_000_000L);
+    }
+
+    static void end() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * @throws ExceededException if the budget of the current thread is exceeded
+     */
+    static void check() {
+        Long deadline = DEADLINE.get();
+        if (deadline != null && System.nanoTime() - deadline > 0) {
+            throw new ExceededException();
+        }
+    }
+
+    /**
+     * Returns the name to match, checking the budget while a regular expression reads it.
+     *
+     * @param name the name to match
+     * @return the name itself if no budget is active
+     */
+    static CharSequence guard(String name) {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? name : new DeadlineCharSequence(name, deadline);
+    }
+
+    /**
+     * Thrown when the budget is exceeded, to abort the evaluation.
+     */
+    static final class ExceededException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        ExceededException() {
+            super("evaluation budget exceeded", null, false, false);
+        }
+    }
+
+    private static final class DeadlineCharSequence implements CharSequence {
+        private final String name;
+        private final long deadline;
+        private int reads;
+
+        private DeadlineCharSequence(String name, long deadline) {
+            this.name = name;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int length() {
+            return name.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & CHECK_INTERVAL) == 0 && System.nanoTime() - deadline > 0) {
+                throw new ExceededException();
+            }
+            return name.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineCharSequence(name.substring(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package hudson.plugins.buildblocker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for every decision of the {@link BuildBlockerQueueTaskDispatcher} whether a
+ * queued item is blocked, by the property of the item, by a job protecting it or for a starving build, see
+ * {@link Source}. The event covers the whole evaluation, so its duration is the time the dispatcher took
+ * while holding the queue lock.
+ * <p>
+ * While the event is not recorded, {@link #isEnabled()} is false and the dispatcher neither fills the
+ * event nor collects the checks that ran. The checks are collected per thread, as the dispatcher is
+ * called by the queue maintenance and by the executors concurrently.
+ * </p>
+ */
+@Name(EvaluationEvent.NAME)
+@Label("Build Blocker Evaluation")
+@Category({"Jenkins", "Build Blocker"})
+@Description("A decision of the build blocker whether a queued item is blocked")
+@StackTrace(false)
+class EvaluationEvent extends Event {
+
+    static final String NAME = "hudson.plugins.buildblocker.Evaluation";
+
+    /**
+     * the checks run by the current thread, only set while an enabled event is evaluated
+     */
+    private static final ThreadLocal<StringBuilder> CHECKS = new ThreadLocal<>();
+
+    /**
+     * The check deciding whether an item is blocked.
+     */
+    enum Source {
+        /**
+         * the blocking jobs configured for the item, see {@link IBuildBlockerProperty}
+         */
+        PROPERTY,
+        /**
+         * the jobs protecting the item, see {@link ReverseBlockerIndex}
+         */
+        REVERSE,
+        /**
+         * the starving builds holding back the item, see {@link StarvationGuard}
+         */
+        STARVATION
+    }
+
+    @Label("Source")
+    @Description("The check deciding: PROPERTY, REVERSE or STARVATION")
+    String source;
+
+    @Label("Item")
+    @Description("The full name of the queued task")
+    String item;
+
+    @Label("Queue Id")
+    long queueId;
+
+    @Label("Node")
+    @Description("The node the item is checked for, empty if checked for any node")
+    String node;
+
+    @Label("Property Source")
+    @Description("Whether the blocking jobs are configured in the job, in a folder or in a blocker group, empty if not decided by them")
+    String propertySource;
+
+    @Label("Block Level")
+    String blockLevel;
+
+    @Label("Scan Queue For")
+    String scanQueueFor;
+
+    @Label("Checks")
+    @Description("The checks run in this order, separated by commas")
+    String checks;
+
+    @Label("Blocked")
+    boolean blocked;
+
+    @Label("Decision")
+    @Description("The cause of the blockage, empty if the item is not blocked")
+    String decision;
+
+    /**
+     * Starts collecting the checks run by the current thread.
+     */
+    static void startChecks() {
+        CHECKS.set(new StringBuilder());
+    }
+
+    /**
+     * Records a check, if the checks of the current thread are collected.
+     *
+     * @param check the name of the check
+     */
+    static void checkRan(String check) {
+        StringBuilder checks = CHECKS.get();
+        if (checks != null) {
+            if (checks.length() > 0) {
+                checks.append(',');
+            }
+            checks.append(check);
+        }
+    }
+
+    /**
+     * Stops collecting the checks run by the current thread.
+     *
+     * @return the checks run since {@link #startChecks()}
+     */
+    static String endChecks() {
+        StringBuilder checks = CHECKS.get();
+        CHECKS.remove();
+        return checks != null ? checks.toString() : "";
+    }
+}
@@ -0,0 +1,247 @@
+package hudson.plugins.buildblocker;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics of the evaluations of the dispatcher since the last restart, for the management page: a
+ * histogram of their durations, their cost per configuration of blocking jobs, and the hit rates of the
+ * caches of the dispatcher.
+ * <p>
+ * The histogram has a bucket per power of two nanoseconds, so recording a duration is a single atomic
+ * increment and a percentile is known up to a factor of two.
+ * </p>
+ */
+@ExportedBean
+public class EvaluationStatistics {
+
+    /**
+     * the number of configurations whose cost is kept
+     */
+    static final int MAX_CONFIGURATIONS = 1024;
+
+    /**
+     * The caches of the dispatcher.
+     */
+    public enum Cache {
+        /**
+         * the compiled monitors per configuration, see {@link DefaultMonitorFactory}
+         */
+        MONITORS,
+        /**
+         * the decisions reused until shortly before the expected end of the blocking builds
+         */
+        BACKOFFS,
+        /**
+         * the nodes blocked by running builds, reused until an executor started or finished work
+         */
+        BLOCKED_NODES
+    }
+
+    private final AtomicLongArray durations = new AtomicLongArray(Long.SIZE);
+    private final AtomicLongArray hits = new AtomicLongArray(Cache.values().length);
+    private final AtomicLongArray misses = new AtomicLongArray(Cache.values().length);
+
+    private final Map<String, Cost> costs = Collections.synchronizedMap(
+            new LinkedHashMap<String, Cost>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Cost> eldest) {
+                    return size() > MAX_CONFIGURATIONS;
+                }
+            });
+
+    /**
+     * Records an evaluation.
+     *
+     * @param blockingJobs the evaluated configuration
+     * @param nanos        the time the evaluation took
+     */
+    void record(String blockingJobs, long nanos) {
+        durations.incrementAndGet(bucketOf(nanos));
+        costs.computeIfAbsent(blockingJobs, Cost::new).add(nanos);
+    }
+
+    void hit(Cache cache) {
+        hits.incrementAndGet(cache.ordinal());
+    }
+
+    void miss(Cache cache) {
+        misses.incrementAndGet(cache.ordinal());
+    }
+
+    static int bucketOf(long nanos) {
+        return Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(nanos, 1));
+    }
+
+    /**
+     * @return the number of evaluations
+     */
+    @Exported
+    public long getEvaluations() {
+        long count = 0;
+        for (int i = 0; i < durations.length(); i++) {
+            count += durations.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the duration of the given percentage of the evaluations in nanoseconds, 0 if none
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[durations.length()];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = durations.get(i);
+            count += counts[i];
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > 0 && seen >= rank) {
+                return i < Long.SIZE - 2 ? 2L << i : Long.MAX_VALUE;
+            }
+        }
+        return 0;
+    }
+
+    @Exported
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    @Exported
+    public long getP90() {
+        return getPercentile(90);
+    }
+
+    @Exported
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * @return the hit rates of the caches
+     */
+    @Exported
+    public List<CacheRate> getCaches() {
+        List<CacheRate> rates = new ArrayList<>();
+        for (Cache cache : Cache.values()) {
+            rates.add(new CacheRate(cache.name(), hits.get(cache.ordinal()), misses.get(cache.ordinal())));
+        }
+        return rates;
+    }
+
+    /**
+     * @param limit the maximum number of configurations
+     * @return the configurations with the highest total cost
+     */
+    public List<Cost> getMostExpensive(int limit) {
+        List<Cost> sorted;
+        synchronized (costs) {
+            sorted = new ArrayList<>(costs.values());
+        }
+        sorted.sort(Comparator.comparingLong(Cost::getTotalNanos).reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    @Exported(name = "mostExpensive")
+    public List<Cost> getMostExpensive() {
+        return getMostExpensive(10);
+    }
+
+    /**
+     * The cost of the evaluations of a configuration.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Cost {
+        private final String blockingJobs;
+        private long evaluations;
+        private long totalNanos;
+        private long maxNanos;
+
+        Cost(String blockingJobs) {
+            this.blockingJobs = blockingJobs;
+        }
+
+        private synchronized void add(long nanos) {
+            evaluations++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        @Exported
+        public String getBlockingJobs() {
+            return blockingJobs;
+        }
+
+        @Exported
+        public synchronized long getEvaluations() {
+            return evaluations;
+        }
+
+        @Exported
+        public synchronized long getTotalNanos() {
+            return totalNanos;
+        }
+
+        @Exported
+        public synchronized long getAverageNanos() {
+            return evaluations > 0 ? totalNanos / evaluations : 0;
+        }
+
+        @Exported
+        public synchronized long getMaxNanos() {
+            return maxNanos;
+        }
+    }
+
+    /**
+     * The hits and misses of a cache.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class CacheRate {
+        private final String name;
+        private final long hits;
+        private final long misses;
+
+        CacheRate(String name, long hits, long misses) {
+            this.name = name;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getHits() {
+            return hits;
+        }
+
+        @Exported
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the percentage of hits, -1 if the cache was not used
+         */
+        @Exported
+        public int getHitRate() {
+            return hits + misses > 0 ? (int) (100 * hits / (hits + misses)) : -1;
+        }
+    }
+}
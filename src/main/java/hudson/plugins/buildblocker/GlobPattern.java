@@ -0,0 +1,173 @@
+package hudson.plugins.buildblocker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Shell like glob matching the full name of a job segment by segment, for lines of the blocking jobs
+ * prefixed with <code>glob:</code>, e.g. <code>glob:team-a/deploy-*</code>.
+ * <p>
+ * The name is split at <code>/</code> into segments. Within a segment, <code>*</code> matches any
+ * number of characters and <code>?</code> a single character. A segment <code>**</code> matches any
+ * number of segments, including none. A backslash matches the following character literally.
+ * Matching allocates nothing and does not need regular expressions.
+ * </p>
+ */
+final class GlobPattern implements NamePattern {
+
+    /**
+     * the prefix of the lines of the blocking jobs using glob syntax
+     */
+    static final String PREFIX = "glob:";
+
+    private static final int ANY_CHARS = -1;
+    private static final int ANY_CHAR = -2;
+
+    /**
+     * the segments of the glob, a segment holding characters or the wildcards above, null for <code>**</code>
+     */
+    private final int[][] segments;
+
+    private GlobPattern(int[][] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * @param line a line of the blocking jobs
+     * @return true if the line uses glob syntax
+     */
+    static boolean isGlob(String line) {
+        return line.startsWith(PREFIX);
+    }
+
+    /**
+     * Compiles a glob.
+     *
+     * @param glob the glob, without prefix
+     * @return the compiled glob
+     * @throws PatternSyntaxException if the glob ends with an unescaped backslash
+     */
+    static GlobPattern compile(String glob) {
+        List<int[]> segments = new ArrayList<>();
+        int[] segment = new int[glob.length()];
+        int length = 0;
+        for (int i = 0; i <= glob.length(); i++) {
+            char c = i < glob.length() ? glob.charAt(i) : '/';
+            if (c == '/') {
+                boolean doubleStar = length == 2 && segment[0] == ANY_CHARS && segment[1] == ANY_CHARS;
+                segments.add(doubleStar ? null : copyOf(segment, length));
+                length = 0;
+            } else if (c == '\\') {
+                if (++i == glob.length()) {
+                    throw new PatternSyntaxException("Unescaped trailing backslash", glob, i - 1);
+                }
+                segment[length++] = glob.charAt(i);
+            } else if (c == '*') {
+                segment[length++] = ANY_CHARS;
+            } else if (c == '?') {
+                segment[length++] = ANY_CHAR;
+            } else {
+                segment[length++] = c;
+            }
+        }
+        return new GlobPattern(segments.toArray(new int[0][]));
+    }
+
+    /**
+     * Escapes the wildcards of a value, so that it matches literally.
+     *
+     * @param value the value
+     * @return the glob matching the value
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '*' || c == '?' || c == '\\') {
+                quoted.append('\\');
+            }
+            quoted.append(c);
+        }
+        return quoted.toString();
+    }
+
+    private static int[] copyOf(int[] segment, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(segment, 0, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * Matches the segments of the name. On a mismatch, the last <code>**</code> swallows one more
+     * segment of the name, so each segment of the name is compared with few segments of the glob.
+     */
+    @Override
+    public boolean matches(CharSequence name) {
+        int length = name.length();
+        int segment = 0;
+        int start = 0;
+        int backtrackSegment = -1;
+        int backtrackStart = 0;
+        while (start <= length) {
+            if (segment < segments.length && segments[segment] == null) {
+                backtrackSegment = ++segment;
+                backtrackStart = start;
+                continue;
+            }
+            int end = endOfSegment(name, start);
+            if (segment < segments.length && matchesSegment(segments[segment], name, start, end)) {
+                segment++;
+                start = end + 1;
+            } else if (backtrackSegment >= 0) {
+                segment = backtrackSegment;
+                backtrackStart = endOfSegment(name, backtrackStart) + 1;
+                start = backtrackStart;
+            } else {
+                return false;
+            }
+        }
+        while (segment < segments.length && segments[segment] == null) {
+            segment++;
+        }
+        return segment == segments.length;
+    }
+
+    private static int endOfSegment(CharSequence name, int start) {
+        int length = name.length();
+        for (int i = start; i < length; i++) {
+            if (name.charAt(i) == '/') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Matches a segment of the name, going back to the last <code>*</code> on a mismatch.
+     */
+    private static boolean matchesSegment(int[] glob, CharSequence name, int start, int end) {
+        int g = 0;
+        int i = start;
+        int backtrackGlob = -1;
+        int backtrackName = start;
+        while (i < end) {
+            if (g < glob.length && glob[g] == ANY_CHARS) {
+                backtrackGlob = ++g;
+                backtrackName = i;
+            } else if (g < glob.length && (glob[g] == ANY_CHAR || glob[g] == name.charAt(i))) {
+                g++;
+                i++;
+            } else if (backtrackGlob >= 0) {
+                g = backtrackGlob;
+                i = ++backtrackName;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length && glob[g] == ANY_CHARS) {
+            g++;
+        }
+        return g == glob.length;
+    }
+}
@@ -1,7 +1,8 @@
 package hudson.plugins.buildblocker;
 
 /**
- * Common interface for job and folder properties
+ * Common interface for job and folder properties. The settings added after the first release have default
+ * methods returning the behavior before they were added, so implementations outside this plugin keep working.
  */
 public interface IBuildBlockerProperty {
 
@@ -13,4 +14,58 @@ public interface IBuildBlockerProperty {
 
     String getBlockingJobs();
 
+    /**
+     * @return the name of the {@link BlockerGroup} whose blocking jobs, block level and queue scanning
+     * are used instead of the ones of this property, null if none
+     */
+    default String getBlockerGroup() {
+        return null;
+    }
+
+    /**
+     * @return true if matrix configurations are blocked only by running or queued configurations
+     * with the same axis combination, instead of by their whole parent project
+     */
+    default boolean isSameAxisCombinationOnly() {
+        return false;
+    }
+
+    /**
+     * @return true if a build blocked on node level stays in the queue as blocked while it is blocked
+     * on every node it may run on, so that no agents are provisioned for it
+     */
+    default boolean isBlockWhenAllNodesBlocked() {
+        return false;
+    }
+
+    /**
+     * @return the minutes a blocked build may wait before new builds of its blocking jobs are held
+     * back until it has started, 0 if builds are never held back
+     */
+    default int getStarvationThreshold() {
+        return 0;
+    }
+
+    /**
+     * @return the relatives in the dependency graph blocking in addition to the blocking jobs
+     */
+    default BuildBlockerProperty.DependencyScope getBlockOnDependencies() {
+        return BuildBlockerProperty.DependencyScope.NONE;
+    }
+
+    /**
+     * @return the number of dependency levels whose jobs block, 0 for all
+     */
+    default int getDependencyDepth() {
+        return 0;
+    }
+
+    /**
+     * @return the full name of the folder whose jobs are the only ones considered, null if all jobs
+     * are considered
+     */
+    default String getSubtree() {
+        return null;
+    }
+
 }
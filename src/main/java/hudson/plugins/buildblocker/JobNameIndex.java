@@ -0,0 +1,132 @@
+package hudson.plugins.buildblocker;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Index of the full names of all jobs, maintained by the item events, so previewing the jobs matched by
+ * the blocking jobs does not walk the whole item tree. Matrix configurations are not indexed, as they
+ * are matched by the name of their parent project.
+ */
+@Extension
+public class JobNameIndex extends ItemListener {
+
+    /**
+     * the full names of all jobs, guarded by this
+     */
+    private final NavigableSet<String> names = new TreeSet<>();
+
+    /**
+     * the sorted names, null if the index changed since it was last taken, guarded by this
+     */
+    private String[] snapshot;
+
+    public static JobNameIndex get() {
+        return ExtensionList.lookupSingleton(JobNameIndex.class);
+    }
+
+    @Override
+    public synchronized void onLoaded() {
+        names.clear();
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            for (Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+                add(job);
+            }
+        }
+        snapshot = null;
+    }
+
+    @Override
+    public void onCreated(Item item) {
+        addAll(item);
+    }
+
+    @Override
+    public void onCopied(Item src, Item item) {
+        addAll(item);
+    }
+
+    @Override
+    public synchronized void onDeleted(Item item) {
+        String fullName = item.getFullName();
+        names.remove(fullName);
+        if (item instanceof ItemGroup) {
+            names.subSet(fullName + "/", fullName + "0").clear();
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Called for the moved or renamed item and for every item inside it.
+     */
+    @Override
+    public synchronized void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        if (item instanceof Job && !(item instanceof MatrixConfiguration)) {
+            names.remove(oldFullName);
+            names.add(newFullName);
+            snapshot = null;
+        }
+    }
+
+    /**
+     * @return the full names of all jobs, sorted
+     */
+    synchronized String[] getNames() {
+        String[] current = snapshot;
+        if (current == null) {
+            current = names.toArray(new String[0]);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the range of the sorted names starting with the given prefix.
+     *
+     * @param names  the sorted names
+     * @param prefix the prefix
+     * @return the index of the first and the index after the last name with the prefix
+     */
+    static int[] range(String[] names, String prefix) {
+        int from = Arrays.binarySearch(names, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = from;
+        while (to < names.length && names[to].startsWith(prefix)) {
+            to++;
+        }
+        return new int[]{from, to};
+    }
+
+    private synchronized void addAll(Item item) {
+        add(item);
+        if (item instanceof ItemGroup) {
+            try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+                for (Job<?, ?> job : Items.allItems((ItemGroup<?>) item, Job.class)) {
+                    add(job);
+                }
+            }
+        }
+        snapshot = null;
+    }
+
+    private void add(Item item) {
+        if (item instanceof Job && !(item instanceof MatrixConfiguration)) {
+            names.add(item.getFullName());
+        }
+    }
+}
@@ -0,0 +1,684 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Regular expression matched without backtracking. The expression is compiled to a nondeterministic
+ * automaton whose states are all followed at once while the name is read, so matching takes time
+ * linear in the length of the name, no matter how the expression is written.
+ * <p>
+ * Supports the subset of {@link java.util.regex.Pattern} that does not need backtracking: literals,
+ * escapes, <code>.</code>, character classes, groups, alternatives, greedy and reluctant quantifiers
+ * and the anchors <code>^ $ \A \z \Z</code>. Backreferences, lookarounds, word boundaries, atomic groups,
+ * possessive quantifiers, inline flags, unicode classes and nested or intersected character classes
+ * are rejected with an {@link UnsupportedPatternException}.
+ * </p>
+ */
+final class LinearPattern implements NamePattern {
+
+    /**
+     * the maximum number of instructions, as counted repetitions are expanded
+     */
+    static final int MAX_PROGRAM_SIZE = 10_000;
+
+    private static final int CHAR = 0;
+    private static final int CLASS = 1;
+    private static final int ANY = 2;
+    private static final int SPLIT = 3;
+    private static final int JMP = 4;
+    private static final int BEGIN = 5;
+    private static final int END = 6;
+    private static final int MATCH = 7;
+
+    private final String pattern;
+    private final int[] op;
+    private final int[] x;
+    private final int[] y;
+    private final CharClass[] classes;
+
+    /**
+     * the state sets and the stack of the matches run by the current thread, reused as the patterns are
+     * matched against every job name while the queue is locked
+     */
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(op.length));
+
+    private LinearPattern(String pattern, Program program) {
+        this.pattern = pattern;
+        this.op = program.op.toArray();
+        this.x = program.x.toArray();
+        this.y = program.y.toArray();
+        this.classes = program.classes.toArray(new CharClass[0]);
+    }
+
+    /**
+     * Compiles a regular expression that is valid for {@link java.util.regex.Pattern}.
+     *
+     * @param regex the regular expression
+     * @return the compiled expression
+     * @throws UnsupportedPatternException if the expression uses a construct that needs backtracking
+     */
+    static LinearPattern compile(String regex) {
+        Parser parser = new Parser(regex);
+        Node node = parser.parseAlternatives();
+        if (parser.pos < regex.length()) {
+            throw new UnsupportedPatternException(regex, "unbalanced ')'");
+        }
+        Program program = new Program(regex);
+        node.emit(program);
+        program.emit(MATCH, 0, 0);
+        return new LinearPattern(regex, program);
+    }
+
+    @Override
+    public boolean matches(CharSequence name) {
+        int length = name.length();
+        Scratch buffers = scratch.get();
+        StateSet current = buffers.current;
+        StateSet next = buffers.next;
+        int[] stack = buffers.stack;
+        current.clear();
+        follow(current, 0, 0, length, stack);
+        for (int i = 0; i < length; i++) {
+            if (current.size == 0) {
+                return false;
+            }
+            char c = name.charAt(i);
+            next.clear();
+            for (int s = 0; s < current.size; s++) {
+                int pc = current.dense[s];
+                if ((op[pc] == CHAR && x[pc] == c)
+                        || (op[pc] == CLASS && classes[x[pc]].contains(c))
+                        || (op[pc] == ANY && !isLineTerminator(c))) {
+                    follow(next, pc + 1, i + 1, length, stack);
+                }
+            }
+            StateSet swap = current;
+            current = next;
+            next = swap;
+        }
+        for (int s = 0; s < current.size; s++) {
+            if (op[current.dense[s]] == MATCH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a state and all states reachable from it without reading a character.
+     */
+    private void follow(StateSet states, int start, int position, int length, int[] stack) {
+        int top = 0;
+        stack[top++] = start;
+        while (top > 0) {
+            int pc = stack[--top];
+            if (!states.add(pc)) {
+                continue;
+            }
+            switch (op[pc]) {
+                case JMP:
+                    stack[top++] = x[pc];
+                    break;
+                case SPLIT:
+                    stack[top++] = y[pc];
+                    stack[top++] = x[pc];
+                    break;
+                case BEGIN:
+                    if (position == 0) {
+                        stack[top++] = pc + 1;
+                    }
+                    break;
+                case END:
+                    if (position == length) {
+                        stack[top++] = pc + 1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * Thrown for regular expressions using a construct that cannot be matched without backtracking.
+     */
+    static final class UnsupportedPatternException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String construct;
+
+        UnsupportedPatternException(String regex, String construct) {
+            super("unsupported " + construct + " in " + regex);
+            this.construct = construct;
+        }
+
+        /**
+         * @return a description of the unsupported construct
+         */
+        String getConstruct() {
+            return construct;
+        }
+    }
+
+    /**
+     * The buffers of a match, sized to the program.
+     */
+    private static final class Scratch {
+        private final StateSet current;
+        private final StateSet next;
+        private final int[] stack;
+
+        private Scratch(int size) {
+            current = new StateSet(size);
+            next = new StateSet(size);
+            stack = new int[2 * size + 1];
+        }
+    }
+
+    /**
+     * A set of states with constant time add, clear and iteration in insertion order.
+     */
+    private static final class StateSet {
+        private final int[] dense;
+        private final int[] sparse;
+        private int size;
+
+        private StateSet(int capacity) {
+            dense = new int[capacity];
+            sparse = new int[capacity];
+        }
+
+        private boolean add(int state) {
+            int index = sparse[state];
+            if (index < size && dense[index] == state) {
+                return false;
+            }
+            sparse[state] = size;
+            dense[size++] = state;
+            return true;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void set(int index, int value) {
+            values[index] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class Program {
+        private final String regex;
+        private final IntList op = new IntList();
+        private final IntList x = new IntList();
+        private final IntList y = new IntList();
+        private final List<CharClass> classes = new ArrayList<>();
+
+        private Program(String regex) {
+            this.regex = regex;
+        }
+
+        private int emit(int instruction, int first, int second) {
+            if (op.size >= MAX_PROGRAM_SIZE) {
+                throw new UnsupportedPatternException(regex, "repetition count too large");
+            }
+            op.add(instruction);
+            x.add(first);
+            y.add(second);
+            return op.size - 1;
+        }
+
+        private int pc() {
+            return op.size;
+        }
+    }
+
+    private interface Node {
+        void emit(Program program);
+    }
+
+    private static final class Literal implements Node {
+        private final char c;
+
+        private Literal(char c) {
+            this.c = c;
+        }
+
+        @Override
+        public void emit(Program program) {
+            program.emit(CHAR, c, 0);
+        }
+    }
+
+    private static final class Simple implements Node {
+        private final int instruction;
+
+        private Simple(int instruction) {
+            this.instruction = instruction;
+        }
+
+        @Override
+        public void emit(Program program) {
+            program.emit(instruction, 0, 0);
+        }
+    }
+
+    private static final class ClassNode implements Node {
+        private final CharClass charClass;
+
+        private ClassNode(CharClass charClass) {
+            this.charClass = charClass;
+        }
+
+        @Override
+        public void emit(Program program) {
+            program.classes.add(charClass);
+            program.emit(CLASS, program.classes.size() - 1, 0);
+        }
+    }
+
+    private static final class Concat implements Node {
+        private final List<Node> nodes;
+
+        private Concat(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public void emit(Program program) {
+            for (Node node : nodes) {
+                node.emit(program);
+            }
+        }
+    }
+
+    private static final class Alternatives implements Node {
+        private final List<Node> nodes;
+
+        private Alternatives(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public void emit(Program program) {
+            List<Integer> jumps = new ArrayList<>();
+            for (int i = 0; i < nodes.size() - 1; i++) {
+                int split = program.emit(SPLIT, program.pc() + 1, 0);
+                nodes.get(i).emit(program);
+                jumps.add(program.emit(JMP, 0, 0));
+                program.y.set(split, program.pc());
+            }
+            nodes.get(nodes.size() - 1).emit(program);
+            for (int jump : jumps) {
+                program.x.set(jump, program.pc());
+            }
+        }
+    }
+
+    private static final class Repeat implements Node {
+        private final Node node;
+        private final int min;
+        /**
+         * -1 for no upper bound
+         */
+        private final int max;
+
+        private Repeat(Node node, int min, int max) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public void emit(Program program) {
+            for (int i = 0; i < min; i++) {
+                node.emit(program);
+            }
+            if (max < 0) {
+                int split = program.emit(SPLIT, program.pc() + 1, 0);
+                node.emit(program);
+                program.emit(JMP, split, 0);
+                program.y.set(split, program.pc());
+                return;
+            }
+            List<Integer> splits = new ArrayList<>();
+            for (int i = min; i < max; i++) {
+                splits.add(program.emit(SPLIT, program.pc() + 1, 0));
+                node.emit(program);
+            }
+            for (int split : splits) {
+                program.y.set(split, program.pc());
+            }
+        }
+    }
+
+    /**
+     * A character class of ranges and nested predefined classes like <code>\d</code>.
+     */
+    private static final class CharClass {
+        private final boolean negated;
+        private final StringBuilder ranges = new StringBuilder();
+        private final List<CharClass> nested = new ArrayList<>();
+
+        private CharClass(boolean negated) {
+            this.negated = negated;
+        }
+
+        private CharClass range(char from, char to) {
+            ranges.append(from).append(to);
+            return this;
+        }
+
+        private boolean contains(char c) {
+            boolean found = false;
+            for (int i = 0; i < ranges.length() && !found; i += 2) {
+                found = ranges.charAt(i) <= c && c <= ranges.charAt(i + 1);
+            }
+            for (int i = 0; i < nested.size() && !found; i++) {
+                found = nested.get(i).contains(c);
+            }
+            return found != negated;
+        }
+
+        @CheckForNull
+        private static CharClass predefined(char escape) {
+            switch (escape) {
+                case 'd':
+                case 'D':
+                    return new CharClass(escape == 'D').range('0', '9');
+                case 'w':
+                case 'W':
+                    return new CharClass(escape == 'W').range('a', 'z').range('A', 'Z').range('0', '9').range('_', '_');
+                case 's':
+                case 'S':
+                    return new CharClass(escape == 'S').range(' ', ' ').range('\t', '\r');
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class Parser {
+        private final String regex;
+        private int pos;
+
+        private Parser(String regex) {
+            this.regex = regex;
+        }
+
+        private Node parseAlternatives() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(parseConcat());
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                alternatives.add(parseConcat());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Alternatives(alternatives);
+        }
+
+        private Node parseConcat() {
+            List<Node> nodes = new ArrayList<>();
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                nodes.add(parseRepeat());
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new Concat(nodes);
+        }
+
+        private Node parseRepeat() {
+            Node node = parseAtom();
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                int min;
+                int max;
+                if (c == '*') {
+                    min = 0;
+                    max = -1;
+                    pos++;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                    pos++;
+                } else if (c == '?') {
+                    min = 0;
+                    max = 1;
+                    pos++;
+                } else if (c == '{') {
+                    int close = regex.indexOf('}', pos);
+                    if (close < 0) {
+                        throw unsupported("unclosed repetition");
+                    }
+                    String[] bounds = regex.substring(pos + 1, close).split(",", -1);
+                    try {
+                        min = Integer.parseInt(bounds[0].trim());
+                        max = bounds.length == 1 ? min : bounds[1].trim().isEmpty() ? -1 : Integer.parseInt(bounds[1].trim());
+                    } catch (NumberFormatException e) {
+                        throw unsupported("repetition " + regex.substring(pos, close + 1));
+                    }
+                    if (bounds.length > 2 || min > MAX_PROGRAM_SIZE || max > MAX_PROGRAM_SIZE) {
+                        throw unsupported("repetition count too large");
+                    }
+                    pos = close + 1;
+                } else {
+                    break;
+                }
+                if (pos < regex.length() && regex.charAt(pos) == '+') {
+                    throw unsupported("possessive quantifier");
+                }
+                if (pos < regex.length() && regex.charAt(pos) == '?') {
+                    // reluctant quantifiers match the same names
+                    pos++;
+                }
+                node = new Repeat(node, min, max);
+            }
+            return node;
+        }
+
+        private Node parseAtom() {
+            char c = regex.charAt(pos++);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return new ClassNode(parseClass());
+                case '.':
+                    return new Simple(ANY);
+                case '^':
+                    return new Simple(BEGIN);
+                case '$':
+                    return new Simple(END);
+                case '\\':
+                    return parseEscape();
+                default:
+                    return new Literal(c);
+            }
+        }
+
+        private Node parseGroup() {
+            if (regex.startsWith("?", pos)) {
+                if (regex.startsWith("?:", pos)) {
+                    pos += 2;
+                } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)
+                        || regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                    throw unsupported("lookaround");
+                } else if (regex.startsWith("?<", pos)) {
+                    // named group
+                    int close = regex.indexOf('>', pos);
+                    if (close < 0) {
+                        throw unsupported("unclosed group name");
+                    }
+                    pos = close + 1;
+                } else if (regex.startsWith("?>", pos)) {
+                    throw unsupported("atomic group");
+                } else {
+                    throw unsupported("inline flags");
+                }
+            }
+            Node node = parseAlternatives();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw unsupported("unclosed group");
+            }
+            pos++;
+            return node;
+        }
+
+        private CharClass parseClass() {
+            boolean negated = pos < regex.length() && regex.charAt(pos) == '^';
+            if (negated) {
+                pos++;
+            }
+            CharClass charClass = new CharClass(negated);
+            boolean first = true;
+            while (true) {
+                if (pos >= regex.length()) {
+                    throw unsupported("unclosed character class");
+                }
+                char c = regex.charAt(pos++);
+                if (c == ']' && !first) {
+                    return charClass;
+                }
+                first = false;
+                if (c == '[') {
+                    throw unsupported("nested character class");
+                }
+                if (c == '&' && pos < regex.length() && regex.charAt(pos) == '&') {
+                    throw unsupported("character class intersection");
+                }
+                if (c == '\\') {
+                    char escape = regex.charAt(pos++);
+                    CharClass predefined = CharClass.predefined(escape);
+                    if (predefined != null) {
+                        charClass.nested.add(predefined);
+                        continue;
+                    }
+                    c = parseEscapedChar(escape);
+                }
+                if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                    pos++;
+                    char to = regex.charAt(pos++);
+                    if (to == '\\') {
+                        to = parseEscapedChar(regex.charAt(pos++));
+                    } else if (to == '[') {
+                        throw unsupported("nested character class");
+                    }
+                    charClass.range(c, to);
+                } else {
+                    charClass.range(c, c);
+                }
+            }
+        }
+
+        private Node parseEscape() {
+            char escape = regex.charAt(pos++);
+            CharClass predefined = CharClass.predefined(escape);
+            if (predefined != null) {
+                return new ClassNode(predefined);
+            }
+            switch (escape) {
+                case 'Q':
+                    int end = regex.indexOf("\\E", pos);
+                    String quoted = end < 0 ? regex.substring(pos) : regex.substring(pos, end);
+                    pos = end < 0 ? regex.length() : end + 2;
+                    List<Node> literals = new ArrayList<>();
+                    for (char q : quoted.toCharArray()) {
+                        literals.add(new Literal(q));
+                    }
+                    return new Concat(literals);
+                case 'A':
+                    return new Simple(BEGIN);
+                case 'z':
+                case 'Z':
+                    return new Simple(END);
+                case 'b':
+                case 'B':
+                case 'G':
+                    throw unsupported("boundary \\" + escape);
+                case 'k':
+                    throw unsupported("backreference");
+                default:
+                    if (escape >= '1' && escape <= '9') {
+                        throw unsupported("backreference");
+                    }
+                    return new Literal(parseEscapedChar(escape));
+            }
+        }
+
+        private char parseEscapedChar(char escape) {
+            switch (escape) {
+                case 't':
+                    return '\t';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 'f':
+                    return '\f';
+                case 'a':
+                    return '\u0007';
+                case 'e':
+                    return '\u001b';
+                case '0':
+                    int start = pos;
+                    while (pos < regex.length() && pos - start < 3 && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') {
+                        pos++;
+                    }
+                    return (char) Integer.parseInt(regex.substring(start, pos), 8);
+                case 'x':
+                    if (regex.startsWith("{", pos)) {
+                        int close = regex.indexOf('}', pos);
+                        int codePoint = Integer.parseInt(regex.substring(pos + 1, close), 16);
+                        if (codePoint > Character.MAX_VALUE) {
+                            throw unsupported("supplementary character");
+                        }
+                        pos = close + 1;
+                        return (char) codePoint;
+                    }
+                    pos += 2;
+                    return (char) Integer.parseInt(regex.substring(pos - 2, pos), 16);
+                case 'u':
+                    pos += 4;
+                    return (char) Integer.parseInt(regex.substring(pos - 4, pos), 16);
+                case 'c':
+                    return (char) (regex.charAt(pos++) ^ 64);
+                default:
+                    if (Character.isLetterOrDigit(escape)) {
+                        throw unsupported("escape \\" + escape);
+                    }
+                    return escape;
+            }
+        }
+
+        private UnsupportedPatternException unsupported(String construct) {
+            return new UnsupportedPatternException(regex, construct);
+        }
+    }
+}
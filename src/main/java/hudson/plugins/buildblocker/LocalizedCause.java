@@ -0,0 +1,32 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.queue.CauseOfBlockage;
+import org.jvnet.localizer.Localizable;
+
+import java.util.Locale;
+
+/**
+ * Cause of a blockage described by a message, like {@link CauseOfBlockage#fromMessage(Localizable)}. The
+ * message in the default locale of the plugin identifies the blocker in the {@link BlockedTimeTracker}, so
+ * the blocked time is attributed to the same blocker whatever locale the description is rendered in.
+ */
+class LocalizedCause extends CauseOfBlockage {
+
+    private final Localizable message;
+
+    LocalizedCause(Localizable message) {
+        this.message = message;
+    }
+
+    /**
+     * @return the message in the default locale of the plugin
+     */
+    String getKey() {
+        return message.toString(Locale.ROOT);
+    }
+
+    @Override
+    public String getShortDescription() {
+        return message.toString();
+    }
+}
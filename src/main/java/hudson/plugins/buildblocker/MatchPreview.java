@@ -0,0 +1,255 @@
+package hudson.plugins.buildblocker;
+
+import hudson.Util;
+import hudson.util.FormValidation;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Preview of the jobs matched by a configuration of blocking jobs, answered from the {@link JobNameIndex}.
+ * Every line is validated and matched on its own, so the preview tells which line is invalid or matches
+ * nothing. Only the names starting with the literal prefix of a line, e.g. <code>team-a/deploy-</code> for
+ * <code>team-a/deploy-.*</code>, are matched against it, found by binary search in the sorted names.
+ * The jobs matched by an exclusion line are not counted for the other lines.
+ */
+final class MatchPreview {
+
+    /**
+     * the number of jobs returned at once if no limit is requested
+     */
+    static final int DEFAULT_LIMIT = 50;
+
+    /**
+     * the maximum number of jobs returned at once
+     */
+    static final int MAX_LIMIT = 500;
+
+    /**
+     * the number of jobs listed in the configuration form
+     */
+    static final int FORM_LIMIT = 20;
+
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String REGEX_QUANTIFIERS = "?*+{";
+    private static final String GLOB_METACHARACTERS = "*?\\";
+
+    private final List<LinePreview> lines = new ArrayList<>();
+    private final List<String> matches = new ArrayList<>();
+
+    private MatchPreview() {
+    }
+
+    /**
+     * Matches the configuration against the given job names.
+     *
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @param names        the sorted full names of all jobs
+     * @param visible      whether a job may be shown to the current user
+     * @return the preview
+     */
+    static MatchPreview of(String blockingJobs, String[] names, Predicate<String> visible) {
+        MatchPreview preview = new MatchPreview();
+        if (StringUtils.isBlank(blockingJobs)) {
+            return preview;
+        }
+        BitSet checked = new BitSet(names.length);
+        BitSet shown = new BitSet(names.length);
+        BlockingJobsMonitor exclusions = exclusionsOf(blockingJobs);
+        for (String line : blockingJobs.split("\n")) {
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+            LinePreview linePreview = new LinePreview(line);
+            preview.lines.add(linePreview);
+            if (BlockingJobsTemplate.isTemplate(line)) {
+                continue;
+            }
+            FormValidation validation = BuildBlockerUtils.doCheckRegex(line);
+            if (validation.kind != FormValidation.Kind.OK) {
+                linePreview.problem = validation;
+                continue;
+            }
+            if (BlockingJobsMonitor.isExclusion(line)) {
+                // the jobs excluded by the line, which are never matched by the other lines
+                String jobs = line.substring(BlockingJobsMonitor.EXCLUSION_PREFIX.length());
+                linePreview.count = count(new BlockingJobsMonitor(jobs), names, JobNameIndex.range(names, literalPrefix(jobs)), visible);
+                continue;
+            }
+            int separator = line.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR);
+            String jobs = separator >= 0 ? line.substring(0, separator) : line;
+            BlockingJobsMonitor monitor = new BlockingJobsMonitor(jobs);
+            int[] range = JobNameIndex.range(names, literalPrefix(jobs));
+            int count = 0;
+            for (int i = range[0]; i < range[1]; i++) {
+                if (monitor.matchesJobName(names[i]) && !exclusions.matchesJobName(names[i])) {
+                    if (!checked.get(i)) {
+                        checked.set(i);
+                        shown.set(i, visible.test(names[i]));
+                    }
+                    if (shown.get(i)) {
+                        count++;
+                    }
+                }
+            }
+            linePreview.count = count;
+        }
+        for (int i = shown.nextSetBit(0); i >= 0; i = shown.nextSetBit(i + 1)) {
+            preview.matches.add(names[i]);
+        }
+        return preview;
+    }
+
+    /**
+     * @param blockingJobs the line feed separated list of blocking jobs
+     * @return a monitor matching the jobs excluded by the valid exclusion lines without placeholders
+     */
+    static BlockingJobsMonitor exclusionsOf(String blockingJobs) {
+        StringBuilder exclusions = new StringBuilder();
+        for (String line : blockingJobs.split("\n")) {
+            if (BlockingJobsMonitor.isExclusion(line) && !BlockingJobsTemplate.isTemplate(line)) {
+                exclusions.append(line.substring(BlockingJobsMonitor.EXCLUSION_PREFIX.length())).append('\n');
+            }
+        }
+        return new BlockingJobsMonitor(exclusions.toString());
+    }
+
+    private static int count(BlockingJobsMonitor monitor, String[] names, int[] range, Predicate<String> visible) {
+        int count = 0;
+        for (int i = range[0]; i < range[1]; i++) {
+            if (monitor.matchesJobName(names[i]) && visible.test(names[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the literal text every name matched by a line starts with.
+     *
+     * @param line a line of the blocking jobs, without stage
+     * @return the prefix, empty if there is none
+     */
+    static String literalPrefix(String line) {
+        if (GlobPattern.isGlob(line)) {
+            String glob = line.substring(GlobPattern.PREFIX.length());
+            for (int i = 0; i < glob.length(); i++) {
+                if (GLOB_METACHARACTERS.indexOf(glob.charAt(i)) >= 0) {
+                    return glob.substring(0, i);
+                }
+            }
+            return glob;
+        }
+        if (line.indexOf('|') >= 0) {
+            return "";
+        }
+        int start = line.startsWith("^") ? 1 : 0;
+        for (int i = start; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                // a quantifier makes the previous character optional
+                int end = REGEX_QUANTIFIERS.indexOf(c) >= 0 && i > start ? i - 1 : i;
+                return line.substring(start, end);
+            }
+        }
+        return line.substring(start);
+    }
+
+    /**
+     * @return the names of the matched jobs the current user may see, sorted
+     */
+    List<String> getMatches() {
+        return matches;
+    }
+
+    List<LinePreview> getLines() {
+        return lines;
+    }
+
+    /**
+     * @param start the index of the first job to return
+     * @param limit the maximum number of jobs to return
+     * @return the number of matched jobs, the requested page of them, and the previews of the lines
+     */
+    JSONObject toJSON(int start, int limit) {
+        int from = Math.max(0, Math.min(start, matches.size()));
+        int to = Math.min(matches.size(), from + Math.max(0, Math.min(limit, MAX_LIMIT)));
+        JSONArray jobs = new JSONArray();
+        jobs.addAll(matches.subList(from, to));
+        JSONArray lineArray = new JSONArray();
+        for (LinePreview line : lines) {
+            JSONObject json = new JSONObject();
+            json.put("line", line.line);
+            json.put("template", BlockingJobsTemplate.isTemplate(line.line));
+            json.put("count", line.count);
+            if (line.problem != null) {
+                json.put(line.problem.kind == FormValidation.Kind.ERROR ? "error" : "warning", line.problem.getMessage());
+            }
+            lineArray.add(json);
+        }
+        JSONObject json = new JSONObject();
+        json.put("count", matches.size());
+        json.put("start", from);
+        json.put("jobs", jobs);
+        json.put("lines", lineArray);
+        return json;
+    }
+
+    /**
+     * @return the number of matched jobs, the first of them, and the problems of the lines, for the configuration form
+     */
+    FormValidation toFormValidation() {
+        StringBuilder html = new StringBuilder();
+        html.append(Util.escape(Messages.Preview_Matches(matches.size())));
+        if (!matches.isEmpty()) {
+            html.append("<ul>");
+            for (String match : matches.subList(0, Math.min(FORM_LIMIT, matches.size()))) {
+                html.append("<li>").append(Util.escape(match)).append("</li>");
+            }
+            if (matches.size() > FORM_LIMIT) {
+                html.append("<li>").append(Util.escape(Messages.Preview_More(matches.size() - FORM_LIMIT))).append("</li>");
+            }
+            html.append("</ul>");
+        }
+        FormValidation.Kind kind = FormValidation.Kind.OK;
+        for (LinePreview line : lines) {
+            if (BlockingJobsTemplate.isTemplate(line.line)) {
+                html.append("<div>").append(Util.escape(Messages.Preview_Template(line.line))).append("</div>");
+            } else if (line.problem != null) {
+                html.append("<div>").append(line.problem.renderHtml()).append("</div>");
+                if (line.problem.kind.compareTo(kind) > 0) {
+                    kind = line.problem.kind;
+                }
+            } else if (line.count == 0) {
+                html.append("<div>").append(Util.escape(Messages.Preview_NoMatch(line.line))).append("</div>");
+            }
+        }
+        return FormValidation.respond(kind, html.toString());
+    }
+
+    /**
+     * The preview of a single line.
+     */
+    static final class LinePreview {
+        final String line;
+
+        /**
+         * the number of matched jobs the current user may see, -1 if not matched
+         */
+        int count = -1;
+
+        /**
+         * the validation of the line, if it is invalid or not supported
+         */
+        FormValidation problem;
+
+        LinePreview(String line) {
+            this.line = line;
+        }
+    }
+}
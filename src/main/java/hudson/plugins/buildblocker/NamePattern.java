@@ -0,0 +1,13 @@
+package hudson.plugins.buildblocker;
+
+/**
+ * A compiled line of the blocking jobs, matching the full name of a job or the name of a stage.
+ */
+interface NamePattern {
+
+    /**
+     * @param name the name to match
+     * @return true if the whole name matches
+     */
+    boolean matches(CharSequence name);
+}
@@ -0,0 +1,356 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Api;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * Report of all lines of the blocking jobs configured in jobs, folders and blocker groups. For every
+ * line, it tells how often it matched a running or queued job since its configuration was last
+ * compiled, when it matched last, how long it takes to evaluate, and how many of the current jobs
+ * it matches. A line matching none of the current jobs is dead and can be pruned.
+ * <p>
+ * The statistics are collected by the cached monitors, see {@link AdaptivePatternSet}. The lines with
+ * placeholders are reported with the statistics of all their expansions and are never dead, as their
+ * expansion depends on the queued build. The matches of stage lines are not counted, as the running
+ * stages are matched by the stage rules and not by the pattern set.
+ * </p>
+ * <p>
+ * The lines and the jobs matching them are resolved against the {@link JobNameIndex} and kept until a
+ * job was created, deleted, moved or saved, or the global configuration was saved. Only the statistics
+ * are collected on every call.
+ * </p>
+ */
+@ExportedBean
+public class PatternReport {
+
+    private static final Logger LOG = Logger.getLogger(PatternReport.class.getName());
+
+    /**
+     * changed whenever a job, a folder or the global configuration was saved
+     */
+    private static final AtomicLong configurationVersion = new AtomicLong();
+
+    /**
+     * the lines resolved for the current job names and configuration, null until first used
+     */
+    private static volatile Resolved resolved;
+
+    private final List<Line> lines;
+
+    PatternReport(List<Line> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Creates the report from the resolved lines and the cached monitors.
+     *
+     * @param monitorFactory the factory caching the monitors
+     * @return the report
+     */
+    static PatternReport create(MonitorFactory monitorFactory) {
+        String[] names = JobNameIndex.get().getNames();
+        long version = configurationVersion.get();
+        Resolved current = resolved;
+        if (current == null || current.names != names || current.version != version) {
+            current = new Resolved(names, version, resolve(names));
+            resolved = current;
+        }
+
+        Map<String, Line> lines = new LinkedHashMap<>();
+        List<Line> templates = new ArrayList<>();
+        List<Pattern> expansions = new ArrayList<>();
+        for (Line resolvedLine : current.lines) {
+            Line line = new Line(resolvedLine);
+            lines.put(line.line, line);
+            if (line.isTemplate()) {
+                templates.add(line);
+                expansions.add(BlockingJobsTemplate.expansionsOf(line.line));
+            }
+        }
+
+        if (monitorFactory instanceof DefaultMonitorFactory) {
+            for (BlockingJobsMonitor monitor : ((DefaultMonitorFactory) monitorFactory).getMonitors()) {
+                for (AdaptivePatternSet.LineStatistics statistics : monitor.getStatistics()) {
+                    Line line = lines.get(statistics.line);
+                    for (int i = 0; line == null && i < templates.size(); i++) {
+                        if (expansions.get(i).matcher(statistics.line).matches()) {
+                            line = templates.get(i);
+                        }
+                    }
+                    if (line != null) {
+                        line.add(statistics);
+                    }
+                }
+            }
+        }
+
+        List<Line> report = new ArrayList<>(lines.values());
+        report.sort(Comparator.comparing(Line::isDead).reversed().thenComparingLong(Line::getMatches));
+        return new PatternReport(report);
+    }
+
+    /**
+     * Collects the lines of all jobs, folders and groups and counts the jobs matching them.
+     *
+     * @param names the sorted full names of all jobs
+     * @return the lines, without statistics
+     */
+    private static List<Line> resolve(String[] names) {
+        Map<String, Line> lines = new LinkedHashMap<>();
+        for (String name : names) {
+            Job<?, ?> job = Jenkins.get().getItemByFullName(name, Job.class);
+            BuildBlockerProperty property = job != null ? job.getProperty(BuildBlockerProperty.class) : null;
+            if (property != null && property.isUseBuildBlocker() && !referencesGroup(property)) {
+                addLines(lines, name, property.getBlockingJobs());
+            }
+        }
+        for (BlockerGroup group : BuildBlockerConfiguration.get().getGroups()) {
+            addLines(lines, Messages.BlockerGroup_DisplayName() + " " + group.getName(), group.getBlockingJobs());
+        }
+        try {
+            Map<String, IBuildBlockerProperty> folderProperties = Jenkins.get()
+                    .getDescriptorByType(BuildBlockerFolderProperty.DescriptorImpl.class).getBuildBlockerFolderProperties();
+            for (Map.Entry<String, IBuildBlockerProperty> entry : folderProperties.entrySet()) {
+                if (entry.getValue().isUseBuildBlocker() && !referencesGroup(entry.getValue())) {
+                    addLines(lines, entry.getKey(), entry.getValue().getBlockingJobs());
+                }
+            }
+        } catch (NoClassDefFoundError | Exception e) {
+            LOG.logp(FINE, PatternReport.class.getName(), "resolve", "Unable to check folders for build blocker properties. Make sure cloudbees-folder plugin is installed.", e);
+        }
+
+        for (Line line : lines.values()) {
+            line.countMatchingJobs(names);
+        }
+        return new ArrayList<>(lines.values());
+    }
+
+    /**
+     * @return true if the blocking jobs of the property are replaced by the ones of a configured group
+     */
+    private static boolean referencesGroup(IBuildBlockerProperty property) {
+        return BlockerGroup.resolve(property) != property;
+    }
+
+    private static void addLines(Map<String, Line> lines, String owner, String blockingJobs) {
+        if (StringUtils.isBlank(blockingJobs)) {
+            return;
+        }
+        for (String line : blockingJobs.split("\n")) {
+            if (StringUtils.isNotBlank(line)) {
+                lines.computeIfAbsent(line, Line::new).owners.add(owner);
+            }
+        }
+    }
+
+    /**
+     * @return the lines, dead lines first, then the least matching lines
+     */
+    @Exported
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * @return the number of dead lines
+     */
+    @Exported
+    public int getDeadLines() {
+        int dead = 0;
+        for (Line line : lines) {
+            if (line.isDead()) {
+                dead++;
+            }
+        }
+        return dead;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * The lines resolved for a version of the job names and the configuration.
+     */
+    private static final class Resolved {
+        private final String[] names;
+        private final long version;
+        private final List<Line> lines;
+
+        private Resolved(String[] names, long version, List<Line> lines) {
+            this.names = names;
+            this.version = version;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * Resolves the lines again after a job, a folder or the global configuration was saved.
+     */
+    @Extension
+    public static class ConfigurationChangeListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item || o instanceof BuildBlockerConfiguration) {
+                configurationVersion.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A line of the blocking jobs, with the jobs and folders configuring it.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static class Line {
+        private final String line;
+        private final TreeSet<String> owners = new TreeSet<>();
+        private long matches;
+        private long lastMatch;
+        private long samples;
+        private long sampledNanos;
+        private int matchingJobs = -1;
+
+        Line(String line) {
+            this.line = line;
+        }
+
+        /**
+         * @param resolved the resolved line, whose owners and matching jobs are copied without statistics
+         */
+        Line(Line resolved) {
+            this.line = resolved.line;
+            this.owners.addAll(resolved.owners);
+            this.matchingJobs = resolved.matchingJobs;
+        }
+
+        void add(AdaptivePatternSet.LineStatistics statistics) {
+            matches += statistics.hits;
+            lastMatch = Math.max(lastMatch, statistics.lastHit);
+            samples += statistics.samples;
+            sampledNanos += statistics.sampledNanos;
+        }
+
+        /**
+         * Counts the jobs matching the line, only matching the names starting with its literal prefix.
+         *
+         * @param names the sorted full names of all jobs
+         */
+        void countMatchingJobs(String[] names) {
+            if (isTemplate()) {
+                return;
+            }
+            // an exclusion line counts the jobs it excludes
+            String jobs = BlockingJobsMonitor.isExclusion(line) ? line.substring(BlockingJobsMonitor.EXCLUSION_PREFIX.length()) : line;
+            int separator = jobs.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR);
+            if (separator >= 0) {
+                jobs = jobs.substring(0, separator);
+            }
+            BlockingJobsMonitor monitor = new BlockingJobsMonitor(jobs);
+            int[] range = JobNameIndex.range(names, MatchPreview.literalPrefix(jobs));
+            int count = 0;
+            for (int i = range[0]; i < range[1]; i++) {
+                if (monitor.matchesJobName(names[i])) {
+                    count++;
+                }
+            }
+            matchingJobs = count;
+        }
+
+        @Exported
+        public String getLine() {
+            return line;
+        }
+
+        /**
+         * @return the full names of the jobs and folders configuring the line
+         */
+        @Exported
+        public List<String> getOwners() {
+            return new ArrayList<>(owners);
+        }
+
+        /**
+         * @return the number of matches of running or queued jobs, -1 for stage lines, whose matches are not counted
+         */
+        @Exported
+        public long getMatches() {
+            return isStage() ? -1 : matches;
+        }
+
+        /**
+         * @return true if the line blocks the stages of the jobs it matches
+         */
+        @Exported
+        public boolean isStage() {
+            return !BlockingJobsMonitor.isExclusion(line) && line.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR) >= 0;
+        }
+
+        /**
+         * @return the time of the last match, 0 if it never matched
+         */
+        @Exported
+        public long getLastMatch() {
+            return lastMatch;
+        }
+
+        /**
+         * @return the time of the last match, null if it never matched
+         */
+        @CheckForNull
+        public Date getLastMatchDate() {
+            return lastMatch > 0 ? new Date(lastMatch) : null;
+        }
+
+        /**
+         * @return the average time an evaluation of the line takes in nanoseconds, -1 if unknown
+         */
+        @Exported
+        public long getAverageNanos() {
+            return samples > 0 ? sampledNanos / samples : -1;
+        }
+
+        /**
+         * @return the number of current jobs the line matches, -1 for lines with placeholders
+         */
+        @Exported
+        public int getMatchingJobs() {
+            return matchingJobs;
+        }
+
+        @Exported
+        public boolean isTemplate() {
+            return BlockingJobsTemplate.isTemplate(line);
+        }
+
+        /**
+         * @return true if the line matches none of the current jobs
+         */
+        @Exported
+        public boolean isDead() {
+            return matchingJobs == 0;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Executor;
+import hudson.model.ExecutorListener;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.SubTask;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of the executions of sub tasks owned by a job, like the <code>node {}</code> blocks of a Pipeline,
+ * per node and owning job. Node level checks look up the owning jobs of a node directly instead of
+ * resolving the owner of every executor.
+ */
+@Extension
+public class PlaceholderExecutionsIndex implements ExecutorListener {
+
+    /**
+     * node name → owning job → the builds owning the executions on that node
+     */
+    private final Map<String, Map<Job<?, ?>, List<Queue.Executable>>> executions = new ConcurrentHashMap<>();
+
+    /**
+     * the indexed executions by executor, so they are removed on completion even if the owner of the
+     * task cannot be resolved anymore
+     */
+    private final Map<Executor, Execution> byExecutor = new ConcurrentHashMap<>();
+
+    /**
+     * incremented whenever any executor has accepted or completed a task
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    public static PlaceholderExecutionsIndex get() {
+        return ExtensionList.lookupSingleton(PlaceholderExecutionsIndex.class);
+    }
+
+    /**
+     * Returns true for sub tasks that run on behalf of a build of another job, e.g. the
+     * <code>PlaceholderTask</code> of a Pipeline <code>node {}</code> block.
+     *
+     * @param task the task to check
+     * @return true if the task is indexed by this index
+     */
+    public static boolean isPlaceholder(SubTask task) {
+        return !(task instanceof Job) && task.getOwnerTask() instanceof Job && task.getOwnerExecutable() != null;
+    }
+
+    @Override
+    public void taskAccepted(Executor executor, Queue.Task task) {
+        version.incrementAndGet();
+        if (isPlaceholder(task)) {
+            Execution execution = new Execution(executor.getOwner().getName(), (Job<?, ?>) task.getOwnerTask(), task.getOwnerExecutable());
+            byExecutor.put(executor, execution);
+            executions.compute(execution.nodeName, (node, jobs) -> {
+                Map<Job<?, ?>, List<Queue.Executable>> result = jobs != null ? jobs : new ConcurrentHashMap<>();
+                result.computeIfAbsent(execution.job, j -> new CopyOnWriteArrayList<>()).add(execution.owner);
+                return result;
+            });
+        }
+    }
+
+    @Override
+    public void taskCompleted(Executor executor, Queue.Task task, long durationMS) {
+        version.incrementAndGet();
+        Execution execution = byExecutor.remove(executor);
+        if (execution != null) {
+            executions.computeIfPresent(execution.nodeName, (node, jobs) -> {
+                jobs.computeIfPresent(execution.job, (job, owners) -> {
+                    owners.remove(execution.owner);
+                    return owners.isEmpty() ? null : owners;
+                });
+                return jobs.isEmpty() ? null : jobs;
+            });
+            // steps waiting on node level are waiting for node {} blocks
+            RunningBuildsIndex.get().fireFinished();
+        }
+    }
+
+    @Override
+    public void taskCompletedWithProblems(Executor executor, Queue.Task task, long durationMS, Throwable problems) {
+        taskCompleted(executor, task, durationMS);
+    }
+
+    /**
+     * Returns a number that changes whenever the work of any executor has changed, not only
+     * for indexed executions. Results derived from the executors are valid while it is unchanged.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Returns the first owning job of an execution on the node matching the blocking jobs of the monitor.
+     *
+     * @param monitor  the blocking jobs to check against
+     * @param nodeName the name of the node
+     * @param exclude  a build whose executions never block, e.g. the build asking
+     * @return the blocking job or null
+     */
+    @CheckForNull
+    public Job findOnNode(BlockingJobsMonitor monitor, String nodeName, @CheckForNull Queue.Executable exclude) {
+        Map<Job<?, ?>, List<Queue.Executable>> jobs = executions.getOrDefault(nodeName, Collections.emptyMap());
+        for (Map.Entry<Job<?, ?>, List<Queue.Executable>> entry : jobs.entrySet()) {
+            if (!ownedByOthers(entry.getValue(), exclude)) {
+                continue;
+            }
+            Job job = monitor.match(entry.getKey());
+            if (job != null) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private static boolean ownedByOthers(List<Queue.Executable> owners, @CheckForNull Queue.Executable exclude) {
+        for (Queue.Executable owner : owners) {
+            if (owner != exclude) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Execution {
+        private final String nodeName;
+        private final Job<?, ?> job;
+        private final Queue.Executable owner;
+
+        private Execution(String nodeName, Job<?, ?> job, Queue.Executable owner) {
+            this.nodeName = nodeName;
+            this.job = job;
+            this.owner = owner;
+        }
+    }
+}
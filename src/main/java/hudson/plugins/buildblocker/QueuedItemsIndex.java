@@ -0,0 +1,97 @@
+package hudson.plugins.buildblocker;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the queued items of jobs, partitioned by the top-level folder of their job and maintained by
+ * the queue events, so the queued builds in the subtree of a folder are looked up without walking the
+ * items of the other top-level folders, see {@link IBuildBlockerProperty#getSubtree()}.
+ * <p>
+ * An item is replaced by the item of its next state, e.g. a waiting item by a buildable item, as the
+ * queue keeps the id but not the instance.
+ * </p>
+ */
+@Extension
+public class QueuedItemsIndex extends QueueListener {
+
+    /**
+     * the queued items by queue id, by the top-level folder of their job
+     */
+    private final Map<String, Map<Long, Queue.Item>> partitions = new ConcurrentHashMap<>();
+
+    public static QueuedItemsIndex get() {
+        return ExtensionList.lookupSingleton(QueuedItemsIndex.class);
+    }
+
+    /**
+     * Returns the queued items of the jobs in the subtree of a folder.
+     *
+     * @param subtree   the full name of the folder
+     * @param exclude   the queue id of the item asking, which is never returned
+     * @param buildable true to return only the buildable items, including the pending ones
+     * @return the queued items, in no particular order
+     */
+    List<Queue.Item> findWithin(String subtree, long exclude, boolean buildable) {
+        Map<Long, Queue.Item> partition = partitions.get(RunningBuildsIndex.partitionOf(subtree));
+        if (partition == null) {
+            return Collections.emptyList();
+        }
+        String prefix = subtree + "/";
+        List<Queue.Item> items = new ArrayList<>();
+        for (Queue.Item item : partition.values()) {
+            if (item.getId() != exclude && (!buildable || item instanceof Queue.BuildableItem)
+                    && ((Job<?, ?>) item.task).getFullName().startsWith(prefix)) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public void onEnterWaiting(Queue.WaitingItem wi) {
+        enter(wi);
+    }
+
+    @Override
+    public void onEnterBlocked(Queue.BlockedItem bi) {
+        enter(bi);
+    }
+
+    @Override
+    public void onEnterBuildable(Queue.BuildableItem bi) {
+        enter(bi);
+    }
+
+    @Override
+    public void onLeft(Queue.LeftItem li) {
+        if (!(li.task instanceof Job)) {
+            return;
+        }
+        String key = RunningBuildsIndex.partitionOf(((Job<?, ?>) li.task).getFullName());
+        Map<Long, Queue.Item> partition = partitions.get(key);
+        if (partition != null && partition.remove(li.getId()) != null) {
+            partitions.computeIfPresent(key, (name, items) -> items.isEmpty() ? null : items);
+            return;
+        }
+        // the job was moved to another top-level folder while it was queued
+        partitions.values().forEach(items -> items.remove(li.getId()));
+        partitions.values().removeIf(Map::isEmpty);
+    }
+
+    private void enter(Queue.Item item) {
+        if (item.task instanceof Job) {
+            partitions.computeIfAbsent(RunningBuildsIndex.partitionOf(((Job<?, ?>) item.task).getFullName()), name -> new ConcurrentHashMap<>())
+                    .put(item.getId(), item);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.model.queue.QueueListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * Index of the reverse declarations of blocking jobs: a job protects itself by blocking the jobs
+ * matching its <code>jobsToBlock</code> while it is running or queued, see
+ * {@link BuildBlockerProperty#getJobsToBlock()}.
+ * <p>
+ * The declarations are resolved against the {@link JobNameIndex} into a map from every protected job to
+ * the jobs protecting it, so checking a queued job costs a single lookup no matter how many jobs it
+ * matches. The map is resolved again on the next lookup after a job was created, deleted, moved, or
+ * a job with reverse declarations was saved. The queued builds are counted per job by the queue
+ * events, so checking whether a protecting job is queued does not walk the queue either.
+ * </p>
+ */
+@Extension
+public class ReverseBlockerIndex extends QueueListener {
+
+    private static final Logger LOG = Logger.getLogger(ReverseBlockerIndex.class.getName());
+
+    /**
+     * the protecting jobs by the full name of the protected job
+     */
+    private volatile Map<String, String[]> protectors = Collections.emptyMap();
+
+    /**
+     * the names of the jobs with reverse declarations at the last resolution
+     */
+    private volatile Set<String> declaring = Collections.emptySet();
+
+    private volatile boolean stale = true;
+
+    /**
+     * the queue ids of the queued builds by the full name of their job
+     */
+    private final Map<String, Set<Long>> queued = new ConcurrentHashMap<>();
+
+    /**
+     * @return the index, or null if Jenkins is not running, e.g. in unit tests
+     */
+    @CheckForNull
+    public static ReverseBlockerIndex getIfAvailable() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return ExtensionList.lookupSingleton(ReverseBlockerIndex.class);
+    }
+
+    /**
+     * @param job the full name of a job
+     * @return the full names of the jobs protecting the job, or null if it is not protected
+     */
+    @CheckForNull
+    String[] getProtectors(String job) {
+        if (stale) {
+            resolve();
+        }
+        return protectors.get(job);
+    }
+
+    /**
+     * @param protector the full name of a protecting job
+     * @param exclude   the queue id of the item asking, which never counts
+     * @return true if a build of the job is queued
+     */
+    boolean isQueued(String protector, long exclude) {
+        Set<Long> ids = queued.get(protector);
+        if (ids == null) {
+            return false;
+        }
+        for (Long id : ids) {
+            if (id != exclude) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void invalidate() {
+        stale = true;
+    }
+
+    private synchronized void resolve() {
+        if (!stale) {
+            return;
+        }
+        stale = false;
+        Map<String, String> declarations = new TreeMap<>();
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            for (Job<?, ?> job : Jenkins.get().allItems(Job.class)) {
+                String jobsToBlock = jobsToBlockOf(job);
+                if (jobsToBlock != null) {
+                    declarations.put(job.getFullName(), jobsToBlock);
+                }
+            }
+        }
+        protectors = resolve(declarations, JobNameIndex.get().getNames());
+        declaring = Collections.unmodifiableSet(declarations.keySet());
+        LOG.logp(FINE, getClass().getName(), "resolve", declarations.size() + " jobs protect " + protectors.size() + " jobs");
+    }
+
+    /**
+     * Resolves the reverse declarations into the protecting jobs of every protected job.
+     *
+     * @param declarations the jobs to block by the full name of the protecting job
+     * @param names        the sorted full names of all jobs
+     * @return the protecting jobs by the full name of the protected job
+     */
+    static Map<String, String[]> resolve(Map<String, String> declarations, String[] names) {
+        Map<String, List<String>> resolved = new HashMap<>();
+        for (Map.Entry<String, String> declaration : declarations.entrySet()) {
+            BlockingJobsMonitor exclusions = MatchPreview.exclusionsOf(declaration.getValue());
+            for (String line : declaration.getValue().split("\n")) {
+                if (StringUtils.isBlank(line) || BlockingJobsTemplate.isTemplate(line) || BlockingJobsMonitor.isExclusion(line)) {
+                    continue;
+                }
+                int separator = line.indexOf(BlockingJobsMonitor.StageRule.SEPARATOR);
+                String jobs = separator >= 0 ? line.substring(0, separator) : line;
+                BlockingJobsMonitor monitor = new BlockingJobsMonitor(jobs);
+                int[] range = JobNameIndex.range(names, MatchPreview.literalPrefix(jobs));
+                for (int i = range[0]; i < range[1]; i++) {
+                    if (!names[i].equals(declaration.getKey()) && monitor.matchesJobName(names[i])
+                            && !exclusions.matchesJobName(names[i])) {
+                        List<String> protecting = resolved.computeIfAbsent(names[i], n -> new ArrayList<>());
+                        if (!protecting.contains(declaration.getKey())) {
+                            protecting.add(declaration.getKey());
+                        }
+                    }
+                }
+            }
+        }
+        Map<String, String[]> protectors = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : resolved.entrySet()) {
+            protectors.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+        return protectors;
+    }
+
+    @CheckForNull
+    private static String jobsToBlockOf(Job<?, ?> job) {
+        BuildBlockerProperty property = job.getProperty(BuildBlockerProperty.class);
+        if (property == null || !property.isUseBuildBlocker() || StringUtils.isBlank(property.getJobsToBlock())) {
+            return null;
+        }
+        return property.getJobsToBlock();
+    }
+
+    @CheckForNull
+    private static String jobNameOf(Queue.Task task) {
+        if (task instanceof MatrixConfiguration) {
+            return ((MatrixConfiguration) task).getParent().getFullName();
+        }
+        return task instanceof Job ? ((Job<?, ?>) task).getFullName() : null;
+    }
+
+    @Override
+    public void onEnterWaiting(Queue.WaitingItem wi) {
+        enter(wi);
+    }
+
+    @Override
+    public void onEnterBlocked(Queue.BlockedItem bi) {
+        enter(bi);
+    }
+
+    @Override
+    public void onEnterBuildable(Queue.BuildableItem bi) {
+        enter(bi);
+    }
+
+    @Override
+    public void onLeft(Queue.LeftItem li) {
+        String job = jobNameOf(li.task);
+        if (job != null) {
+            queued.computeIfPresent(job, (name, ids) -> {
+                ids.remove(li.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private void enter(Queue.Item item) {
+        String job = jobNameOf(item.task);
+        if (job != null) {
+            queued.computeIfAbsent(job, name -> ConcurrentHashMap.newKeySet()).add(item.getId());
+        }
+    }
+
+    /**
+     * Resolves the declarations again after the jobs were loaded, added, removed or moved.
+     */
+    @Extension
+    public static class ItemChangeListener extends ItemListener {
+        @Override
+        public void onLoaded() {
+            invalidateIndex();
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            invalidateIndex();
+        }
+
+        @Override
+        public void onCopied(Item src, Item item) {
+            invalidateIndex();
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            invalidateIndex();
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            invalidateIndex();
+        }
+    }
+
+    /**
+     * Resolves the declarations again after a job that declares or declared jobs to block was saved.
+     */
+    @Extension
+    public static class ConfigurationChangeListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Job) {
+                ReverseBlockerIndex index = getIfAvailable();
+                Job<?, ?> job = (Job<?, ?>) o;
+                if (index != null && (jobsToBlockOf(job) != null || index.declaring.contains(job.getFullName()))) {
+                    index.invalidate();
+                }
+            }
+        }
+    }
+
+    private static void invalidateIndex() {
+        ReverseBlockerIndex index = getIfAvailable();
+        if (index != null) {
+            index.invalidate();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.matrix.MatrixConfiguration;
+import hudson.matrix.MatrixProject;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Job;
+import hudson.model.OneOffExecutor;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.flow.FlowExecutionListener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Index of the currently running builds and the nodes they are running on. It is maintained
+ * by the run events, so looking up running builds does not require walking all executors.
+ * <p>
+ * After a restart the index is seeded from the executors, as builds resumed by the controller do
+ * not fire {@link #onStarted(Run, TaskListener)} again. Until Jenkins has completed its startup, builds
+ * may still be resuming, so the executors are looked at on every lookup, and resumed Pipeline builds
+ * are added by the {@link ResumedBuildsListener}.
+ * </p>
+ * <p>
+ * Builds running on a one-off executor, like Pipeline builds, are not bound to a node. On node level
+ * the executions of their <code>node {}</code> blocks are looked up in the {@link PlaceholderExecutionsIndex}.
+ * </p>
+ * <p>
+ * The running builds are also partitioned by the top-level folder of their job, so the builds in the
+ * subtree of a folder are looked up without walking the builds of the other top-level folders.
+ * </p>
+ */
+@Extension
+public class RunningBuildsIndex extends RunListener<Run<?, ?>> {
+
+    private static final Logger LOG = Logger.getLogger(RunningBuildsIndex.class.getName());
+
+    /**
+     * the node of builds running on a one-off executor, which are not bound to a node
+     */
+    static final String NO_NODE = "\u0000";
+
+    /**
+     * the running builds and the name of the node they were started on, "" for the built-in node,
+     * {@link #NO_NODE} for builds on one-off executors
+     */
+    private final Map<Run<?, ?>, String> running = new ConcurrentHashMap<>();
+
+    /**
+     * the running matrix configurations by parent project and axis combination
+     */
+    private final Map<MatrixProject, Map<String, List<Run<?, ?>>>> combinations = new ConcurrentHashMap<>();
+
+    /**
+     * the running builds by the top-level folder of their job, see {@link #partitionOf(String)}
+     */
+    private final Map<String, Set<Run<?, ?>>> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * notified whenever a build or an indexed sub task has finished
+     */
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * incremented whenever a build was added or removed
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile boolean seeded;
+
+    public static RunningBuildsIndex get() {
+        return ExtensionList.lookupSingleton(RunningBuildsIndex.class);
+    }
+
+    @Override
+    public void onStarted(Run<?, ?> run, TaskListener listener) {
+        add(run, nodeOf(run));
+    }
+
+    @Override
+    public void onFinalized(Run<?, ?> run) {
+        if (running.remove(run) != null) {
+            version.incrementAndGet();
+            removeFromPartition(run);
+            if (run.getParent() instanceof MatrixConfiguration) {
+                MatrixConfiguration configuration = (MatrixConfiguration) run.getParent();
+                combinations.computeIfPresent(configuration.getParent(), (parent, runs) -> {
+                    runs.computeIfPresent(configuration.getCombination().toString(), (combination, list) -> {
+                        list.remove(run);
+                        return list.isEmpty() ? null : list;
+                    });
+                    return runs.isEmpty() ? null : runs;
+                });
+            }
+            fireFinished();
+        }
+    }
+
+    private void add(Run<?, ?> run, String nodeName) {
+        if (running.putIfAbsent(run, nodeName) != null) {
+            return;
+        }
+        version.incrementAndGet();
+        partitions.compute(partitionOf(run.getParent().getFullName()), (partition, runs) -> {
+            Set<Run<?, ?>> result = runs != null ? runs : ConcurrentHashMap.newKeySet();
+            result.add(run);
+            return result;
+        });
+        if (run.getParent() instanceof MatrixConfiguration) {
+            MatrixConfiguration configuration = (MatrixConfiguration) run.getParent();
+            combinations.computeIfAbsent(configuration.getParent(), parent -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(configuration.getCombination().toString(), combination -> new CopyOnWriteArrayList<>())
+                    .add(run);
+        }
+    }
+
+    private void removeFromPartition(Run<?, ?> run) {
+        boolean[] removed = new boolean[1];
+        partitions.computeIfPresent(partitionOf(run.getParent().getFullName()), (partition, runs) -> {
+            removed[0] = runs.remove(run);
+            return runs.isEmpty() ? null : runs;
+        });
+        if (!removed[0]) {
+            // the job was moved to another top-level folder while the build was running
+            for (String partition : partitions.keySet()) {
+                partitions.computeIfPresent(partition, (name, runs) -> {
+                    runs.remove(run);
+                    return runs.isEmpty() ? null : runs;
+                });
+            }
+        }
+    }
+
+    @Override
+    public void onDeleted(Run<?, ?> run) {
+        onFinalized(run);
+    }
+
+    /**
+     * Returns the first running build whose job matches the blocking jobs of the monitor.
+     *
+     * @param monitor  the blocking jobs to check against
+     * @param nodeName the name of the node to check, or null to check all nodes
+     * @param exclude  a build that never blocks, e.g. the build asking
+     * @return the blocking job or null
+     */
+    @CheckForNull
+    public Job findRunning(BlockingJobsMonitor monitor, @CheckForNull String nodeName, @CheckForNull Run<?, ?> exclude) {
+        seed();
+        for (Map.Entry<Run<?, ?>, String> entry : running.entrySet()) {
+            Run<?, ?> run = entry.getKey();
+            if (run == exclude || (nodeName != null && !nodeName.equals(entry.getValue()))) {
+                continue;
+            }
+            Job job = monitor.match(run.getParent());
+            if (job != null) {
+                return job;
+            }
+        }
+        if (nodeName != null) {
+            // Pipeline builds occupy the node only with their node {} blocks
+            return PlaceholderExecutionsIndex.get().findOnNode(monitor, nodeName, exclude);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first running build in the subtree of a folder whose job matches the blocking jobs of
+     * the monitor. Only the builds of the top-level folder containing the folder are looked at.
+     *
+     * @param monitor the blocking jobs to check against
+     * @param subtree the full name of the folder
+     * @return the blocking job or null
+     */
+    @CheckForNull
+    public Job findRunningWithin(BlockingJobsMonitor monitor, String subtree) {
+        seed();
+        Set<Run<?, ?>> partition = partitions.get(partitionOf(subtree));
+        if (partition == null) {
+            return null;
+        }
+        String prefix = subtree + "/";
+        for (Run<?, ?> run : partition) {
+            if (run.getParent().getFullName().startsWith(prefix)) {
+                Job job = monitor.matchRunning(run);
+                if (job != null) {
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param fullName the full name of a job or folder
+     * @return the name of its top-level folder, or the name itself for top-level items
+     */
+    static String partitionOf(String fullName) {
+        int separator = fullName.indexOf('/');
+        return separator < 0 ? fullName : fullName.substring(0, separator);
+    }
+
+    /**
+     * Returns the running builds of a job, including the running configurations of a matrix project.
+     *
+     * @param job the job
+     * @return the running builds
+     */
+    public List<Run<?, ?>> findRunningBuilds(Job job) {
+        seed();
+        List<Run<?, ?>> runs = new ArrayList<>();
+        for (Run<?, ?> run : running.keySet()) {
+            Job parent = run.getParent();
+            if (parent == job || (parent instanceof MatrixConfiguration && ((MatrixConfiguration) parent).getParent() == job)) {
+                runs.add(run);
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Returns the first matrix project matching the blocking jobs of the monitor that is running a
+     * configuration with the given axis combination. Each running matrix project is matched once,
+     * no matter how many of its configurations are running.
+     *
+     * @param monitor     the blocking jobs to check against
+     * @param combination the axis combination, e.g. <code>jdk=17,os=linux</code>
+     * @param nodeName    the name of the node to check, or null to check all nodes
+     * @return the blocking matrix project or null
+     */
+    @CheckForNull
+    public Job findRunningCombination(BlockingJobsMonitor monitor, String combination, @CheckForNull String nodeName) {
+        seed();
+        for (Map.Entry<MatrixProject, Map<String, List<Run<?, ?>>>> entry : combinations.entrySet()) {
+            List<Run<?, ?>> runs = entry.getValue().get(combination);
+            if (runs != null && isRunningOn(runs, nodeName) && monitor.match(entry.getKey()) != null) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    private boolean isRunningOn(List<Run<?, ?>> runs, @CheckForNull String nodeName) {
+        if (nodeName == null) {
+            return !runs.isEmpty();
+        }
+        for (Run<?, ?> run : runs) {
+            if (nodeName.equals(running.get(run))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a number that changes whenever a build was started or has finished.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Registers a callback that is invoked after a running build or a <code>node {}</code> block has
+     * finished. Callbacks are invoked on a {@link Timer} thread, not by the thread finishing the build.
+     *
+     * @param listener the callback
+     */
+    public void addListener(@NonNull Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    void fireFinished() {
+        for (Runnable listener : listeners) {
+            // the callbacks match blocking jobs, which must not delay finalizing the build
+            Timer.get().submit(() -> {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    LOG.log(WARNING, "failed to notify " + listener + " about a finished build", e);
+                }
+            });
+        }
+    }
+
+    private void seed() {
+        if (seeded) {
+            return;
+        }
+        Jenkins jenkins = Jenkins.get();
+        // builds may still be resuming until Jenkins has started
+        boolean started = jenkins.getInitLevel() == InitMilestone.COMPLETED;
+        for (Computer computer : jenkins.getComputers()) {
+            for (Executor executor : computer.getAllExecutors()) {
+                Queue.Executable executable = executor.getCurrentExecutable();
+                if (executable instanceof Run && ((Run<?, ?>) executable).isBuilding()) {
+                    add((Run<?, ?>) executable, executor instanceof OneOffExecutor ? NO_NODE : computer.getName());
+                }
+            }
+        }
+        seeded = started;
+        LOG.logp(FINE, getClass().getName(), "seed", "seeded running builds index with " + running.size() + " builds");
+    }
+
+    private static String nodeOf(Run<?, ?> run) {
+        Executor executor = run.getExecutor();
+        if (executor == null) {
+            return "";
+        }
+        if (executor instanceof OneOffExecutor) {
+            return NO_NODE;
+        }
+        return executor.getOwner().getName();
+    }
+
+    /**
+     * Adds the Pipeline builds resumed after a restart, which may resume after the index was seeded.
+     */
+    @Extension(optional = true)
+    public static class ResumedBuildsListener extends FlowExecutionListener {
+        @Override
+        public void onResumed(@NonNull FlowExecution execution) {
+            try {
+                Queue.Executable executable = execution.getOwner().getExecutable();
+                if (executable instanceof Run && ((Run<?, ?>) executable).isBuilding()) {
+                    get().add((Run<?, ?>) executable, NO_NODE);
+                }
+            } catch (IOException e) {
+                LOG.log(FINE, "unable to index resumed build of " + execution.getOwner(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.QueueListener;
+import jenkins.model.Jenkins;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+
+/**
+ * Holds back new builds of the blocking jobs of a queued build that has been blocked for too long.
+ * Otherwise a build blocked by a stream of short builds may never get through, since another
+ * matching build is already waiting whenever one finishes.
+ * <p>
+ * The wait of an item is measured from its queue entry time, so checking whether an item is
+ * starving takes constant time. Holds are released when the starving item has left the queue.
+ * </p>
+ */
+@Extension
+public class StarvationGuard extends QueueListener {
+
+    private static final Logger LOG = Logger.getLogger(StarvationGuard.class.getName());
+
+    /**
+     * the starving items by queue id
+     */
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+
+    /**
+     * @return the guard, or null if Jenkins is not running, e.g. in unit tests
+     */
+    @CheckForNull
+    public static StarvationGuard getIfAvailable() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return ExtensionList.lookupSingleton(StarvationGuard.class);
+    }
+
+    /**
+     * @param item             the blocked item
+     * @param thresholdMinutes the time the item may wait before it is starving, 0 to disable
+     * @return true if the item has been waiting longer than the threshold
+     */
+    static boolean isStarving(Queue.Item item, int thresholdMinutes) {
+        return thresholdMinutes > 0 && System.currentTimeMillis() - item.getInQueueSince() > thresholdMinutes * 60_000L;
+    }
+
+    /**
+     * Holds back the builds of the blocking jobs scheduled after the starving item.
+     *
+     * @param item    the starving item
+     * @param monitor the blocking jobs of the item
+     */
+    void hold(Queue.Item item, BlockingJobsMonitor monitor) {
+        if (holds.putIfAbsent(item.getId(), new Hold(item.task.getFullDisplayName(), item.getInQueueSince(), monitor)) == null) {
+            LOG.logp(FINE, getClass().getName(), "hold", item + " is starving, holding back new builds of its blocking jobs");
+        }
+    }
+
+    /**
+     * @param item the item to check
+     * @return true if the item is starving and holds back the builds of its blocking jobs
+     */
+    boolean isHolding(Queue.Item item) {
+        return !holds.isEmpty() && holds.containsKey(item.getId());
+    }
+
+    /**
+     * @return true if any starving item holds back the builds of its blocking jobs
+     */
+    boolean isHoldingAny() {
+        return !holds.isEmpty();
+    }
+
+    /**
+     * Returns the starving item that holds back the given item, i.e. the item is a build of a
+     * blocking job of a starving item and was scheduled after it.
+     *
+     * @param item the item to check
+     * @return the name of the starving task or null
+     */
+    @CheckForNull
+    String findHolding(Queue.Item item) {
+        if (holds.isEmpty() || !(item.task instanceof Job)) {
+            return null;
+        }
+        for (Map.Entry<Long, Hold> entry : holds.entrySet()) {
+            Hold hold = entry.getValue();
+            if (entry.getKey() != item.getId() && item.getInQueueSince() > hold.since
+                    && hold.monitor.match((Job) item.task) != null) {
+                return hold.task;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onLeft(Queue.LeftItem li) {
+        if (holds.remove(li.getId()) != null) {
+            LOG.logp(FINE, getClass().getName(), "onLeft", li + " has left the queue, releasing its held back builds");
+        }
+    }
+
+    private static final class Hold {
+        private final String task;
+        private final long since;
+        private final BlockingJobsMonitor monitor;
+
+        private Hold(String task, long since, BlockingJobsMonitor monitor) {
+            this.task = task;
+            this.since = since;
+            this.monitor = monitor;
+        }
+    }
+}
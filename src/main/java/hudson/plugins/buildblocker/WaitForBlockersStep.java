@@ -0,0 +1,209 @@
+package hudson.plugins.buildblocker;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.ParametersAction;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Pipeline step that waits until none of the blocking jobs is running anymore.
+ * <p>
+ * The step does not poll and does not need an executor. It suspends the CPS thread and is resumed
+ * by the {@link RunningBuildsIndex} whenever a build has finished.
+ * </p>
+ */
+public class WaitForBlockersStep extends Step {
+
+    private final String blockingJobs;
+    private BuildBlockerProperty.BlockLevel blockLevel = BuildBlockerProperty.BlockLevel.GLOBAL;
+
+    @DataBoundConstructor
+    public WaitForBlockersStep(String blockingJobs) {
+        this.blockingJobs = blockingJobs;
+    }
+
+    public String getBlockingJobs() {
+        return blockingJobs;
+    }
+
+    public BuildBlockerProperty.BlockLevel getBlockLevel() {
+        return blockLevel;
+    }
+
+    @DataBoundSetter
+    public void setBlockLevel(String blockLevel) {
+        BuildBlockerProperty.BlockLevel level = BuildBlockerProperty.BlockLevel.from(blockLevel);
+        this.blockLevel = level.isNode() ? level : BuildBlockerProperty.BlockLevel.GLOBAL;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        Computer computer = context.get(Computer.class);
+        String nodeName = blockLevel.isNode() && computer != null ? computer.getName() : null;
+        if (blockLevel.isNode() && computer == null) {
+            context.get(TaskListener.class).getLogger().println(Messages.WaitForBlockers_NoNode());
+        }
+        return new Execution(context, blockingJobs, nodeName);
+    }
+
+    public static class Execution extends StepExecution implements Runnable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final Logger LOG = Logger.getLogger(Execution.class.getName());
+
+        /**
+         * the seconds to wait before checking again while Jenkins is starting
+         */
+        private static final long RESUME_DELAY = 5;
+
+        private final String blockingJobs;
+        @CheckForNull
+        private final String nodeName;
+
+        private transient BlockingJobsMonitor monitor;
+        private transient boolean done;
+
+        Execution(StepContext context, String blockingJobs, @CheckForNull String nodeName) {
+            super(context);
+            this.blockingJobs = blockingJobs;
+            this.nodeName = nodeName;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            RunningBuildsIndex.get().addListener(this);
+            Job blocker = recheck();
+            if (blocker != null) {
+                getContext().get(TaskListener.class).getLogger().println(Messages.WaitForBlockers_Waiting(blocker.getFullDisplayName()));
+            }
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+            RunningBuildsIndex.get().addListener(this);
+            run();
+        }
+
+        @Override
+        public void stop(@NonNull Throwable cause) throws Exception {
+            finish();
+            getContext().onFailure(cause);
+        }
+
+        @Override
+        public String getStatus() {
+            return done ? "finished" : "waiting for builds of " + blockingJobs;
+        }
+
+        /**
+         * Called by the {@link RunningBuildsIndex} after a build has finished, and after a restart.
+         */
+        @Override
+        public void run() {
+            if (Jenkins.get().getInitLevel() != InitMilestone.COMPLETED) {
+                // the blocking builds may not be resumed yet
+                Timer.get().schedule(this, RESUME_DELAY, TimeUnit.SECONDS);
+                return;
+            }
+            try {
+                recheck();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                LOG.log(WARNING, "failed to check blocking jobs of " + getContext(), e);
+            }
+        }
+
+        /**
+         * Completes the step if none of the blocking jobs is running.
+         *
+         * @return the blocking job, or null if the step was completed
+         */
+        @CheckForNull
+        private synchronized Job recheck() throws IOException, InterruptedException {
+            if (done) {
+                return null;
+            }
+            Run<?, ?> run = getContext().get(Run.class);
+            Job blocker = RunningBuildsIndex.get().findRunning(monitor(run), nodeName, run);
+            if (blocker == null) {
+                LOG.logp(FINE, getClass().getName(), "recheck", run + " is not blocked anymore");
+                finish();
+                getContext().onSuccess(null);
+            }
+            return blocker;
+        }
+
+        private BlockingJobsMonitor monitor(Run<?, ?> run) {
+            if (monitor == null) {
+                String expanded = BlockingJobsTemplate.expand(blockingJobs, run.getParent(),
+                        BlockingJobsTemplate.parametersOf(run.getAction(ParametersAction.class)));
+                monitor = new BlockingJobsMonitor(expanded);
+            }
+            return monitor;
+        }
+
+        private void finish() {
+            done = true;
+            RunningBuildsIndex.get().removeListener(this);
+        }
+    }
+
+    @Extension(optional = true)
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public String getFunctionName() {
+            return "waitForBlockers";
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.WaitForBlockers_DisplayName();
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, TaskListener.class);
+        }
+
+        /**
+         * Check the regular expression entered by the user
+         */
+        public FormValidation doCheckBlockingJobs(@QueryParameter final String blockingJobs) {
+            return BuildBlockerUtils.doCheckRegex(blockingJobs);
+        }
+
+        public ListBoxModel doFillBlockLevelItems() {
+            ListBoxModel items = new ListBoxModel();
+            items.add(BuildBlockerProperty.BlockLevel.GLOBAL.name());
+            items.add(BuildBlockerProperty.BlockLevel.NODE.name());
+            return items;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package hudson.plugins.buildblocker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class AdaptivePatternSetTest {
+
+    private static NamePattern literal(String literal) {
+        return name -> literal.contentEquals(name);
+    }
+
+    @Test
+    void testLinesAreTriedInConfigurationOrderInitially() {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b"), literal("c")), Arrays.asList("a", "b", "c"));
+
+        assertThat(set.getOrder(), is(new int[]{0, 1, 2}));
+    }
+
+    @Test
+    void testMostFrequentlyMatchingLinesAreTriedFirst() {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b"), literal("c"), literal("d")), Arrays.asList("a", "b", "c", "d"));
+        for (int i = 0; i < 10; i++) {
+            set.matches("c");
+        }
+        set.matches("b");
+        set.matches("d");
+
+        set.reorder();
+
+        assertThat(set.getOrder(), is(new int[]{2, 1, 3, 0}));
+    }
+
+    @Test
+    void testOrderIsRecomputedPeriodically() {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b")), Arrays.asList("a", "b"));
+        for (int i = 0; i <= AdaptivePatternSet.REORDER_INTERVAL; i++) {
+            assertThat(set.matches("b"), is(true));
+        }
+
+        assertThat(set.getOrder(), is(new int[]{1, 0}));
+    }
+
+    @Test
+    void testOrderDoesNotChangeTheResult() {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b")), Arrays.asList("a", "b"));
+        for (int i = 0; i < 5; i++) {
+            set.matches("b");
+        }
+        set.reorder();
+
+        assertThat(set.matches("a"), is(true));
+        assertThat(set.matches("b"), is(true));
+        assertThat(set.matches("c"), is(false));
+    }
+
+    @Test
+    void testHitsAndCostAreRecordedPerLine() {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b")), Arrays.asList("a", "b"));
+        for (int i = 0; i < AdaptivePatternSet.SAMPLE_INTERVAL; i++) {
+            set.matches("b");
+        }
+
+        List<AdaptivePatternSet.LineStatistics> statistics = set.getStatistics();
+        assertThat(statistics.get(0).line, is("a"));
+        assertThat(statistics.get(0).hits, is(0L));
+        assertThat(statistics.get(0).lastHit, is(0L));
+        assertThat(statistics.get(1).hits, is((long) AdaptivePatternSet.SAMPLE_INTERVAL));
+        assertThat(statistics.get(1).lastHit > 0, is(true));
+        assertThat(statistics.get(0).samples, is(1L));
+        assertThat(statistics.get(1).samples, is(1L));
+    }
+
+    @Test
+    void testExcludedNamesDoNotMatch() {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b")), Arrays.asList("a", "b"),
+                Arrays.asList(literal("b")), Arrays.asList("!b"));
+
+        assertThat(set.matches("a"), is(true));
+        assertThat(set.matches("b"), is(false));
+        assertThat(set.matches("c"), is(false));
+        assertThat(set.isExcluded("b"), is(true));
+        assertThat(set.getOrder(), is(new int[]{0, 1}));
+    }
+
+    @Test
+    void testExclusionsAreOnlyTriedForMatchedNames() {
+        int[] tried = new int[1];
+        NamePattern exclusion = name -> {
+            tried[0]++;
+            return false;
+        };
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a")), Arrays.asList("a"),
+                Arrays.asList(exclusion), Arrays.asList("!x"));
+
+        set.matches("b");
+        set.matches("c");
+        assertThat(tried[0], is(0));
+
+        set.matches("a");
+        assertThat(tried[0], is(1));
+    }
+
+    @Test
+    void testExclusionLinesAreReported() {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b")), Arrays.asList("a", "b"),
+                Arrays.asList(literal("b")), Arrays.asList("!b"));
+        set.matches("b");
+        set.matches("b");
+
+        List<AdaptivePatternSet.LineStatistics> statistics = set.getStatistics();
+
+        assertThat(statistics.size(), is(3));
+        assertThat(statistics.get(1).hits, is(2L));
+        assertThat(statistics.get(2).line, is("!b"));
+        assertThat(statistics.get(2).hits, is(2L));
+    }
+
+    @Test
+    void testConcurrentMatchesAreAllCounted() throws Exception {
+        AdaptivePatternSet set = new AdaptivePatternSet(Arrays.asList(literal("a"), literal("b")), Arrays.asList("a", "b"));
+        int threads = 4;
+        int matches = 10 * AdaptivePatternSet.REORDER_INTERVAL;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < matches; i++) {
+                    assertThat(set.matches("b"), is(true));
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+
+        assertThat(set.getStatistics().get(1).hits, is((long) threads * matches));
+        assertThat(set.getOrder(), is(new int[]{1, 0}));
+    }
+}
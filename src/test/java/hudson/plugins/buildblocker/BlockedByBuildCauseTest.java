@@ -0,0 +1,35 @@
+package hudson.plugins.buildblocker;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.not;
+
+class BlockedByBuildCauseTest {
+
+    @Test
+    void testDescriptionWithoutExpectedEnd() {
+        BlockedByBuildCause cause = new BlockedByBuildCause(System.currentTimeMillis(), "blockingJob", "blockingJob", -1);
+
+        assertThat(cause.getShortDescription(), endsWith(" by blockingJob."));
+        assertThat(cause.getShortDescription(), not(containsString("Expected to finish")));
+    }
+
+    @Test
+    void testDescriptionWithExpectedEnd() {
+        BlockedByBuildCause cause = new BlockedByBuildCause(System.currentTimeMillis(), "blockingJob", "blockingJob",
+                System.currentTimeMillis() + 40 * 60_000L);
+
+        assertThat(cause.getShortDescription(), containsString(" by blockingJob. Expected to finish in 39 min"));
+    }
+
+    @Test
+    void testExpectedEndInThePastIsNotShown() {
+        BlockedByBuildCause cause = new BlockedByBuildCause(System.currentTimeMillis(), "blockingJob", "blockingJob",
+                System.currentTimeMillis() - 1000);
+
+        assertThat(cause.getShortDescription(), endsWith(" by blockingJob."));
+    }
+}
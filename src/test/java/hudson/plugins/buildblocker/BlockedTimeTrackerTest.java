@@ -0,0 +1,148 @@
+package hudson.plugins.buildblocker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class BlockedTimeTrackerTest {
+
+    private final BlockedTimeTracker tracker = new BlockedTimeTracker();
+
+    @Test
+    void testTimeIsAttributedToTheBlockerOfTheEarlierDecision() {
+        tracker.update(1, "deploy", "build", "GLOBAL", 1_000);
+        tracker.update(1, "deploy", "build", "GLOBAL", 2_000);
+        tracker.update(1, "deploy", "test", "GLOBAL", 5_000);
+        tracker.update(1, "deploy", null, "GLOBAL", 6_000);
+        tracker.update(1, "deploy", null, "GLOBAL", 9_000);
+        tracker.left(1, false, 10_000);
+
+        BlockedTimeAction action = tracker.take(1);
+
+        assertThat(action.getBlockedMillis(), is(5_000L));
+        List<BlockedTimeTracker.BlockerTime> blockers = action.getBlockers();
+        assertThat(blockers, hasSize(2));
+        assertThat(blockers.get(0).getName(), is("build"));
+        assertThat(blockers.get(0).getMillis(), is(4_000L));
+        assertThat(blockers.get(1).getName(), is("test"));
+        assertThat(blockers.get(1).getMillis(), is(1_000L));
+        assertThat(tracker.take(1), nullValue());
+    }
+
+    @Test
+    void testNodeBlocksAccumulateAcrossUnblockingDecisions() {
+        // on node level, every pass checks the item globally first, which does not block it
+        tracker.update(1, "deploy", "build", "NODE", true, 1_000);
+        tracker.update(1, "deploy", null, "NODE", false, 4_000);
+        tracker.update(1, "deploy", "build", "NODE", true, 4_000);
+
+        assertThat(tracker.getBlockedItems().get(0).getBlockedSince(), is(1_000L));
+        tracker.left(1, false, 6_000);
+        assertThat(tracker.take(1).getBlockedMillis(), is(5_000L));
+    }
+
+    @Test
+    void testNodeBlockEndsWhenANodeDoesNotBlock() {
+        tracker.update(1, "deploy", "build", "NODE", true, 1_000);
+        tracker.update(1, "deploy", null, "NODE", false, 2_000);
+        assertThat(tracker.getBlockedItems(), hasSize(1));
+
+        tracker.update(1, "deploy", null, "NODE", true, 3_000);
+        assertThat(tracker.getBlockedItems(), empty());
+
+        tracker.update(1, "deploy", "build", "NODE", true, 5_000);
+        assertThat(tracker.getBlockedItems().get(0).getBlockedSince(), is(5_000L));
+        tracker.left(1, false, 6_000);
+        assertThat(tracker.take(1).getBlockedMillis(), is(3_000L));
+    }
+
+    @Test
+    void testUnblockedItemsAreNotTracked() {
+        tracker.update(1, "deploy", null, "GLOBAL", 1_000);
+        tracker.left(1, false, 2_000);
+
+        assertThat(tracker.take(1), nullValue());
+        assertThat(tracker.getJobs(), empty());
+    }
+
+    @Test
+    void testCancelledItemsAreRolledUpButGetNoAction() {
+        tracker.update(1, "deploy", "build", "GLOBAL", 1_000);
+        tracker.left(1, true, 61_000);
+
+        assertThat(tracker.take(1), nullValue());
+        assertThat(tracker.getJobs(), hasSize(1));
+        assertThat(tracker.getJobs().get(0).getTotalMillis(), is(60_000L));
+    }
+
+    @Test
+    void testBlockedTimeIsRolledUpPerJobAndPerBlocker() {
+        tracker.update(1, "deploy", "build", "GLOBAL", 0);
+        tracker.left(1, false, 30_000);
+        tracker.update(2, "deploy", "build", "GLOBAL", 0);
+        tracker.update(2, "deploy", "test", "GLOBAL", 100_000);
+        tracker.left(2, false, 400_000);
+        tracker.update(3, "release", "build", "GLOBAL", 0);
+        tracker.left(3, false, 10_000);
+
+        List<BlockedTimeTracker.Attribution> jobs = tracker.getJobs();
+        assertThat(jobs, hasSize(2));
+        assertThat(jobs.get(0).getName(), is("deploy"));
+        assertThat(jobs.get(0).getItems(), is(2L));
+        assertThat(jobs.get(0).getTotalMillis(), is(430_000L));
+        assertThat(jobs.get(0).getHistogram(), is(new long[]{1, 0, 1, 0, 0, 0}));
+        assertThat(jobs.get(0).getCounterparts().get(0).getName(), is("test"));
+        assertThat(jobs.get(0).getCounterparts().get(0).getMillis(), is(300_000L));
+
+        List<BlockedTimeTracker.Attribution> blockers = tracker.getBlockers();
+        assertThat(blockers, hasSize(2));
+        assertThat(blockers.get(0).getName(), is("test"));
+        assertThat(blockers.get(1).getName(), is("build"));
+        assertThat(blockers.get(1).getItems(), is(3L));
+        assertThat(blockers.get(1).getTotalMillis(), is(140_000L));
+        assertThat(blockers.get(1).getCounterparts().get(0).getName(), is("deploy"));
+        assertThat(blockers.get(1).getCounterparts().get(0).getMillis(), is(130_000L));
+    }
+
+    @Test
+    void testBlockedItemsAndVersion() {
+        tracker.update(1, "deploy", "build", "GLOBAL", 1_000);
+        tracker.update(2, "release", "deploy", "NODE", 2_000);
+        long version = tracker.getVersion();
+
+        tracker.update(1, "deploy", "build", "GLOBAL", 3_000);
+        tracker.update(2, "release", "deploy", "NODE", 3_000);
+
+        assertThat(tracker.getVersion(), is(version));
+        List<BlockedTimeTracker.BlockedItem> blocked = tracker.getBlockedItems();
+        assertThat(blocked, hasSize(2));
+        assertThat(blocked.get(0).getQueueId(), is(1L));
+        assertThat(blocked.get(0).getJob(), is("deploy"));
+        assertThat(blocked.get(0).getBlocker(), is("build"));
+        assertThat(blocked.get(0).getBlockLevel(), is("GLOBAL"));
+        assertThat(blocked.get(0).getBlockedSince(), is(1_000L));
+        assertThat(blocked.get(1).getBlockLevel(), is("NODE"));
+
+        tracker.update(1, "deploy", "test", "GLOBAL", 4_000);
+        assertThat(tracker.getVersion(), is(version + 1));
+        assertThat(tracker.getBlockedItems().get(0).getBlockedSince(), is(1_000L));
+
+        tracker.update(1, "deploy", null, null, 5_000);
+        tracker.left(2, false, 5_000);
+        assertThat(tracker.getVersion(), is(version + 3));
+        assertThat(tracker.getBlockedItems(), empty());
+    }
+
+    @Test
+    void testBuckets() {
+        assertThat(BlockedTimeTracker.Attribution.bucketOf(59_999), is(0));
+        assertThat(BlockedTimeTracker.Attribution.bucketOf(60_000), is(1));
+        assertThat(BlockedTimeTracker.Attribution.bucketOf(14_400_000), is(5));
+    }
+}
@@ -0,0 +1,123 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@WithJenkins
+class BlockerGroupTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        j = rule;
+    }
+
+    @Test
+    void testJobUsesTheBlockingJobsOfItsGroup() throws Exception {
+        setGroup("deployments", "deploy-.*");
+        FreeStyleProject deploy = j.createFreeStyleProject("deploy-api");
+        deploy.getBuildersList().add(new SleepBuilder(10_000));
+        FreeStyleProject project = j.createFreeStyleProject("migration");
+        project.addProperty(new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockingJobs("other-.*")
+                .setBlockerGroup("deployments")
+                .createBuildBlockerProperty());
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        FreeStyleBuild build = deploy.scheduleBuild2(0).waitForStart();
+        assertThat(dispatcher.canRun(itemOf(project)), instanceOf(BlockedByBuildCause.class));
+
+        // changing the group changes the decision without saving the job
+        setGroup("deployments", "release-.*");
+        assertThat(dispatcher.canRun(itemOf(project)), nullValue());
+
+        build.getExecutor().interrupt();
+        j.waitForCompletion(build);
+    }
+
+    @Test
+    void testPropertyResolvesToTheSameInstance() {
+        BlockerGroup group = setGroup("deployments", "deploy-.*");
+        BuildBlockerProperty property = new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockerGroup("deployments")
+                .createBuildBlockerProperty();
+        property.setStarvationThreshold(5);
+
+        IBuildBlockerProperty resolved = BlockerGroup.resolve(property);
+
+        assertThat(resolved, sameInstance(BlockerGroup.resolve(property)));
+        assertThat(resolved.getBlockingJobs(), is("deploy-.*"));
+        assertThat(resolved.getBlockLevel(), is(BuildBlockerProperty.BlockLevel.GLOBAL));
+        assertThat(resolved.getScanQueueFor(), is(BuildBlockerProperty.QueueScanScope.ALL));
+        assertThat(resolved.getStarvationThreshold(), is(5));
+        assertThat(group.applyTo(property), sameInstance(resolved));
+    }
+
+    @Test
+    void testUnknownGroupFallsBackToTheProperty() {
+        BuildBlockerProperty property = new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockingJobs("deploy-.*")
+                .setBlockerGroup("missing")
+                .createBuildBlockerProperty();
+
+        assertThat(BlockerGroup.resolve(property), sameInstance(property));
+    }
+
+    @Test
+    void testGroupsSurviveConfigurationRoundtrip() throws Exception {
+        setGroup("deployments", "deploy-.*");
+
+        j.configRoundtrip();
+
+        BlockerGroup group = BuildBlockerConfiguration.get().getGroup("deployments");
+        assertThat(group, notNullValue());
+        assertThat(group.getBlockingJobs(), is("deploy-.*"));
+        assertThat(group.getScanQueueFor(), is(BuildBlockerProperty.QueueScanScope.ALL));
+    }
+
+    @Test
+    void testGroupsAreSavedOnlyByTheConfigurationForm() throws Exception {
+        setGroup("deployments", "deploy-.*");
+        assertThat(new BuildBlockerConfiguration().getGroup("deployments"), nullValue());
+
+        j.configRoundtrip();
+
+        BlockerGroup group = new BuildBlockerConfiguration().getGroup("deployments");
+        assertThat(group, notNullValue());
+        assertThat(group.getBlockingJobs(), is("deploy-.*"));
+    }
+
+    private static BlockerGroup setGroup(String name, String blockingJobs) {
+        BlockerGroup group = new BlockerGroup(name);
+        group.setBlockingJobs(blockingJobs);
+        group.setBlockLevel("GLOBAL");
+        group.setScanQueueFor("ALL");
+        BuildBlockerConfiguration.get().setGroups(Collections.singletonList(group));
+        return group;
+    }
+
+    private static Queue.BuildableItem itemOf(FreeStyleProject project) {
+        return new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), project, new ArrayList<>()));
+    }
+}
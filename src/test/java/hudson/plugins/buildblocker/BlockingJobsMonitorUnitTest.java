@@ -1,9 +1,11 @@
 package hudson.plugins.buildblocker;
 
+import hudson.matrix.Combination;
 import hudson.matrix.MatrixConfiguration;
 import hudson.matrix.MatrixProject;
 import hudson.model.Computer;
 import hudson.model.Executor;
+import hudson.model.Job;
 import hudson.model.Label;
 import hudson.model.Node;
 import hudson.model.OneOffExecutor;
@@ -30,10 +32,13 @@ import java.util.Collections;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
@@ -355,6 +360,19 @@ class BlockingJobsMonitorUnitTest {
         assertThat((Project) monitor.checkForQueueEntries(Mockito.mock(BuildableItem.class)), is(equalTo(project)));
     }
 
+    @Test
+    void testIgnoringQueuedAfterSkipsOnlyLaterQueuedBuilds() {
+        when(queue.getItems()).thenReturn(new Queue.Item[]{nonBlockingBlockedItem, blockedItem});
+        BlockingJobsMonitor starving = monitor.ignoringQueuedAfter(2000);
+
+        when(blockedItem.getInQueueSince()).thenReturn(1000L);
+        assertThat((Project) starving.checkForQueueEntries(Mockito.mock(BuildableItem.class)), is(equalTo(project)));
+
+        when(blockedItem.getInQueueSince()).thenReturn(3000L);
+        assertThat(starving.checkForQueueEntries(Mockito.mock(BuildableItem.class)), is(nullValue()));
+        assertThat((Project) monitor.checkForQueueEntries(Mockito.mock(BuildableItem.class)), is(equalTo(project)));
+    }
+
     @Test
     void testCheckForQueueEntriesReturnsBlockedTaskThatIsQueued() {
         when(queue.getItems()).thenReturn(new Queue.Item[]{nonBlockingBlockedItem, blockedItem});
@@ -389,8 +407,8 @@ class BlockingJobsMonitorUnitTest {
 
         assertThat(monitor.checkForQueueEntries(Mockito.mock(BuildableItem.class)), is(nullValue()));
 
-        //verify that the different project was actually checked (three items are checked for two job names each)
-        verify(nonBlockingProject, times(6)).getFullName();
+        //verify that the different project was actually checked (the name of each of the three items is resolved once)
+        verify(nonBlockingProject, times(3)).getFullName();
     }
 
 
@@ -426,8 +444,8 @@ class BlockingJobsMonitorUnitTest {
 
         assertThat(monitor.checkNodeForRunningBuilds(node), is(nullValue()));
 
-        //verify that the different project was actually checked (two job names are checked)
-        verify(nonBlockingProject, times(2)).getFullName();
+        //verify that the different project was actually checked (its name is resolved once for both job names)
+        verify(nonBlockingProject, times(1)).getFullName();
     }
 
     @Test
@@ -445,8 +463,8 @@ class BlockingJobsMonitorUnitTest {
 
         assertThat(monitor.checkNodeForRunningBuilds(node), is(nullValue()));
 
-        //verify that the different project was actually checked (two job names are checked)
-        verify(nonBlockingProject, times(2)).getFullName();
+        //verify that the different project was actually checked (its name is resolved once for both job names)
+        verify(nonBlockingProject, times(1)).getFullName();
     }
 
     @Test
@@ -465,8 +483,8 @@ class BlockingJobsMonitorUnitTest {
 
         assertThat(monitor.checkNodeForRunningBuilds(node), is(nullValue()));
 
-        //verify that the different project was actually checked (two job names are checked)
-        verify(nonBlockingMatrixProject, times(2)).getFullName();
+        //verify that the different project was actually checked (its name is resolved once for both job names)
+        verify(nonBlockingMatrixProject, times(1)).getFullName();
     }
 
     @Test
@@ -504,8 +522,8 @@ class BlockingJobsMonitorUnitTest {
 
         assertThat(monitor.checkAllNodesForRunningBuilds(), is(nullValue()));
 
-        //verify that the different project was actually checked (two job names are checked)
-        verify(nonBlockingProject, times(2)).getFullName();
+        //verify that the different project was actually checked (its name is resolved once for both job names)
+        verify(nonBlockingProject, times(1)).getFullName();
     }
 
     @Test
@@ -523,8 +541,8 @@ class BlockingJobsMonitorUnitTest {
 
         assertThat(monitor.checkAllNodesForRunningBuilds(), is(nullValue()));
 
-        //verify that the different project was actually checked (two job names are checked)
-        verify(nonBlockingProject, times(2)).getFullName();
+        //verify that the different project was actually checked (its name is resolved once for both job names)
+        verify(nonBlockingProject, times(1)).getFullName();
     }
 
     @Test
@@ -543,8 +561,8 @@ class BlockingJobsMonitorUnitTest {
 
         assertThat(monitor.checkAllNodesForRunningBuilds(), is(nullValue()));
 
-        //verify that the different project was actually checked (two job names are checked)
-        verify(nonBlockingMatrixProject, times(2)).getFullName();
+        //verify that the different project was actually checked (its name is resolved once for both job names)
+        verify(nonBlockingMatrixProject, times(1)).getFullName();
     }
 
     @Test
@@ -556,4 +574,58 @@ class BlockingJobsMonitorUnitTest {
         assertThat((MatrixProject) monitor.checkAllNodesForRunningBuilds(), is(equalTo(matrixProject)));
     }
 
+    @Test
+    void testCheckForQueueEntriesForCombinationReturnsMatrixProjectOnlyForSameCombination() throws Exception {
+        Queue.WaitingItem configurationItem = mock(Queue.WaitingItem.class);
+        Field task = Queue.Item.class.getField("task");
+        task.setAccessible(true);
+        task.set(configurationItem, configuration);
+        when(configuration.getCombination()).thenReturn(new Combination(singletonMap("jdk", "17")));
+        when(configuration.getParent()).thenReturn(matrixProject);
+        when(queue.getItems()).thenReturn(new Queue.Item[]{configurationItem});
+
+        assertThat((MatrixProject) monitor.forCombination("jdk=17").checkForQueueEntries(mock(BuildableItem.class)), is(equalTo(matrixProject)));
+        assertThat(monitor.forCombination("jdk=21").checkForQueueEntries(mock(BuildableItem.class)), is(nullValue()));
+    }
+
+    @Test
+    void testCheckAllNodesForRunningBuildsForCombinationIgnoresExecutorsOfMatrixProjects() {
+        when(computer.getExecutors()).thenReturn(singletonList(executor));
+        when(subTask.getOwnerTask()).thenReturn(configuration);
+
+        RunningBuildsIndex index = mock(RunningBuildsIndex.class);
+        try (MockedStatic<RunningBuildsIndex> mockedIndex = mockStatic(RunningBuildsIndex.class)) {
+            mockedIndex.when(RunningBuildsIndex::get).thenReturn(index);
+            BlockingJobsMonitor combinationMonitor = monitor.forCombination("jdk=17");
+
+            assertThat(combinationMonitor.checkAllNodesForRunningBuilds(), is(nullValue()));
+
+            verify(index).findRunningCombination(combinationMonitor, "jdk=17", null);
+            verifyNoInteractions(configuration);
+        }
+    }
+
+    @Test
+    void testWithinReturnsTheSameMonitorPerFolder() {
+        BlockingJobsMonitor shared = new BlockingJobsMonitor("deploy-.*");
+        BlockingJobsMonitor teamA = shared.within("teamA");
+        BlockingJobsMonitor teamB = shared.within("teamB");
+
+        // alternating folders keep their monitors, so the caches keyed by monitor keep working
+        assertThat(shared.within("teamA"), sameInstance(teamA));
+        assertThat(shared.within("teamB"), sameInstance(teamB));
+        assertThat(teamA.getCacheKey(), not(equalTo(teamB.getCacheKey())));
+        assertThat(shared.within(null), sameInstance(shared));
+    }
+
+    @Test
+    void testExclusionLinesExcludeJobsFromAllLines() {
+        BlockingJobsMonitor exclusionMonitor = new BlockingJobsMonitor("deploy-.*\n!deploy-docs\nrelease#Deploy.*\n!glob:release");
+        Job<?, ?> release = mock(Job.class);
+        when(release.getFullName()).thenReturn("release");
+
+        assertThat(exclusionMonitor.matchesJobName("deploy-api"), is(true));
+        assertThat(exclusionMonitor.matchesJobName("deploy-docs"), is(false));
+        assertThat(exclusionMonitor.matchesStage(release, "Deploy prod"), is(false));
+    }
 }
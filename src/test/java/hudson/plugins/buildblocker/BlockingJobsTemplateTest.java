@@ -0,0 +1,85 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BlockingJobsTemplateTest {
+
+    private Job job;
+
+    @BeforeEach
+    void setUp() {
+        job = mock(Job.class);
+        ItemGroup folder = mock(ItemGroup.class);
+        when(job.getFullName()).thenReturn("team-a/project/feature-1");
+        when(job.getName()).thenReturn("feature-1");
+        when(job.getParent()).thenReturn(folder);
+        when(folder.getFullName()).thenReturn("team-a/project");
+    }
+
+    @Test
+    void testConfigurationWithoutPlaceholdersIsReturnedAsIs() {
+        String blockingJobs = "foo-.*\nbar";
+
+        assertThat(BlockingJobsTemplate.isTemplate(blockingJobs), is(false));
+        assertThat(BlockingJobsTemplate.expand(blockingJobs, job, Collections.emptyMap()), is(sameInstance(blockingJobs)));
+    }
+
+    @Test
+    void testBranchAndFolderPlaceholdersAreExpanded() {
+        String expanded = BlockingJobsTemplate.expand(".*/${BRANCH_NAME}\n${FOLDER}/integration-.*", job, Collections.emptyMap());
+        String[] lines = expanded.split("\n");
+
+        assertThat(Pattern.matches(lines[0], "team-b/other/feature-1"), is(true));
+        assertThat(Pattern.matches(lines[0], "team-b/other/feature-2"), is(false));
+        assertThat(Pattern.matches(lines[1], "team-a/project/integration-tests"), is(true));
+        assertThat(Pattern.matches(lines[1], "team-b/project/integration-tests"), is(false));
+    }
+
+    @Test
+    void testParametersAreExpandedLiterally() {
+        String expanded = BlockingJobsTemplate.expand("deploy-${ENV}", job, Collections.singletonMap("ENV", "prod.eu"));
+
+        assertThat(Pattern.matches(expanded, "deploy-prod.eu"), is(true));
+        assertThat(Pattern.matches(expanded, "deploy-prodxeu"), is(false));
+    }
+
+    @Test
+    void testParametersAreQuotedForGlobLines() {
+        String expanded = BlockingJobsTemplate.expand(".*-${ENV}\nglob:deploy-${ENV}", job, Collections.singletonMap("ENV", "prod*"));
+        String[] lines = expanded.split("\n");
+
+        assertThat(Pattern.matches(lines[0], "deploy-prod*"), is(true));
+        assertThat(lines[1], is("glob:deploy-prod\\*"));
+        assertThat(GlobPattern.compile(lines[1].substring(GlobPattern.PREFIX.length())).matches("deploy-prod*"), is(true));
+        assertThat(GlobPattern.compile(lines[1].substring(GlobPattern.PREFIX.length())).matches("deploy-production"), is(false));
+    }
+
+    @Test
+    void testUnknownPlaceholdersAreLeftUntouched() {
+        assertThat(BlockingJobsTemplate.expand("${UNKNOWN}-.*", job, Collections.emptyMap()), is("${UNKNOWN}-.*"));
+    }
+
+    @Test
+    void testParametersCannotAddLinesOrStageRules() {
+        String expanded = BlockingJobsTemplate.expand("deploy-${ENV}\nbuild-.*", job, Collections.singletonMap("ENV", "prod\n.*"));
+        assertThat(expanded, is("build-.*"));
+
+        expanded = BlockingJobsTemplate.expand("deploy-${ENV}\nbuild-.*", job, Collections.singletonMap("ENV", "prod#Deploy"));
+        assertThat(expanded, is("build-.*"));
+
+        expanded = BlockingJobsTemplate.expand("deploy-.*#${STAGE}", job, Collections.singletonMap("STAGE", "Deploy #1"));
+        assertThat(expanded, is("deploy-.*#" + Pattern.quote("Deploy #1")));
+    }
+}
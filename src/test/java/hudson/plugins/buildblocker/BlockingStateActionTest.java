@@ -0,0 +1,99 @@
+package hudson.plugins.buildblocker;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.htmlunit.Page;
+import org.htmlunit.WebRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+
+@WithJenkins
+class BlockingStateActionTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        j = rule;
+    }
+
+    @Test
+    void testUnchangedStateIsNotModified() throws Exception {
+        BlockedTimeTracker tracker = BlockedTimeTracker.getIfAvailable();
+        tracker.update(1, "deploy", "build", "GLOBAL", 1_000);
+
+        try (JenkinsRule.WebClient wc = j.createWebClient()) {
+            wc.setThrowExceptionOnFailingStatusCode(false);
+            Page page = wc.goTo("build-blocker-state/", "application/json");
+            String etag = page.getWebResponse().getResponseHeaderValue("ETag");
+            assertThat(etag, notNullValue());
+            JSONObject json = JSONObject.fromObject(page.getWebResponse().getContentAsString());
+            assertThat(json.getJSONArray("items").size(), is(1));
+            assertThat(json.getJSONArray("items").getJSONObject(0).getString("blocker"), is("build"));
+
+            WebRequest request = new WebRequest(new URL(j.getURL(), "build-blocker-state/"));
+            request.setAdditionalHeader("If-None-Match", etag);
+            assertThat(wc.getPage(request).getWebResponse().getStatusCode(), is(304));
+
+            tracker.update(1, "deploy", null, null, 2_000);
+            assertThat(wc.getPage(request).getWebResponse().getStatusCode(), is(200));
+        }
+    }
+
+    @Test
+    void testOnlyVisibleItemsAreListed() {
+        JSONObject json = BlockingStateAction.toJSON(7, "7", Arrays.asList(
+                new BlockedTimeTracker.BlockedItem(1, "deploy", "build", "GLOBAL", 1_000),
+                new BlockedTimeTracker.BlockedItem(2, "secret", "build", null, 2_000)),
+                name -> !name.equals("secret"), name -> true);
+
+        assertThat(json.getLong("version"), is(7L));
+        JSONArray items = json.getJSONArray("items");
+        assertThat(items.size(), is(1));
+        assertThat(items.getJSONObject(0).getLong("queueId"), is(1L));
+        assertThat(items.getJSONObject(0).getString("job"), is("deploy"));
+        assertThat(items.getJSONObject(0).getString("blockLevel"), is("GLOBAL"));
+        assertThat(items.getJSONObject(0).getLong("blockedSince"), is(1_000L));
+    }
+
+    @Test
+    void testBlockersTheUserMayNotReadAreNotNamed() {
+        List<BlockedTimeTracker.BlockedItem> blocked = Arrays.asList(
+                new BlockedTimeTracker.BlockedItem(1, "deploy", "secret", "GLOBAL", 1_000),
+                new BlockedTimeTracker.BlockedItem(2, "release", "build", "GLOBAL", 2_000));
+
+        JSONObject json = BlockingStateAction.toJSON(7, "7", blocked, name -> true, name -> !name.equals("secret"));
+
+        JSONArray items = json.getJSONArray("items");
+        assertThat(items.getJSONObject(0).has("blocker"), is(false));
+        assertThat(items.getJSONObject(1).getString("blocker"), is("build"));
+    }
+
+    @Test
+    void testTagDependsOnTheUserUnlessAdministrator() {
+        Authentication alice = new UsernamePasswordAuthenticationToken("alice", "",
+                Arrays.asList(new SimpleGrantedAuthority("authenticated"), new SimpleGrantedAuthority("developers")));
+        Authentication bob = new UsernamePasswordAuthenticationToken("bob", "",
+                Collections.singletonList(new SimpleGrantedAuthority("authenticated")));
+
+        assertThat(BlockingStateAction.tagOf(7, null), is("7"));
+        assertThat(BlockingStateAction.tagOf(7, alice), is(BlockingStateAction.tagOf(7, alice)));
+        assertThat(BlockingStateAction.tagOf(7, alice), not(BlockingStateAction.tagOf(7, bob)));
+        assertThat(BlockingStateAction.tagOf(7, alice), not(BlockingStateAction.tagOf(8, alice)));
+    }
+}
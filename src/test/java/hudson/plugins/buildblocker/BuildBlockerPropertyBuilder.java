@@ -5,6 +5,9 @@ public class BuildBlockerPropertyBuilder {
     private String blockLevel = "";
     private String scanQueueFor = "";
     private String blockingJobs = "";
+    private boolean blockWhenAllNodesBlocked = false;
+    private String jobsToBlock;
+    private String blockerGroup;
 
     public BuildBlockerPropertyBuilder setUseBuildBlocker() {
         this.useBuildBlocker = true;
@@ -40,7 +43,26 @@ public class BuildBlockerPropertyBuilder {
         return this;
     }
 
+    public BuildBlockerPropertyBuilder setBlockWhenAllNodesBlocked() {
+        this.blockWhenAllNodesBlocked = true;
+        return this;
+    }
+
+    public BuildBlockerPropertyBuilder setJobsToBlock(String jobsToBlock) {
+        this.jobsToBlock = jobsToBlock;
+        return this;
+    }
+
+    public BuildBlockerPropertyBuilder setBlockerGroup(String blockerGroup) {
+        this.blockerGroup = blockerGroup;
+        return this;
+    }
+
     public BuildBlockerProperty createBuildBlockerProperty() {
-        return new BuildBlockerProperty(useBuildBlocker, blockLevel, scanQueueFor, blockingJobs);
+        BuildBlockerProperty property = new BuildBlockerProperty(useBuildBlocker, blockLevel, scanQueueFor, blockingJobs);
+        property.setBlockWhenAllNodesBlocked(blockWhenAllNodesBlocked);
+        property.setJobsToBlock(jobsToBlock);
+        property.setBlockerGroup(blockerGroup);
+        return property;
     }
 }
\ No newline at end of file
@@ -39,6 +39,9 @@ import hudson.slaves.SlaveComputer;
 import hudson.tasks.BatchFile;
 import hudson.tasks.CommandInterpreter;
 import hudson.tasks.Shell;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -52,6 +55,7 @@ import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -217,6 +221,144 @@ class BuildBlockerQueueTaskDispatcherTest {
         theJob1.delete();
     }
 
+    @Test
+    void testStageRulesBlockOnlyWhileMatchingStageIsRunning() throws Exception {
+        WorkflowJob pipeline = j.createProject(WorkflowJob.class, "pipeline");
+        pipeline.setDefinition(new CpsFlowDefinition("stage('Build') { echo 'build' }\nstage('Deploy') { sleep 10 }", true));
+        WorkflowRun run = pipeline.scheduleBuild2(0).waitForStart();
+
+        FreeStyleProject project = j.createFreeStyleProject();
+        Queue.BuildableItem item = new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), project, new ArrayList<>()));
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        project.addProperty(new BuildBlockerPropertyBuilder()
+                .setBlockingJobs("pipe.*#Build")
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .createBuildBlockerProperty());
+        j.waitForMessage("Sleeping for 10 sec", run);
+        assertNull(dispatcher.canRun(item));
+
+        project.removeProperty(BuildBlockerProperty.class);
+        project.addProperty(new BuildBlockerPropertyBuilder()
+                .setBlockingJobs("pipe.*#Dep.*")
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .createBuildBlockerProperty());
+        CauseOfBlockage causeOfBlockage = dispatcher.canRun(item);
+        assertNotNull(causeOfBlockage);
+        assertTrue(causeOfBlockage.getShortDescription().contains(" by pipeline."));
+
+        j.assertBuildStatusSuccess(j.waitForCompletion(run));
+        assertNull(dispatcher.canRun(item));
+    }
+
+    @Test
+    void testBlockWhenAllNodesBlockedBlocksInCanRunWhileEveryEligibleNodeIsBlocked() throws Exception {
+        LabelAtom agentLabel = new LabelAtom("agent");
+        DumbSlave agent = j.createOnlineSlave(agentLabel);
+
+        CommandInterpreter commandInterpreter = Functions.isWindows() ? new BatchFile("ping -n 10 127.0.0.1 >nul") : new Shell("sleep 10");
+        Future<FreeStyleBuild> future = createBlockingProject("blockingJob", commandInterpreter, agentLabel);
+
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.setAssignedLabel(agentLabel);
+        Queue.BuildableItem item = new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), project, new ArrayList<>()));
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        project.addProperty(new BuildBlockerPropertyBuilder()
+                .setBlockingJobs("blocking.*")
+                .setUseBuildBlocker()
+                .setBlockOnNodeLevel()
+                .createBuildBlockerProperty());
+        assertNull(dispatcher.canRun(item));
+        assertNotNull(dispatcher.canTake(agent, item));
+
+        project.removeProperty(BuildBlockerProperty.class);
+        project.addProperty(new BuildBlockerPropertyBuilder()
+                .setBlockingJobs("blocking.*")
+                .setUseBuildBlocker()
+                .setBlockOnNodeLevel()
+                .setBlockWhenAllNodesBlocked()
+                .createBuildBlockerProperty());
+        CauseOfBlockage causeOfBlockage = dispatcher.canRun(item);
+        assertNotNull(causeOfBlockage);
+        assertTrue(causeOfBlockage.getShortDescription().contains(" by blockingJob."));
+
+        // a second eligible node that is not blocked lets the build run
+        DumbSlave otherAgent = j.createOnlineSlave(agentLabel);
+        assertNull(dispatcher.canRun(item));
+        assertNull(dispatcher.canTake(otherAgent, item));
+
+        await().atMost(30, TimeUnit.SECONDS).until(future::isDone);
+        j.jenkins.removeNode(otherAgent);
+        assertNull(dispatcher.canRun(item));
+    }
+
+    @Test
+    void testQueuedBuildsBlockingEachOtherAreReleasedOneByOne() throws Exception {
+        FreeStyleProject theJob1 = j.createFreeStyleProject("Mutual_Job1");
+        theJob1.addProperty(new BuildBlockerPropertyBuilder()
+                .setBlockingJobs("Mutual_Job2")
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .setScanAllQueueItemStates()
+                .createBuildBlockerProperty());
+        FreeStyleProject theJob2 = j.createFreeStyleProject("Mutual_Job2");
+        theJob2.addProperty(new BuildBlockerPropertyBuilder()
+                .setBlockingJobs("Mutual_Job1")
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .setScanAllQueueItemStates()
+                .createBuildBlockerProperty());
+
+        // both builds are in the queue before either one is checked
+        Future<FreeStyleBuild> theFuture1 = theJob1.scheduleBuild2(2);
+        Future<FreeStyleBuild> theFuture2 = theJob2.scheduleBuild2(2);
+
+        await().atMost(60, TimeUnit.SECONDS).until(() -> theFuture1.isDone() && theFuture2.isDone());
+        j.assertBuildStatusSuccess(theFuture1);
+        j.assertBuildStatusSuccess(theFuture2);
+
+        DeadlockDetector detector = DeadlockDetector.getIfAvailable();
+        assertNotNull(detector);
+        assertThat(detector.getDetectedCycles(), is(1L));
+        assertThat(detector.getRecentCycles().get(0).getReleased(), is("Mutual_Job1"));
+        assertTrue(detector.getLongestWaits(10).isEmpty());
+    }
+
+    @Test
+    void testStarvingBuildIsStillBlockedByBuildsQueuedBeforeIt() throws Exception {
+        FreeStyleProject starving = j.createFreeStyleProject("Starving_Job");
+        starving.addProperty(new BuildBlockerPropertyBuilder()
+                .setBlockingJobs("Short_.*")
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .setScanAllQueueItemStates()
+                .createBuildBlockerProperty());
+        FreeStyleProject earlier = j.createFreeStyleProject("Short_Earlier");
+        FreeStyleProject later = j.createFreeStyleProject("Short_Later");
+
+        earlier.scheduleBuild2(1000);
+        Thread.sleep(10);
+        Queue.BuildableItem item = new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), starving, new ArrayList<>()));
+        Thread.sleep(10);
+        later.scheduleBuild2(1000);
+        StarvationGuard guard = StarvationGuard.getIfAvailable();
+        assertNotNull(guard);
+        guard.hold(item, new BlockingJobsMonitor("Short_.*"));
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        CauseOfBlockage cause = dispatcher.canRun(item);
+        assertNotNull(cause);
+        assertThat(cause.getShortDescription(), containsString("Short_Earlier"));
+
+        // the build held back for the starving build does not block it
+        j.jenkins.getQueue().cancel(earlier);
+        assertNull(dispatcher.canRun(item));
+        assertThat(guard.findHolding(j.jenkins.getQueue().getItem(later)), is("Starving_Job"));
+    }
+
     /**
      * Returns the future object for a newly created project.
      *
@@ -506,17 +506,29 @@ class BuildBlockerQueueTaskDispatcherUnitTest {
         verifyNoInteractions(monitor);
     }
 
-    private static class FieldReturningMonitorFactory implements MonitorFactory {
-
-        private final BlockingJobsMonitor monitor;
+    @Test
+    void testCanRunForSubTaskUsesPropertyOfOwningJobAndIgnoresOwningBuild() throws Exception {
+        Queue.Task subTask = mock(Queue.Task.class);
+        Queue.Executable owningBuild = mock(Queue.Executable.class);
+        when(subTask.getOwnerTask()).thenReturn(project);
+        when(subTask.getOwnerExecutable()).thenReturn(owningBuild);
+        Queue.BuildableItem subTaskItem = mock(Queue.BuildableItem.class);
+        Field task = Queue.Item.class.getField("task");
+        task.setAccessible(true);
+        task.set(subTaskItem, subTask);
+        when(project.getProperty(eq(BuildBlockerProperty.class)))
+                .thenReturn(
+                        new BuildBlockerPropertyBuilder()
+                                .setUseBuildBlocker()
+                                .setBlockOnGlobalLevel()
+                                .setBlockingJobs("someJob")
+                                .createBuildBlockerProperty());
+        when(monitor.excluding(eq(owningBuild))).thenReturn(monitor);
 
-        @Override
-        public BlockingJobsMonitor build(String blockingJobs) {
-            return monitor;
-        }
+        dispatcher.canRun(subTaskItem);
 
-        public FieldReturningMonitorFactory(BlockingJobsMonitor monitor) {
-            this.monitor = monitor;
-        }
+        verify(monitor, times(1)).excluding(eq(owningBuild));
+        verify(monitor, times(1)).checkAllNodesForRunningBuilds();
+        verifyNoMoreInteractions(monitor);
     }
 }
@@ -0,0 +1,67 @@
+package hudson.plugins.buildblocker;
+
+import hudson.plugins.buildblocker.CheckPlanner.Source;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class CheckPlannerTest {
+
+    private static void record(CheckPlanner.Plan plan, Source source, long nanos, boolean hit, int times) {
+        for (int i = 0; i < times; i++) {
+            plan.record(source, nanos, hit);
+        }
+    }
+
+    @Test
+    void testRunningBuildsAreCheckedFirstWithoutEnoughSamples() {
+        CheckPlanner.Plan plan = new CheckPlanner.Plan();
+        record(plan, Source.GLOBAL_RUNNING, 1000, false, CheckPlanner.MIN_SAMPLES);
+        record(plan, Source.FULL_QUEUE, 10, true, CheckPlanner.MIN_SAMPLES - 1);
+
+        assertThat(plan.isQueueFirst(Source.GLOBAL_RUNNING, Source.FULL_QUEUE), is(false));
+    }
+
+    @Test
+    void testCheaperAndMoreLikelySourceIsCheckedFirst() {
+        CheckPlanner.Plan plan = new CheckPlanner.Plan();
+        record(plan, Source.NODE_RUNNING, 1000, false, CheckPlanner.MIN_SAMPLES);
+        record(plan, Source.BUILDABLE_QUEUE, 100, true, CheckPlanner.MIN_SAMPLES);
+
+        assertThat(plan.isQueueFirst(Source.NODE_RUNNING, Source.BUILDABLE_QUEUE), is(true));
+        assertThat(plan.getHitRate(Source.BUILDABLE_QUEUE), is(1.0));
+    }
+
+    @Test
+    void testExpensiveSourceIsCheckedLastDespiteHits() {
+        CheckPlanner.Plan plan = new CheckPlanner.Plan();
+        record(plan, Source.GLOBAL_RUNNING, 100, true, CheckPlanner.MIN_SAMPLES);
+        record(plan, Source.GLOBAL_RUNNING, 100, false, CheckPlanner.MIN_SAMPLES);
+        record(plan, Source.FULL_QUEUE, 100_000, true, CheckPlanner.MIN_SAMPLES);
+
+        assertThat(plan.isQueueFirst(Source.GLOBAL_RUNNING, Source.FULL_QUEUE), is(false));
+    }
+
+    @Test
+    void testOtherOrderIsExploredPeriodically() {
+        CheckPlanner.Plan plan = new CheckPlanner.Plan();
+        record(plan, Source.NODE_RUNNING, 1000, false, CheckPlanner.MIN_SAMPLES);
+        record(plan, Source.BUILDABLE_QUEUE, 100, true, CheckPlanner.MIN_SAMPLES);
+
+        int runningFirst = 0;
+        for (int i = 0; i < CheckPlanner.EXPLORE_INTERVAL; i++) {
+            if (!plan.isQueueFirst(Source.NODE_RUNNING, Source.BUILDABLE_QUEUE)) {
+                runningFirst++;
+            }
+        }
+
+        assertThat(runningFirst, is(1));
+    }
+
+    @Test
+    void testDefaultOrderWithoutJenkins() {
+        assertThat(new CheckPlanner().planFor("GLOBAL:foo"), is(nullValue()));
+    }
+}
@@ -0,0 +1,116 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.tasks.BuildTrigger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@WithJenkins
+class DependencyClosureTest {
+
+    private JenkinsRule j;
+    private FreeStyleProject a;
+    private FreeStyleProject b;
+    private FreeStyleProject c;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) throws Exception {
+        j = rule;
+        a = j.createFreeStyleProject("a");
+        b = j.createFreeStyleProject("b");
+        c = j.createFreeStyleProject("c");
+        a.getPublishersList().add(new BuildTrigger("b", Result.SUCCESS));
+        b.getPublishersList().add(new BuildTrigger("c", Result.SUCCESS));
+        j.jenkins.rebuildDependencyGraph();
+    }
+
+    @Test
+    void testRelatedJobsAreLimitedByDepth() {
+        assertThat(DependencyClosure.related(j.jenkins.getDependencyGraph(), c, BuildBlockerProperty.DependencyScope.UPSTREAM, 1),
+                containsInAnyOrder("b"));
+        assertThat(DependencyClosure.related(j.jenkins.getDependencyGraph(), c, BuildBlockerProperty.DependencyScope.UPSTREAM, 0),
+                containsInAnyOrder("a", "b"));
+        assertThat(DependencyClosure.related(j.jenkins.getDependencyGraph(), b, BuildBlockerProperty.DependencyScope.BOTH, 1),
+                containsInAnyOrder("a", "c"));
+        assertThat(DependencyClosure.related(j.jenkins.getDependencyGraph(), a, BuildBlockerProperty.DependencyScope.UPSTREAM, 0),
+                is(empty()));
+    }
+
+    @Test
+    void testClosureIsKeptUntilTheGraphIsRebuilt() throws Exception {
+        DependencyClosure closure = new DependencyClosure();
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor(null);
+        BuildBlockerProperty property = new BuildBlockerPropertyBuilder().setUseBuildBlocker().createBuildBlockerProperty();
+        property.setBlockOnDependencies("UPSTREAM");
+        property.setDependencyDepth(1);
+
+        BlockingJobsMonitor including = closure.apply(monitor, c, property);
+        assertThat(including, sameInstance(closure.apply(monitor, c, property)));
+        assertThat(including.match(b), is((Job) b));
+        assertThat(including.match(a), nullValue());
+
+        a.getPublishersList().replace(new BuildTrigger("b, c", Result.SUCCESS));
+        j.jenkins.rebuildDependencyGraph();
+
+        BlockingJobsMonitor rebuilt = closure.apply(monitor, c, property);
+        assertThat(rebuilt, not(sameInstance(including)));
+        assertThat(rebuilt.match(a), is((Job) a));
+    }
+
+    @Test
+    void testExclusionLinesExcludeRelatedJobs() {
+        DependencyClosure closure = new DependencyClosure();
+        BuildBlockerProperty property = new BuildBlockerPropertyBuilder().setUseBuildBlocker().createBuildBlockerProperty();
+        property.setBlockOnDependencies("UPSTREAM");
+
+        BlockingJobsMonitor including = closure.apply(new BlockingJobsMonitor("!a"), c, property);
+
+        assertThat(including.match(b), is((Job) b));
+        assertThat(including.match(a), nullValue());
+    }
+
+    @Test
+    void testRunningUpstreamBlocks() throws Exception {
+        a.getBuildersList().add(new SleepBuilder(10_000));
+        BuildBlockerProperty property = new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .createBuildBlockerProperty();
+        property.setBlockOnDependencies("UPSTREAM");
+        property.setDependencyDepth(0);
+        c.addProperty(property);
+        j.jenkins.rebuildDependencyGraph();
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        assertThat(dispatcher.canRun(itemOf(c)), nullValue());
+
+        FreeStyleBuild build = a.scheduleBuild2(0).waitForStart();
+        assertThat(dispatcher.canRun(itemOf(c)), instanceOf(BlockedByBuildCause.class));
+
+        build.getExecutor().interrupt();
+        j.waitForCompletion(build);
+    }
+
+    private static Queue.BuildableItem itemOf(FreeStyleProject project) {
+        return new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), project, new ArrayList<>()));
+    }
+}
@@ -0,0 +1,55 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.Job;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EvaluationBudgetTest {
+
+    private static final String BACKTRACKING_NAME = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+
+    @AfterEach
+    void tearDown() {
+        EvaluationBudget.end();
+    }
+
+    @Test
+    void testNamesAreNotWrappedWithoutBudget() {
+        assertThat(EvaluationBudget.guard("name"), is(sameInstance("name")));
+        EvaluationBudget.check();
+    }
+
+    @Test
+    void testCatastrophicBacktrackingIsAbortedWhenBudgetIsExceeded() {
+        Job job = mock(Job.class);
+        when(job.getFullName()).thenReturn(BACKTRACKING_NAME);
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor("(a+)+b");
+
+        EvaluationBudget.start(50);
+        long start = System.currentTimeMillis();
+
+        assertThrows(EvaluationBudget.ExceededException.class, () -> monitor.match(job));
+        assertThat(System.currentTimeMillis() - start < 5000, is(true));
+    }
+
+    @Test
+    void testMatchingWithinBudget() {
+        Job job = mock(Job.class);
+        when(job.getFullName()).thenReturn("foo");
+
+        EvaluationBudget.start(10_000);
+
+        assertThat(EvaluationBudget.guard("foo"), is(instanceOf(CharSequence.class)));
+        assertThat(new BlockingJobsMonitor("foo").match(job), is(sameInstance(job)));
+        assertThat(new BlockingJobsMonitor("bar").match(job), is(nullValue()));
+    }
+}
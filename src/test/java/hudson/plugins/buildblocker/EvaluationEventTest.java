@@ -0,0 +1,125 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.AbstractProject;
+import hudson.model.Queue;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EvaluationEventTest {
+
+    @TempDir
+    private Path tempDir;
+
+    private BlockingJobsMonitor monitor;
+    private AbstractProject project;
+    private Queue.BuildableItem item;
+
+    private BuildBlockerQueueTaskDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        monitor = mock(BlockingJobsMonitor.class);
+        dispatcher = new BuildBlockerQueueTaskDispatcher(new FieldReturningMonitorFactory(monitor));
+
+        project = mock(AbstractProject.class);
+        when(project.getFullDisplayName()).thenReturn("queued");
+        item = mock(Queue.BuildableItem.class);
+        when(item.getId()).thenReturn(42L);
+
+        Field task = Queue.Item.class.getField("task");
+        task.setAccessible(true);
+        task.set(item, project);
+    }
+
+    @Test
+    void testBlockedEvaluationIsRecorded() throws Exception {
+        AbstractProject blocker = mock(AbstractProject.class);
+        when(blocker.getDisplayName()).thenReturn("blocker");
+        when(monitor.checkAllNodesForRunningBuilds()).thenReturn(blocker);
+        when(project.getProperty(eq(BuildBlockerProperty.class)))
+                .thenReturn(
+                        new BuildBlockerPropertyBuilder()
+                                .setUseBuildBlocker()
+                                .setBlockOnGlobalLevel()
+                                .setScanAllQueueItemStates()
+                                .setBlockingJobs("blocker")
+                                .createBuildBlockerProperty());
+
+        List<RecordedEvent> events = record(() -> dispatcher.canRun(item));
+
+        assertThat(events, hasSize(1));
+        RecordedEvent event = events.get(0);
+        assertThat(event.getString("source"), is("PROPERTY"));
+        assertThat(event.getString("item"), is("queued"));
+        assertThat(event.getLong("queueId"), is(42L));
+        assertThat(event.getString("node"), is(""));
+        assertThat(event.getString("propertySource"), is("job"));
+        assertThat(event.getString("blockLevel"), is("GLOBAL"));
+        assertThat(event.getString("scanQueueFor"), is("ALL"));
+        assertThat(event.getString("checks"), is("GLOBAL_RUNNING"));
+        assertThat(event.getBoolean("blocked"), is(true));
+        assertThat(event.getString("decision"), containsString("blocker"));
+    }
+
+    @Test
+    void testAllowedEvaluationListsAllChecks() throws Exception {
+        when(project.getProperty(eq(BuildBlockerProperty.class)))
+                .thenReturn(
+                        new BuildBlockerPropertyBuilder()
+                                .setUseBuildBlocker()
+                                .setBlockOnGlobalLevel()
+                                .setScanBuildableQueueItemStates()
+                                .setBlockingJobs("blocker")
+                                .createBuildBlockerProperty());
+
+        List<RecordedEvent> events = record(() -> dispatcher.canRun(item));
+
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getString("checks"), is("GLOBAL_RUNNING,BUILDABLE_QUEUE"));
+        assertThat(events.get(0).getBoolean("blocked"), is(false));
+        assertThat(events.get(0).getString("decision"), is(""));
+    }
+
+    @Test
+    void testNothingIsRecordedWithoutBuildBlocker() throws Exception {
+        when(project.getProperty(eq(BuildBlockerProperty.class)))
+                .thenReturn(
+                        new BuildBlockerPropertyBuilder()
+                                .setBlockingJobs("blocker")
+                                .createBuildBlockerProperty());
+
+        assertThat(record(() -> dispatcher.canRun(item)), empty());
+    }
+
+    private List<RecordedEvent> record(Runnable evaluation) throws Exception {
+        Path file = tempDir.resolve("evaluation.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(EvaluationEvent.NAME);
+            recording.start();
+            evaluation.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(EvaluationEvent.NAME))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package hudson.plugins.buildblocker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+class EvaluationStatisticsTest {
+
+    private final EvaluationStatistics statistics = new EvaluationStatistics();
+
+    @Test
+    void testPercentilesAreUpperBoundsOfTheBuckets() {
+        for (int i = 0; i < 90; i++) {
+            statistics.record("fast", 1_000);
+        }
+        for (int i = 0; i < 9; i++) {
+            statistics.record("slow", 100_000);
+        }
+        statistics.record("slow", 10_000_000);
+
+        assertThat(statistics.getEvaluations(), is(100L));
+        assertThat(statistics.getP50(), is(1_024L));
+        assertThat(statistics.getP90(), is(1_024L));
+        assertThat(statistics.getP99(), is(131_072L));
+        assertThat(statistics.getPercentile(100), is(16_777_216L));
+    }
+
+    @Test
+    void testPercentilesWithoutEvaluations() {
+        assertThat(statistics.getEvaluations(), is(0L));
+        assertThat(statistics.getP99(), is(0L));
+    }
+
+    @Test
+    void testMostExpensiveConfigurationsFirst() {
+        statistics.record("cheap", 10);
+        statistics.record("cheap", 30);
+        statistics.record("expensive", 1_000);
+
+        List<EvaluationStatistics.Cost> costs = statistics.getMostExpensive(1);
+
+        assertThat(costs, hasSize(1));
+        assertThat(costs.get(0).getBlockingJobs(), is("expensive"));
+        assertThat(statistics.getMostExpensive(10).get(1).getAverageNanos(), is(20L));
+        assertThat(statistics.getMostExpensive(10).get(1).getMaxNanos(), is(30L));
+    }
+
+    @Test
+    void testCacheHitRates() {
+        statistics.hit(EvaluationStatistics.Cache.BACKOFFS);
+        statistics.hit(EvaluationStatistics.Cache.BACKOFFS);
+        statistics.hit(EvaluationStatistics.Cache.BACKOFFS);
+        statistics.miss(EvaluationStatistics.Cache.BACKOFFS);
+
+        List<EvaluationStatistics.CacheRate> caches = statistics.getCaches();
+
+        assertThat(caches.get(EvaluationStatistics.Cache.BACKOFFS.ordinal()).getHitRate(), is(75));
+        assertThat(caches.get(EvaluationStatistics.Cache.MONITORS.ordinal()).getHitRate(), is(-1));
+    }
+
+    @Test
+    void testBuckets() {
+        assertThat(EvaluationStatistics.bucketOf(0), is(0));
+        assertThat(EvaluationStatistics.bucketOf(1), is(0));
+        assertThat(EvaluationStatistics.bucketOf(1_023), is(9));
+        assertThat(EvaluationStatistics.bucketOf(1_024), is(10));
+    }
+}
@@ -0,0 +1,18 @@
+package hudson.plugins.buildblocker;
+
+/**
+ * Returns the same, usually mocked, monitor for all blocking jobs.
+ */
+class FieldReturningMonitorFactory implements MonitorFactory {
+
+    private final BlockingJobsMonitor monitor;
+
+    FieldReturningMonitorFactory(BlockingJobsMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public BlockingJobsMonitor build(String blockingJobs) {
+        return monitor;
+    }
+}
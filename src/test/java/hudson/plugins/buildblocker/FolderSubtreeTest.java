@@ -0,0 +1,109 @@
+package hudson.plugins.buildblocker;
+
+import com.cloudbees.hudson.plugins.folder.Folder;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+@WithJenkins
+class FolderSubtreeTest {
+
+    private JenkinsRule j;
+
+    private Folder apps;
+    private FreeStyleProject build;
+    private FreeStyleProject appsDeploy;
+    private FreeStyleProject teamDeploy;
+    private FreeStyleProject otherDeploy;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) throws Exception {
+        j = rule;
+        Folder teamA = j.jenkins.createProject(Folder.class, "teamA");
+        apps = teamA.createProject(Folder.class, "apps");
+        build = apps.createProject(FreeStyleProject.class, "build");
+        appsDeploy = apps.createProject(FreeStyleProject.class, "deploy");
+        teamDeploy = teamA.createProject(FreeStyleProject.class, "deploy");
+        otherDeploy = j.jenkins.createProject(Folder.class, "teamB").createProject(FreeStyleProject.class, "deploy");
+        for (FreeStyleProject project : new FreeStyleProject[]{appsDeploy, teamDeploy, otherDeploy}) {
+            project.getBuildersList().add(new SleepBuilder(10_000));
+        }
+    }
+
+    @Test
+    void testOnlyRunningBuildsInTheSubtreeBlock() throws Exception {
+        apps.addProperty(folderProperty(BuildBlockerProperty.QueueScanScope.DISABLED));
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        FreeStyleBuild other = otherDeploy.scheduleBuild2(0).waitForStart();
+        FreeStyleBuild team = teamDeploy.scheduleBuild2(0).waitForStart();
+        assertThat(dispatcher.canRun(itemOf(build)), nullValue());
+
+        FreeStyleBuild deploy = appsDeploy.scheduleBuild2(0).waitForStart();
+        CauseOfBlockage cause = dispatcher.canRun(itemOf(build));
+        assertThat(cause, instanceOf(BlockedByBuildCause.class));
+        assertThat(cause.getShortDescription(), containsString("deploy"));
+
+        for (FreeStyleBuild run : new FreeStyleBuild[]{other, team, deploy}) {
+            run.getExecutor().interrupt();
+            j.waitForCompletion(run);
+        }
+        assertThat(dispatcher.canRun(itemOf(build)), nullValue());
+    }
+
+    @Test
+    void testOnlyQueuedBuildsInTheSubtreeBlock() throws Exception {
+        apps.addProperty(folderProperty(BuildBlockerProperty.QueueScanScope.ALL));
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        otherDeploy.scheduleBuild2(1000);
+        teamDeploy.scheduleBuild2(1000);
+        assertThat(QueuedItemsIndex.get().findWithin("teamA", -1, false), hasSize(1));
+        assertThat(dispatcher.canRun(itemOf(build)), nullValue());
+
+        appsDeploy.scheduleBuild2(1000);
+        assertThat(QueuedItemsIndex.get().findWithin("teamA/apps", -1, false), hasSize(1));
+        assertThat(QueuedItemsIndex.get().findWithin("teamA/apps", -1, true), hasSize(0));
+        assertThat(dispatcher.canRun(itemOf(build)), instanceOf(BlockedByBuildCause.class));
+
+        j.jenkins.getQueue().clear();
+        assertThat(QueuedItemsIndex.get().findWithin("teamA", -1, false), hasSize(0));
+        assertThat(dispatcher.canRun(itemOf(build)), nullValue());
+    }
+
+    @Test
+    void testPartitionIsTheTopLevelFolder() {
+        assertThat(RunningBuildsIndex.partitionOf("teamA/apps/build"), is("teamA"));
+        assertThat(RunningBuildsIndex.partitionOf("build"), is("build"));
+    }
+
+    private static BuildBlockerFolderProperty folderProperty(BuildBlockerProperty.QueueScanScope scanQueueFor) {
+        BuildBlockerFolderProperty property = new BuildBlockerFolderProperty();
+        property.setUseBuildBlocker(true);
+        property.setBlockLevel(BuildBlockerProperty.BlockLevel.GLOBAL.name());
+        property.setScanQueueFor(scanQueueFor.name());
+        property.setBlockingJobs("glob:**/deploy");
+        property.setSubtreeOnly(true);
+        return property;
+    }
+
+    private static Queue.BuildableItem itemOf(FreeStyleProject project) {
+        return new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), project, new ArrayList<>()));
+    }
+}
@@ -0,0 +1,70 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.Job;
+import hudson.util.FormValidation;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.PatternSyntaxException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GlobPatternTest {
+
+    @Test
+    void testWildcardsMatchWithinSegments() {
+        GlobPattern glob = GlobPattern.compile("team-a/deploy-*");
+
+        assertThat(glob.matches("team-a/deploy-prod"), is(true));
+        assertThat(glob.matches("team-a/deploy-"), is(true));
+        assertThat(glob.matches("team-a/deploy-prod/main"), is(false));
+        assertThat(glob.matches("team-b/deploy-prod"), is(false));
+        assertThat(GlobPattern.compile("a*b*c").matches("aXbYbc"), is(true));
+        assertThat(GlobPattern.compile("a*b*c").matches("aXbYb"), is(false));
+        assertThat(GlobPattern.compile("job-?").matches("job-1"), is(true));
+        assertThat(GlobPattern.compile("job-?").matches("job-12"), is(false));
+    }
+
+    @Test
+    void testDoubleStarMatchesAnyNumberOfSegments() {
+        assertThat(GlobPattern.compile("**/deploy").matches("deploy"), is(true));
+        assertThat(GlobPattern.compile("**/deploy").matches("a/b/deploy"), is(true));
+        assertThat(GlobPattern.compile("**/deploy").matches("a/deploy/main"), is(false));
+        assertThat(GlobPattern.compile("team-a/**").matches("team-a/project/main"), is(true));
+        assertThat(GlobPattern.compile("a/**/b/**/c").matches("a/x/b/y/b/c"), is(true));
+        assertThat(GlobPattern.compile("a/**/b/**/c").matches("a/x/c"), is(false));
+    }
+
+    @Test
+    void testEscapedWildcardsMatchLiterally() {
+        assertThat(GlobPattern.compile("deploy-\\*").matches("deploy-*"), is(true));
+        assertThat(GlobPattern.compile("deploy-\\*").matches("deploy-prod"), is(false));
+        assertThat(GlobPattern.compile(GlobPattern.quote("a?b")).matches("a?b"), is(true));
+        assertThat(GlobPattern.compile(GlobPattern.quote("a?b")).matches("axb"), is(false));
+        assertThrows(PatternSyntaxException.class, () -> GlobPattern.compile("deploy\\"));
+    }
+
+    @Test
+    void testGlobLinesAreMatchedByTheMonitor() {
+        Job deploy = mock(Job.class);
+        when(deploy.getFullName()).thenReturn("team-a/deploy-prod");
+        Job build = mock(Job.class);
+        when(build.getFullName()).thenReturn("team-a/build");
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor("glob:team-a/deploy-*\nfoo");
+
+        assertThat(monitor.match(deploy), is(sameInstance(deploy)));
+        assertThat(monitor.match(build), is(nullValue()));
+    }
+
+    @Test
+    void testBothSyntaxesAreValidated() {
+        assertThat(BuildBlockerUtils.doCheckRegex("glob:team-a/*[\nfoo.*").kind, is(FormValidation.Kind.OK));
+        assertThat(BuildBlockerUtils.doCheckRegex("glob:team-a/deploy\\").kind, is(FormValidation.Kind.ERROR));
+        assertThat(BuildBlockerUtils.doCheckRegex("team-a/*[").kind, is(FormValidation.Kind.ERROR));
+    }
+}
@@ -0,0 +1,44 @@
+package hudson.plugins.buildblocker;
+
+import com.cloudbees.hudson.plugins.folder.Folder;
+import hudson.model.FreeStyleProject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.emptyArray;
+
+@WithJenkins
+class JobNameIndexTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        j = rule;
+    }
+
+    @Test
+    void testIndexFollowsCreationRenamingAndDeletion() throws Exception {
+        Folder folder = j.jenkins.createProject(Folder.class, "team-a");
+        FreeStyleProject deploy = folder.createProject(FreeStyleProject.class, "deploy");
+        j.createFreeStyleProject("build");
+
+        assertThat(JobNameIndex.get().getNames(), arrayContaining("build", "team-a/deploy"));
+
+        deploy.renameTo("deploy-prod");
+        folder.renameTo("team-b");
+        assertThat(JobNameIndex.get().getNames(), arrayContaining("build", "team-b/deploy-prod"));
+
+        folder.delete();
+        assertThat(JobNameIndex.get().getNames(), arrayContaining("build"));
+    }
+
+    @Test
+    void testEmptyIndex() {
+        assertThat(JobNameIndex.get().getNames(), emptyArray());
+    }
+}
@@ -0,0 +1,69 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.Job;
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LinearPatternTest {
+
+    private static final String[] PATTERNS = {
+            "foo", "foo.*", "(foo|bar)-\\d+", "a*b", "(a+)+b", "[a-z]+/[^/]*", "x?y{2,3}z", "^abc$",
+            "\\Qa.b\\E", "(?:ab)*c", "a.*?b", "[\\w-]+", "\\s*x", "(?<n>a)b", "a{3}", "a{2,}", "\\x41\\u0042",
+            "[^abc]", "\\Aabc\\z", "abc\\Z", "a|", "", "(|a)b", "x.y"
+    };
+
+    private static final String[] NAMES = {
+            "", "foo", "foobar", "bar-12", "foo-", "aaab", "aaaa", "b", "abc", "abc\n", "a.b", "axb", "ababc",
+            "c", "folder/job", "folder/", "xyyz", "xyyyyz", "yy", "ab", "aaa", "AB", "d", "x\ny", "x\ry", "x y", "-_a"
+    };
+
+    @Test
+    void testMatchesLikeJavaRegex() {
+        for (String regex : PATTERNS) {
+            LinearPattern linear = LinearPattern.compile(regex);
+            Pattern pattern = Pattern.compile(regex);
+            for (String name : NAMES) {
+                assertThat(regex + " on " + name, linear.matches(name), is(pattern.matcher(name).matches()));
+            }
+        }
+    }
+
+    @Test
+    void testCatastrophicBacktrackingIsLinear() {
+        LinearPattern linear = LinearPattern.compile("(a+)+b");
+        long start = System.currentTimeMillis();
+
+        assertThat(linear.matches("a".repeat(100_000)), is(false));
+        assertThat(System.currentTimeMillis() - start < 5000, is(true));
+    }
+
+    @Test
+    void testConstructsNeedingBacktrackingAreRejected() {
+        String[] unsupported = {"[a-c&&b]", "(?i)abc", "\\bfoo", "(a)\\1", "a++", "(?=a)a", "(?<!a)b", "(?>a)", "\\p{L}"};
+        for (String regex : unsupported) {
+            assertThrows(LinearPattern.UnsupportedPatternException.class, () -> LinearPattern.compile(regex), regex);
+        }
+    }
+
+    @Test
+    void testUnsupportedLinesAreIgnoredByTheMonitor() {
+        Job foo = mock(Job.class);
+        when(foo.getFullName()).thenReturn("foobar");
+        Job aa = mock(Job.class);
+        when(aa.getFullName()).thenReturn("aa");
+        BlockingJobsMonitor monitor = new BlockingJobsMonitor("(a)\\1\nfoo.*", BuildBlockerConfiguration.MatchingEngine.LINEAR);
+
+        assertThat(monitor.getEngine(), is(BuildBlockerConfiguration.MatchingEngine.LINEAR));
+        assertThat(monitor.match(foo), is(sameInstance(foo)));
+        assertThat(monitor.match(aa), is(nullValue()));
+    }
+}
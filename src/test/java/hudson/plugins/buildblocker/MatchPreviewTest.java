@@ -0,0 +1,79 @@
+package hudson.plugins.buildblocker;
+
+import hudson.util.FormValidation;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+class MatchPreviewTest {
+
+    private static final String[] NAMES = {"team-a/build", "team-a/deploy-dev", "team-a/deploy-prod", "team-b/deploy-prod", "tools"};
+
+    @Test
+    void testLiteralPrefix() {
+        assertThat(MatchPreview.literalPrefix("team-a/deploy-.*"), is("team-a/deploy-"));
+        assertThat(MatchPreview.literalPrefix("^team-a/.*"), is("team-a/"));
+        assertThat(MatchPreview.literalPrefix("team-ab?"), is("team-a"));
+        assertThat(MatchPreview.literalPrefix("tools"), is("tools"));
+        assertThat(MatchPreview.literalPrefix("team-a|tools"), is(""));
+        assertThat(MatchPreview.literalPrefix("glob:team-a/deploy-*"), is("team-a/deploy-"));
+        assertThat(MatchPreview.literalPrefix("glob:**/deploy-prod"), is(""));
+    }
+
+    @Test
+    void testMatchesAreCountedPerLineAndMergedInOrder() {
+        MatchPreview preview = MatchPreview.of("team-a/deploy-.*\nglob:**/deploy-prod\nmissing", NAMES, name -> true);
+
+        assertThat(preview.getMatches(), contains("team-a/deploy-dev", "team-a/deploy-prod", "team-b/deploy-prod"));
+        assertThat(preview.getLines().get(0).count, is(2));
+        assertThat(preview.getLines().get(1).count, is(2));
+        assertThat(preview.getLines().get(2).count, is(0));
+    }
+
+    @Test
+    void testInvisibleJobsAreNeitherListedNorCounted() {
+        MatchPreview preview = MatchPreview.of("team-.*", NAMES, name -> name.startsWith("team-a/"));
+
+        assertThat(preview.getMatches(), contains("team-a/build", "team-a/deploy-dev", "team-a/deploy-prod"));
+        assertThat(preview.getLines().get(0).count, is(3));
+    }
+
+    @Test
+    void testInvalidLinesAreReportedOneByOne() {
+        MatchPreview preview = MatchPreview.of("tools\nteam-[\n.*/${BRANCH_NAME}", NAMES, name -> true);
+
+        assertThat(preview.getLines().get(0).count, is(1));
+        assertThat(preview.getLines().get(1).problem.kind, is(FormValidation.Kind.ERROR));
+        assertThat(preview.getLines().get(2).count, is(-1));
+        assertThat(preview.toFormValidation().kind, is(FormValidation.Kind.ERROR));
+    }
+
+    @Test
+    void testJsonIsPaged() {
+        MatchPreview preview = MatchPreview.of(".*", NAMES, name -> true);
+
+        assertThat(preview.toJSON(1, 2).getInt("count"), is(5));
+        assertThat(preview.toJSON(1, 2).getJSONArray("jobs").size(), is(2));
+        assertThat(preview.toJSON(1, 2).getJSONArray("jobs").getString(0), is("team-a/deploy-dev"));
+        assertThat(preview.toJSON(4, 2).getJSONArray("jobs").size(), is(1));
+        assertThat(preview.toJSON(10, 2).getJSONArray("jobs").size(), is(0));
+    }
+
+    @Test
+    void testExcludedJobsAreNeitherListedNorCounted() {
+        MatchPreview preview = MatchPreview.of("team-.*/deploy-.*\n!glob:*/deploy-prod", NAMES, name -> true);
+
+        assertThat(preview.getMatches(), contains("team-a/deploy-dev"));
+        assertThat(preview.getLines().get(0).count, is(1));
+        assertThat(preview.getLines().get(1).count, is(2));
+    }
+
+    @Test
+    void testExclusionWithStageIsInvalid() {
+        MatchPreview preview = MatchPreview.of("team-.*\n!tools#Deploy", NAMES, name -> true);
+
+        assertThat(preview.getLines().get(1).problem.kind, is(FormValidation.Kind.ERROR));
+    }
+}
@@ -0,0 +1,140 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import net.sf.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@WithJenkins
+class PatternReportTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        j = rule;
+    }
+
+    @Test
+    void testLinesMatchingNoCurrentJobAreDead() throws Exception {
+        j.createFreeStyleProject("deploy-1");
+        FreeStyleProject blocked = j.createFreeStyleProject("blocked");
+        blocked.addProperty(new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .setBlockingJobs("deploy-.*\ndeleted-job\n.*/${BRANCH_NAME}")
+                .createBuildBlockerProperty());
+
+        PatternReport report = PatternReport.create(null);
+        Map<String, PatternReport.Line> lines = new HashMap<>();
+        for (PatternReport.Line line : report.getLines()) {
+            lines.put(line.getLine(), line);
+        }
+
+        assertThat(report.getDeadLines(), is(1));
+        assertThat(report.getLines().get(0).getLine(), is("deleted-job"));
+        assertThat(lines.get("deploy-.*").getMatchingJobs(), is(1));
+        assertThat(lines.get("deploy-.*").isDead(), is(false));
+        assertThat(lines.get("deploy-.*").getOwners(), contains("blocked"));
+        assertThat(lines.get(".*/${BRANCH_NAME}").isTemplate(), is(true));
+        assertThat(lines.get(".*/${BRANCH_NAME}").isDead(), is(false));
+    }
+
+    @Test
+    void testMatchesOfCachedMonitorsAreReported() throws Exception {
+        FreeStyleProject blocked = j.createFreeStyleProject("blocked");
+        blocked.addProperty(new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .setBlockingJobs("deploy-.*\nblocked")
+                .createBuildBlockerProperty());
+        DefaultMonitorFactory monitorFactory = new DefaultMonitorFactory();
+        Job deploy = mock(Job.class);
+        when(deploy.getFullName()).thenReturn("deploy-1");
+        monitorFactory.build("deploy-.*\nblocked").match(deploy);
+
+        PatternReport.Line line = PatternReport.create(monitorFactory).getLines().stream()
+                .filter(l -> l.getLine().equals("deploy-.*")).findFirst().orElseThrow();
+
+        assertThat(line.getMatches(), is(1L));
+        assertThat(line.getLastMatch() > 0, is(true));
+        assertThat(line.isDead(), is(true));
+    }
+
+    @Test
+    void testExpansionsAreReportedForTheirTemplateLine() throws Exception {
+        FreeStyleProject blocked = j.createFreeStyleProject("blocked");
+        blocked.addProperty(new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .setBlockingJobs("deploy-${BRANCH_NAME}\nrelease#Deploy")
+                .createBuildBlockerProperty());
+        DefaultMonitorFactory monitorFactory = new DefaultMonitorFactory();
+        Job deploy = mock(Job.class);
+        when(deploy.getFullName()).thenReturn("deploy-main");
+        when(deploy.getName()).thenReturn("main");
+        monitorFactory.build(BlockingJobsTemplate.expand("deploy-${BRANCH_NAME}", deploy, new HashMap<>())).match(deploy);
+
+        Map<String, PatternReport.Line> lines = new HashMap<>();
+        for (PatternReport.Line line : PatternReport.create(monitorFactory).getLines()) {
+            lines.put(line.getLine(), line);
+        }
+
+        assertThat(lines.get("deploy-${BRANCH_NAME}").getMatches(), is(1L));
+        assertThat(lines.get("release#Deploy").isStage(), is(true));
+        assertThat(lines.get("release#Deploy").getMatches(), is(-1L));
+    }
+
+    @Test
+    void testLinesAreResolvedAgainAfterAJobWasSaved() throws Exception {
+        FreeStyleProject blocked = j.createFreeStyleProject("blocked");
+        blocked.addProperty(new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setBlockOnGlobalLevel()
+                .setBlockingJobs("deploy-.*")
+                .createBuildBlockerProperty());
+        assertThat(PatternReport.create(null).getDeadLines(), is(1));
+
+        j.createFreeStyleProject("deploy-1");
+        assertThat(PatternReport.create(null).getDeadLines(), is(0));
+
+        blocked.removeProperty(BuildBlockerProperty.class);
+        assertThat(PatternReport.create(null).getLines().size(), is(0));
+    }
+
+    @Test
+    void testManagementPageRendersInMemoryAggregates() throws Exception {
+        BlockedTimeTracker.getIfAvailable().update(1, "deploy", "build", "GLOBAL", 1_000);
+
+        try (JenkinsRule.WebClient wc = j.createWebClient()) {
+            String page = wc.goTo("manage/build-blocker/").getWebResponse().getContentAsString();
+            assertThat(page, containsString("deploy"));
+            assertThat(page, containsString("patterns/"));
+            assertThat(wc.goTo("manage/build-blocker/patterns/").getWebResponse().getContentAsString(), containsString("0 lines"));
+
+            JSONObject json = JSONObject.fromObject(wc.goTo("manage/build-blocker/api/json?depth=2", "application/json")
+                    .getWebResponse().getContentAsString());
+            assertThat(json.getJSONArray("blockedItems").getJSONObject(0).getString("blocker"), is("build"));
+            assertThat(json.getJSONObject("statistics").getJSONArray("caches").size(), is(3));
+            assertThat(json.getLong("detectedCycles"), is(0L));
+            assertThat(json.has("patterns"), is(false));
+
+            JSONObject patterns = JSONObject.fromObject(wc.goTo("manage/build-blocker/patterns/api/json", "application/json")
+                    .getWebResponse().getContentAsString());
+            assertThat(patterns.getInt("deadLines"), is(0));
+        }
+    }
+}
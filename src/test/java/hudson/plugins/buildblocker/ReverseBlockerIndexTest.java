@@ -0,0 +1,95 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+@WithJenkins
+class ReverseBlockerIndexTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        j = rule;
+    }
+
+    @Test
+    void testDeclarationsAreResolvedToTheProtectorsOfEveryJob() {
+        Map<String, String> declarations = new TreeMap<>();
+        declarations.put("prod-db-migration", "deploy-.*\nprod-.*\n.*/${BRANCH_NAME}");
+        declarations.put("release", "glob:deploy-*");
+        String[] names = {"build", "deploy-api", "deploy-web", "prod-db-migration", "prod-report", "release"};
+
+        Map<String, String[]> protectors = ReverseBlockerIndex.resolve(declarations, names);
+
+        assertThat(protectors.get("deploy-api"), arrayContaining("prod-db-migration", "release"));
+        assertThat(protectors.get("prod-report"), arrayContaining("prod-db-migration"));
+        assertThat(protectors.get("prod-db-migration"), nullValue());
+        assertThat(protectors.get("build"), nullValue());
+    }
+
+    @Test
+    void testRunningProtectorBlocksMatchingJobs() throws Exception {
+        FreeStyleProject protector = j.createFreeStyleProject("prod-db-migration");
+        protector.addProperty(new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setJobsToBlock("deploy-.*")
+                .createBuildBlockerProperty());
+        protector.getBuildersList().add(new SleepBuilder(10_000));
+        FreeStyleProject deploy = j.createFreeStyleProject("deploy-api");
+        FreeStyleProject other = j.createFreeStyleProject("build");
+        BuildBlockerQueueTaskDispatcher dispatcher = new BuildBlockerQueueTaskDispatcher();
+
+        assertThat(dispatcher.canRun(itemOf(deploy)), nullValue());
+
+        FreeStyleBuild build = protector.scheduleBuild2(0).waitForStart();
+        CauseOfBlockage cause = dispatcher.canRun(itemOf(deploy));
+        assertThat(cause, instanceOf(BlockedByBuildCause.class));
+        assertThat(cause.getShortDescription(), containsString("prod-db-migration"));
+        assertThat(dispatcher.canRun(itemOf(other)), nullValue());
+
+        build.getExecutor().interrupt();
+        j.waitForCompletion(build);
+        assertThat(dispatcher.canRun(itemOf(deploy)), nullValue());
+    }
+
+    @Test
+    void testChangedDeclarationIsResolvedAgain() throws Exception {
+        FreeStyleProject protector = j.createFreeStyleProject("prod-db-migration");
+        j.createFreeStyleProject("deploy-api");
+        ReverseBlockerIndex index = ReverseBlockerIndex.getIfAvailable();
+
+        assertThat(index.getProtectors("deploy-api"), nullValue());
+
+        protector.addProperty(new BuildBlockerPropertyBuilder()
+                .setUseBuildBlocker()
+                .setJobsToBlock("deploy-.*")
+                .createBuildBlockerProperty());
+
+        assertThat(index.getProtectors("deploy-api"), arrayContaining("prod-db-migration"));
+        assertThat(index.isQueued("prod-db-migration", -1), is(false));
+    }
+
+    private static Queue.BuildableItem itemOf(FreeStyleProject project) {
+        return new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), project, new ArrayList<>()));
+    }
+}
@@ -0,0 +1,72 @@
+package hudson.plugins.buildblocker;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StarvationGuardTest {
+
+    private static final long NOW = System.currentTimeMillis();
+
+    private StarvationGuard guard;
+    private Queue.Item starving;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        guard = new StarvationGuard();
+        starving = item(1, "starving", NOW - 30 * 60_000L);
+    }
+
+    @Test
+    void testItemIsStarvingOnlyAfterThreshold() {
+        assertThat(StarvationGuard.isStarving(starving, 0), is(false));
+        assertThat(StarvationGuard.isStarving(starving, 60), is(false));
+        assertThat(StarvationGuard.isStarving(starving, 20), is(true));
+    }
+
+    @Test
+    void testOnlyMatchingBuildsScheduledAfterStarvingItemAreHeldBack() throws Exception {
+        guard.hold(starving, new BlockingJobsMonitor("short-.*"));
+
+        assertThat(guard.isHolding(starving), is(true));
+        assertThat(guard.findHolding(starving), is(nullValue()));
+        assertThat(guard.findHolding(item(2, "short-1", NOW - 40 * 60_000L)), is(nullValue()));
+        assertThat(guard.findHolding(item(3, "short-2", NOW)), is("starving"));
+        assertThat(guard.findHolding(item(4, "other", NOW)), is(nullValue()));
+    }
+
+    @Test
+    void testBuildsAreReleasedWhenStarvingItemHasLeftTheQueue() throws Exception {
+        guard.hold(starving, new BlockingJobsMonitor("short-.*"));
+        Queue.LeftItem left = mock(Queue.LeftItem.class);
+        when(left.getId()).thenReturn(1L);
+
+        guard.onLeft(left);
+
+        assertThat(guard.isHolding(starving), is(false));
+        assertThat(guard.findHolding(item(3, "short-2", NOW)), is(nullValue()));
+    }
+
+    private static Queue.Item item(long id, String jobName, long inQueueSince) throws Exception {
+        FreeStyleProject project = mock(FreeStyleProject.class);
+        when(project.getFullName()).thenReturn(jobName);
+        when(project.getFullDisplayName()).thenReturn(jobName);
+
+        Queue.Item item = mock(Queue.WaitingItem.class);
+        Field task = Queue.Item.class.getField("task");
+        task.setAccessible(true);
+        task.set(item, project);
+        when(item.getId()).thenReturn(id);
+        when(item.getInQueueSince()).thenReturn(inQueueSince);
+        return item;
+    }
+}
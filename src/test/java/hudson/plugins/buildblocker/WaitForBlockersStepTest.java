@@ -0,0 +1,61 @@
+package hudson.plugins.buildblocker;
+
+import hudson.Functions;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.tasks.BatchFile;
+import hudson.tasks.Shell;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@WithJenkins
+class WaitForBlockersStepTest {
+
+    private JenkinsRule j;
+
+    @BeforeEach
+    void setUp(JenkinsRule rule) {
+        j = rule;
+    }
+
+    @Test
+    void testStepContinuesImmediatelyWithoutBlockers() throws Exception {
+        WorkflowJob pipeline = j.createProject(WorkflowJob.class, "pipeline");
+        pipeline.setDefinition(new CpsFlowDefinition("waitForBlockers blockingJobs: 'blockingJob'\necho 'passed'", true));
+
+        WorkflowRun run = j.buildAndAssertSuccess(pipeline);
+
+        j.assertLogContains("passed", run);
+    }
+
+    @Test
+    void testStepWaitsUntilBlockingJobHasFinished() throws Exception {
+        FreeStyleProject blockingProject = j.createFreeStyleProject("blockingJob");
+        blockingProject.getBuildersList().add(Functions.isWindows() ? new BatchFile("ping -n 10 127.0.0.1 >nul") : new Shell("sleep 10"));
+        Future<FreeStyleBuild> blockingBuild = blockingProject.scheduleBuild2(0);
+        await().atMost(30, TimeUnit.SECONDS).until(blockingProject::isBuilding);
+
+        WorkflowJob pipeline = j.createProject(WorkflowJob.class, "pipeline");
+        pipeline.setDefinition(new CpsFlowDefinition("waitForBlockers blockingJobs: 'blocking.*'\necho 'passed'", true));
+        WorkflowRun run = pipeline.scheduleBuild2(0).waitForStart();
+
+        j.waitForMessage("Waiting for blockingJob to finish.", run);
+        assertFalse(blockingBuild.isDone());
+        j.assertLogNotContains("passed", run);
+
+        j.assertBuildStatusSuccess(blockingBuild);
+        j.assertBuildStatusSuccess(j.waitForCompletion(run));
+        j.assertLogContains("passed", run);
+    }
+}